@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.javac;
+
+import io.takari.incrementalbuild.BuildContext.Severity;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerConfiguration;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerOutputProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Measures wall time of a forked compiler JVM that compiles one trivial source and exits, with and without the class data sharing archive created by {@link CompilerJavacClassDataSharing}.
+ * This is the per-fork startup cost paid by {@code forkedWorkers=false} builds. The archive is created during trial setup and is not part of the measurement.
+ * <p>
+ * Requires JDK 13 or newer for {@code classDataSharing=true} to make a difference, on older JDKs both variants run the same command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ForkedCompilerStartupBenchmark {
+
+  @Param({"false", "true"})
+  public boolean classDataSharing;
+
+  private File workdir;
+
+  private List<String> command;
+
+  private CompilerConfiguration config;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, URISyntaxException {
+    workdir = Files.createTempDirectory("forked-javac-benchmark").toFile();
+    File source = new File(workdir, "Basic.java");
+    Files.write(source.toPath(), "public class Basic {}\n".getBytes(Charsets.UTF_8));
+    File classes = new File(workdir, "classes");
+
+    String executable = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    if (File.separatorChar == '\\') {
+      executable = executable + ".exe";
+    }
+    // class data sharing archives can only be created for jar classpath entries, run from the shaded benchmarks jar
+    File jar = new File(CompilerJavacForked.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+    command = new ArrayList<String>();
+    command.add(executable);
+    command.add("-cp");
+    command.add(jar.getAbsolutePath());
+    command.addAll(CompilerJavacForked.getJvmLogOptions());
+    if (classDataSharing) {
+      command.addAll(CompilerJavacClassDataSharing.getJvmOptions(executable, jar, new File(workdir, "cds")));
+    }
+    command.add(CompilerJavacForked.class.getName());
+
+    List<String> options = Arrays.asList("-d", classes.getAbsolutePath());
+    config = new CompilerConfiguration(Charsets.UTF_8, options, Collections.singletonList(source));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    delete(workdir);
+  }
+
+  @Benchmark
+  public void compileOnce() throws IOException {
+    final List<String> errors = new ArrayList<String>();
+    CompilerJavacWorkerPool.compileOnce(command, workdir, config, new CompilerOutputProcessor() {
+      @Override
+      public void processOutput(File inputFile, File outputFile) {}
+
+      @Override
+      public void addMessage(String path, int line, int column, String message, Severity kind) {
+        if (kind == Severity.ERROR) {
+          errors.add(message);
+        }
+      }
+
+      @Override
+      public void addLogMessage(String message) {}
+    });
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Compilation failed " + errors);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
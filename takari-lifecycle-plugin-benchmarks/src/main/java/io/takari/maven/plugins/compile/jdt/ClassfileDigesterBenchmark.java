@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Measures {@link ClassfileDigester} throughput on real class files, with the default murmur3_128 hash function and with SHA-1, which was used by digest format version 1.
+ * <p>
+ * {@code classes=jdk} reads {@code java/} classes from {@code rt.jar} or, on JDK 9 and newer, from the {@code jrt:/} file system. {@code classes=guava} reads {@code com/google/common/} classes from
+ * the jar Guava was loaded from. Class files the digester or JDT class file reader cannot parse are skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ClassfileDigesterBenchmark {
+
+  private static final int CLASSES = 2048;
+
+  @Param({"jdk", "guava"})
+  public String classes;
+
+  @Param({"murmur3_128", "sha1"})
+  public String hash;
+
+  private ClassfileDigester digester;
+
+  private byte[][] classfiles;
+
+  private ClassFileReader[] readers;
+
+  private int next;
+
+  @Setup
+  public void setup() throws IOException, URISyntaxException {
+    HashFunction hashFunction = "sha1".equals(hash) ? Hashing.sha1() : Hashing.murmur3_128();
+    digester = new ClassfileDigester(hashFunction);
+
+    List<byte[]> candidates = "guava".equals(classes) ? readGuavaClassfiles() : readJdkClassfiles();
+    List<byte[]> bytes = new ArrayList<byte[]>();
+    List<ClassFileReader> parsed = new ArrayList<ClassFileReader>();
+    for (byte[] classfile : candidates) {
+      try {
+        ClassFileReader reader = new ClassFileReader(classfile, null);
+        digester.digest(classfile);
+        bytes.add(classfile);
+        parsed.add(reader);
+      } catch (ClassFormatException e) {
+        // class file version or constant pool entry not supported, skip
+      } catch (RuntimeException e) {
+        // ditto
+      }
+      if (bytes.size() == CLASSES) {
+        break;
+      }
+    }
+    if (bytes.isEmpty()) {
+      throw new IllegalStateException("No class files found for " + classes);
+    }
+    classfiles = bytes.toArray(new byte[bytes.size()][]);
+    readers = parsed.toArray(new ClassFileReader[parsed.size()]);
+  }
+
+  private static List<byte[]> readGuavaClassfiles() throws IOException, URISyntaxException {
+    File jar = new File(ImmutableList.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    return readClassfiles(jar, "com/google/common/");
+  }
+
+  private static List<byte[]> readJdkClassfiles() throws IOException {
+    File rtjar = new File(System.getProperty("java.home"), "lib/rt.jar");
+    if (rtjar.isFile()) {
+      return readClassfiles(rtjar, "java/");
+    }
+    final List<byte[]> result = new ArrayList<byte[]>();
+    Path root = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules/java.base/java");
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        if (file.toString().endsWith(".class")) {
+          result.add(Files.readAllBytes(file));
+        }
+        return result.size() < 2 * CLASSES ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+      }
+    });
+    return result;
+  }
+
+  private static List<byte[]> readClassfiles(File jar, String prefix) throws IOException {
+    List<byte[]> result = new ArrayList<byte[]>();
+    try (ZipFile zip = new ZipFile(jar)) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements() && result.size() < 2 * CLASSES) {
+        ZipEntry entry = entries.nextElement();
+        if (entry.getName().startsWith(prefix) && entry.getName().endsWith(".class")) {
+          try (InputStream is = zip.getInputStream(entry)) {
+            result.add(ByteStreams.toByteArray(is));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private int nextIndex() {
+    int index = next++;
+    if (next == classfiles.length) {
+      next = 0;
+    }
+    return index;
+  }
+
+  /**
+   * Digests class file bytes directly, without parsing them with {@link ClassFileReader}.
+   */
+  @Benchmark
+  public byte[] digestClassfile() throws ClassFormatException {
+    return digester.digest(classfiles[nextIndex()]);
+  }
+
+  /**
+   * Digests class files already parsed by JDT, e.g. JDT compiler output.
+   */
+  @Benchmark
+  public byte[] digestBinaryType() {
+    return digester.digest(readers[nextIndex()]);
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Measures {@link Classpath} name environment lookups the way JDT compiler issues them, i.e. with {@code char[][]} compound type names. Run with {@code -prof gc} to see allocation per lookup and
+ * compare against a build of the plugin without the allocation-free lookup path.
+ * <p>
+ * The classpath is the jars listed in {@code jars} parameter, or the jars Guava and JDT classes were loaded from if the parameter is empty. When run from the shaded benchmarks jar the latter is
+ * the benchmarks jar itself, pass {@code -p jars=...} to benchmark real dependency jars with OSGi bundle manifests and non-exported packages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ClasspathLookupBenchmark {
+
+  private static final int LOOKUPS = 1024;
+
+  @Param({""})
+  public String jars;
+
+  private List<ClasspathEntry> entries;
+
+  private Classpath classpath;
+
+  private char[][][] existingTypes;
+
+  private char[][][] missingTypes;
+
+  private char[][][] unknownPackageTypes;
+
+  private char[][][] parentPackages;
+
+  private char[][] packageNames;
+
+  private int next;
+
+  @Setup
+  public void setup() throws IOException, URISyntaxException {
+    Set<File> files = new LinkedHashSet<File>();
+    if (jars.isEmpty()) {
+      files.add(getCodeSource(ImmutableList.class));
+      files.add(getCodeSource(CharOperation.class));
+    } else {
+      for (String jar : Splitter.on(File.pathSeparatorChar).omitEmptyStrings().split(jars)) {
+        files.add(new File(jar));
+      }
+    }
+    entries = new ArrayList<ClasspathEntry>();
+    for (File file : files) {
+      entries.add(ClasspathJar.create(file));
+    }
+    classpath = new Classpath(entries, Collections.<MutableClasspathEntry>emptyList());
+
+    List<String> existing = new ArrayList<String>();
+    List<String> knownPackages = new ArrayList<String>();
+    for (ClasspathEntry entry : entries) {
+      for (String packageName : entry.getPackageNames()) {
+        if (packageName.isEmpty()) {
+          continue;
+        }
+        knownPackages.add(packageName);
+        for (String classFile : ((DependencyClasspathEntry) entry).getClassFiles(packageName)) {
+          existing.add(packageName + "/" + classFile.substring(0, classFile.length() - ".class".length()));
+        }
+      }
+    }
+    if (existing.isEmpty()) {
+      throw new IllegalStateException("No classes found in " + files);
+    }
+    existingTypes = new char[LOOKUPS][][];
+    missingTypes = new char[LOOKUPS][][];
+    unknownPackageTypes = new char[LOOKUPS][][];
+    parentPackages = new char[LOOKUPS][][];
+    packageNames = new char[LOOKUPS][];
+    for (int i = 0; i < LOOKUPS; i++) {
+      // spread lookups evenly over the classpath
+      String type = existing.get((int) ((long) i * existing.size() / LOOKUPS));
+      String packageName = knownPackages.get((int) ((long) i * knownPackages.size() / LOOKUPS));
+      existingTypes[i] = CharOperation.splitOn('/', type.toCharArray());
+      missingTypes[i] = CharOperation.splitOn('/', (type + "Missing").toCharArray());
+      unknownPackageTypes[i] = CharOperation.splitOn('/', ("missing/" + type).toCharArray());
+      char[][] segments = CharOperation.splitOn('/', packageName.toCharArray());
+      parentPackages[i] = CharOperation.subarray(segments, 0, segments.length - 1);
+      packageNames[i] = segments[segments.length - 1];
+    }
+  }
+
+  private static File getCodeSource(Class<?> type) throws URISyntaxException {
+    return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    for (ClasspathEntry entry : entries) {
+      ((ClasspathJar) entry).close();
+    }
+  }
+
+  private int nextIndex() {
+    return next++ & (LOOKUPS - 1);
+  }
+
+  /**
+   * Existing types, dominated by reading the class file.
+   */
+  @Benchmark
+  public NameEnvironmentAnswer findExistingType() {
+    return classpath.findType(existingTypes[nextIndex()]);
+  }
+
+  /**
+   * Missing types in packages provided by the classpath, i.e. JDT probing for member and import-on-demand types.
+   */
+  @Benchmark
+  public NameEnvironmentAnswer findMissingType() {
+    return classpath.findType(missingTypes[nextIndex()]);
+  }
+
+  /**
+   * Types in packages not provided by the classpath, i.e. JDT probing qualified names segment by segment.
+   */
+  @Benchmark
+  public NameEnvironmentAnswer findTypeInUnknownPackage() {
+    return classpath.findType(unknownPackageTypes[nextIndex()]);
+  }
+
+  @Benchmark
+  public boolean isPackage() {
+    int index = nextIndex();
+    return classpath.isPackage(parentPackages[index], packageNames[index]);
+  }
+}
@@ -12,13 +12,17 @@ import io.takari.incrementalbuild.BuildContext.InputMetadata;
 import io.takari.incrementalbuild.Incremental;
 import io.takari.incrementalbuild.Incremental.Configuration;
 import io.takari.incrementalbuild.spi.DefaultBuildContext;
+import io.takari.maven.plugins.compile.javac.AbstractCompilerJavac;
+import io.takari.maven.plugins.compile.javac.CompilerJavac;
 import io.takari.maven.plugins.compile.javac.CompilerJavacLauncher;
+import io.takari.maven.plugins.compile.jdt.ClasspathEntryCache;
+import io.takari.maven.plugins.compile.jdt.CompilerJdt;
+import io.takari.maven.plugins.compile.jdt.classpath.DependencyClasspathEntry;
 import io.takari.maven.plugins.exportpackage.ExportPackageMojo;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -28,9 +32,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import javax.tools.JavaFileObject.Kind;
 
@@ -43,12 +51,11 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.TreeMultimap;
-import com.google.common.io.CharStreams;
-import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public abstract class AbstractCompileMojo extends AbstractMojo {
 
@@ -57,6 +64,11 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
   // I much prefer slf4j over plexus logger api
   private final Logger log = LoggerFactory.getLogger(getClass());
 
+  /**
+   * Creates threads of per-execution executors that run compilation setup stages concurrently with source scanning.
+   */
+  private static final ThreadFactory SETUP_THREADS = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("takari-compile-setup-%d").build();
+
   public static enum Proc {
     proc, only, none
   }
@@ -107,6 +119,36 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
   @Parameter(property = "maven.compiler.maxmem")
   private String maxmem;
 
+  /**
+   * Run {@code forked-javac} compilations on a pool of long-lived compiler JVMs instead of starting new JVM for each compilation. Compiler JVMs run in the project base directory, like
+   * non-pooled compiler JVMs, and are shared by all builds of the same project executed by the same maven JVM that use the same {@link #meminitial} and {@link #maxmem} settings. Compiler JVMs
+   * are restarted after crashes.
+   *
+   * @since 1.11
+   */
+  @Parameter(property = "maven.compiler.forkedWorkers", defaultValue = "false")
+  @Incremental(configuration = Configuration.ignore)
+  private boolean forkedWorkers;
+
+  /**
+   * Time, in seconds, idle {@link #forkedWorkers forked compiler workers} are kept running. {@code 0} means idle workers never exit on their own and keep running until maven JVM exits.
+   *
+   * @since 1.11
+   */
+  @Parameter(property = "maven.compiler.forkedWorkerIdleTimeout", defaultValue = "300")
+  @Incremental(configuration = Configuration.ignore)
+  private int forkedWorkerIdleTimeout;
+
+  /**
+   * Start {@code forked-javac} compiler JVMs with a class data sharing archive of compiler classes, which reduces compiler JVM startup time. The archive is created on first use in user cache
+   * directory and recreated when java version or compiler plugin jar changes. Requires java 13 or newer, ignored on older java versions.
+   *
+   * @since 1.11
+   */
+  @Parameter(property = "maven.compiler.forkedClassDataSharing", defaultValue = "false")
+  @Incremental(configuration = Configuration.ignore)
+  private boolean forkedClassDataSharing;
+
   /**
    * <p>
    * Sets whether annotation processing is performed or not. This parameter is required if annotation processors are present on compile classpath.
@@ -193,6 +235,70 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
   @Parameter(defaultValue = "ignore")
   private AccessRulesViolation privatePackageReference;
 
+  /**
+   * Fraction of project sources that must be affected by changes for incremental compilation to switch to full compilation. Full compilation compiles all sources in a single compiler round,
+   * which is faster than multi-round incremental compilation when most sources need to be recompiled anyway. Sources recompiled by all compiler rounds of the build are counted. Must be between
+   * {@code 0} and {@code 1}, use {@code 1} to disable.
+   * <p>
+   * Only supported by {@code jdt} compiler.
+   *
+   * @since 1.11
+   */
+  @Parameter(property = "maven.compiler.fullBuildThreshold", defaultValue = CompilerJdt.DEFAULT_FULL_BUILD_THRESHOLD)
+  @Incremental(configuration = Configuration.ignore)
+  private double fullBuildThreshold;
+
+  /**
+   * Only digest and compare dependency types and packages referenced by project sources when checking if classpath changes affect the project. Dependency types that are not referenced by any
+   * source cannot affect compilation results, so incremental build cost depends on the number of referenced types rather than the size of the classpath. Switching this parameter on or off
+   * results in one full compilation.
+   * <p>
+   * Only supported by {@code jdt} compiler.
+   *
+   * @since 1.11
+   */
+  @Parameter(property = "maven.compiler.lazyClasspathDigest", defaultValue = "false")
+  @Incremental(configuration = Configuration.ignore)
+  private boolean lazyClasspathDigest;
+
+  /**
+   * Only recompile modified sources and sources that reference types whose structure changed, instead of recompiling all sources whenever anything changes. Type references are collected from
+   * generated class files. With annotation processing enabled, sources annotated with processed annotations are compiled together with every incremental change. Changes of compile-time
+   * constants or annotation types, dependency changes, {@code proc=only} and debug information without local variables still result in full compilation. Switching this parameter on results in
+   * one full compilation.
+   * <p>
+   * Only supported by in-process {@code javac} compiler.
+   *
+   * @since 1.11
+   */
+  @Parameter(property = "maven.compiler.javacIncremental", defaultValue = "false")
+  @Incremental(configuration = Configuration.ignore)
+  private boolean javacIncremental;
+
+  /**
+   * Keep dependency jars opened and indexed between in-process {@code javac} compilations, instead of reopening all classpath jars for each compilation. Cached jars are shared by all projects
+   * and builds executed by the same maven JVM and are validated by size and last modified timestamp. Use {@code takari.javacArchiveCache.maxSize} property to limit the number of cached jars.
+   * <p>
+   * Only supported by in-process {@code javac} compiler.
+   *
+   * @since 1.11
+   */
+  @Parameter(property = "maven.compiler.javacSharedClasspathArchives", defaultValue = "false")
+  @Incremental(configuration = Configuration.ignore)
+  private boolean javacSharedClasspathArchives;
+
+  /**
+   * Compare aggregate ABI digests of modified classpath dependencies with the previous build, so that dependency changes that do not affect type structure, like comment or method body changes
+   * of upstream reactor modules, do not trigger full compilation. Uses the same type digests as {@code jdt} compiler, which always compares dependency ABI.
+   * <p>
+   * Only supported by {@code javac} and {@code forked-javac} compilers.
+   *
+   * @since 1.11
+   */
+  @Parameter(property = "maven.compiler.javacAbiClasspathDigest", defaultValue = "false")
+  @Incremental(configuration = Configuration.ignore)
+  private boolean javacAbiClasspathDigest;
+
   //
 
   @Parameter(defaultValue = "${project.file}", readonly = true)
@@ -221,6 +327,9 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
   @Component
   private DefaultBuildContext context;
 
+  @Component
+  private ClasspathEntryCache classpathCache;
+
   public Charset getSourceEncoding() {
     return encoding == null ? null : Charset.forName(encoding);
   }
@@ -308,17 +417,78 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
       throw new MojoExecutionException("Unsupported compilerId" + compilerId);
     }
 
+    ExecutorService setupExecutor = null;
     try {
+      final List<File> classpath = getClasspath();
+
+      if (compiler instanceof CompilerJavacLauncher) {
+        ((CompilerJavacLauncher) compiler).setBasedir(basedir);
+        ((CompilerJavacLauncher) compiler).setJar(pluginArtifact.getFile());
+        ((CompilerJavacLauncher) compiler).setBuildDirectory(buildDirectory);
+        ((CompilerJavacLauncher) compiler).setMeminitial(meminitial);
+        ((CompilerJavacLauncher) compiler).setMaxmem(maxmem);
+        ((CompilerJavacLauncher) compiler).setWorkers(forkedWorkers);
+        ((CompilerJavacLauncher) compiler).setWorkerIdleTimeout(forkedWorkerIdleTimeout);
+        ((CompilerJavacLauncher) compiler).setClassDataSharing(forkedClassDataSharing);
+      }
+
+      if (compiler instanceof CompilerJdt) {
+        ((CompilerJdt) compiler).setFullBuildThreshold(fullBuildThreshold);
+        ((CompilerJdt) compiler).setLazyClasspathDigest(lazyClasspathDigest);
+      }
+
+      if (compiler instanceof AbstractCompilerJavac) {
+        ((AbstractCompilerJavac) compiler).setAbiClasspathDigest(javacAbiClasspathDigest);
+      }
+
+      if (compiler instanceof CompilerJavac) {
+        ((CompilerJavac) compiler).setIncremental(javacIncremental);
+        ((CompilerJavac) compiler).setSharedClasspathArchives(javacSharedClasspathArchives);
+      }
+
+      // build context is not thread safe, only setup stages that do not use the context run concurrently with source scanning
+      // each execution uses its own setup threads, so parallel module builds never wait for each other's setup stages
+      Future<Proc> effectiveProc = null;
+      Future<?> prefetch = null;
+      if (hasSourceRoots()) {
+        setupExecutor = Executors.newFixedThreadPool(2, SETUP_THREADS);
+        effectiveProc = setupExecutor.submit(new Callable<Proc>() {
+          @Override
+          public Proc call() throws Exception {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            try {
+              return getEffectiveProc(classpath);
+            } finally {
+              log.debug("Discovered annotation processors ({} ms)", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            }
+          }
+        });
+        prefetch = setupExecutor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            compiler.prefetchClasspath(classpath);
+            log.debug("Prefetched {} classpath entries ({} ms)", classpath.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            return null;
+          }
+        });
+      }
+
+      Stopwatch stageStopwatch = Stopwatch.createStarted();
       final List<InputMetadata<File>> sources = getSources();
+      log.debug("Scanned {} sources ({} ms)", sources.size(), stageStopwatch.elapsed(TimeUnit.MILLISECONDS));
       if (sources.isEmpty()) {
+        // results of concurrent setup stages, if any, are not needed
+        cancel(effectiveProc);
+        cancel(prefetch);
         log.info("No sources, skipping compilation");
         return;
       }
 
       mkdirs(getOutputDirectory());
 
-      final List<File> classpath = getClasspath();
-      Proc proc = getEffectiveProc(classpath);
+      Proc proc = effectiveProc != null ? join(effectiveProc) : getEffectiveProc(classpath);
+      join(prefetch);
 
       if (proc != Proc.none) {
         mkdirs(getGeneratedSourcesDirectory());
@@ -340,16 +510,12 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
       compiler.setTransitiveDependencyReference(transitiveDependencyReference);
       compiler.setPrivatePackageReference(privatePackageReference);
 
-      if (compiler instanceof CompilerJavacLauncher) {
-        ((CompilerJavacLauncher) compiler).setBasedir(basedir);
-        ((CompilerJavacLauncher) compiler).setJar(pluginArtifact.getFile());
-        ((CompilerJavacLauncher) compiler).setBuildDirectory(buildDirectory);
-        ((CompilerJavacLauncher) compiler).setMeminitial(meminitial);
-        ((CompilerJavacLauncher) compiler).setMaxmem(maxmem);
-      }
-
+      stageStopwatch = Stopwatch.createStarted();
       boolean classpathChanged = compiler.setClasspath(classpath, getMainOutputDirectory(), getDirectDependencies());
+      log.debug("Verified classpath ({} ms)", stageStopwatch.elapsed(TimeUnit.MILLISECONDS));
+      stageStopwatch = Stopwatch.createStarted();
       boolean sourcesChanged = compiler.setSources(sources);
+      log.debug("Verified sources ({} ms)", stageStopwatch.elapsed(TimeUnit.MILLISECONDS));
 
       if (sourcesChanged || classpathChanged) {
         log.info("Compiling {} sources to {}", sources.size(), getOutputDirectory());
@@ -363,6 +529,55 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
 
     } catch (IOException e) {
       throw new MojoExecutionException("Could not compile project", e);
+    } finally {
+      if (setupExecutor != null) {
+        shutdown(setupExecutor);
+      }
+    }
+  }
+
+  /**
+   * Interrupts setup stages that are still running, i.e. stages cancelled because there are no sources, and waits for them to stop, so no stage outlives the execution.
+   */
+  private static void shutdown(ExecutorService executor) {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean hasSourceRoots() {
+    for (String sourceRoot : getSourceRoots()) {
+      if (new File(sourceRoot).isDirectory()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void cancel(Future<?> stage) {
+    if (stage != null) {
+      stage.cancel(true);
+    }
+  }
+
+  /**
+   * Returns result of a concurrent setup stage, or {@code null} if the stage was not started.
+   */
+  private static <T> T join(Future<T> stage) throws IOException {
+    if (stage == null) {
+      return null;
+    }
+    try {
+      return stage.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw new IllegalStateException(e.getCause());
     }
   }
 
@@ -371,24 +586,12 @@ public abstract class AbstractCompileMojo extends AbstractMojo {
     if (proc == null) {
       Multimap<File, String> processors = TreeMultimap.create();
       for (File jar : classpath) {
-        if (jar.isFile()) {
-          try (ZipFile zip = new ZipFile(jar)) {
-            ZipEntry entry = zip.getEntry("META-INF/services/javax.annotation.processing.Processor");
-            if (entry != null) {
-              try (Reader r = new InputStreamReader(zip.getInputStream(entry), Charsets.UTF_8)) {
-                processors.putAll(jar, CharStreams.readLines(r));
-              }
-            }
-          } catch (IOException e) {
-            // ignore, compiler won't be able to use this jar either
-          }
-        } else if (jar.isDirectory()) {
-          try {
-            processors.putAll(jar, Files.readLines(new File(jar, "META-INF/services/javax.annotation.processing.Processor"), Charsets.UTF_8));
-          } catch (IOException e) {
-            // ignore, compiler won't be able to use this jar either
-          }
+        // jar processors are part of cached jar index, jars are not opened if the index is cached
+        DependencyClasspathEntry entry = classpathCache.get(jar);
+        if (entry != null) {
+          processors.putAll(jar, entry.getAnnotationProcessors());
         }
+        // else ignore, compiler won't be able to use this jar either
       }
       if (!processors.isEmpty()) {
         StringBuilder msg = new StringBuilder("<proc> must be one of 'none', 'only' or 'proc'. Processors found: ");
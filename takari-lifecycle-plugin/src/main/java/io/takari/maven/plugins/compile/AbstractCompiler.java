@@ -184,6 +184,12 @@ public abstract class AbstractCompiler {
     return showWarnings;
   }
 
+  /**
+   * Reads classpath state that does not depend on the build context, so subsequent {@link #setClasspath(List, File, Set)} can reuse it. Called concurrently with other compilation setup stages and
+   * must not use the build context. Does nothing by default.
+   */
+  public void prefetchClasspath(List<File> dependencies) throws IOException {}
+
   public abstract boolean setClasspath(List<File> dependencies, File mainClasses, Set<File> directDependencies) throws IOException;
 
   public abstract boolean setSources(List<InputMetadata<File>> sources) throws IOException;
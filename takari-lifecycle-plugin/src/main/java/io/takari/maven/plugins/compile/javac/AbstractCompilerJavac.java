@@ -36,6 +36,11 @@ public abstract class AbstractCompilerJavac extends AbstractCompiler {
 
   private String classpath;
 
+  /**
+   * {@code true} if dependency classpath changed since previous build.
+   */
+  protected boolean classpathChanged;
+
   protected AbstractCompilerJavac(DefaultBuildContext<?> context, ProjectClasspathDigester digester) {
     super(context);
     this.digester = digester;
@@ -153,7 +158,12 @@ public abstract class AbstractCompilerJavac extends AbstractCompiler {
     }
     this.classpath = cp.toString();
 
-    return digester.digestDependencies(classpath);
+    classpathChanged = digester.digestDependencies(classpath);
+    return classpathChanged;
+  }
+
+  public void setAbiClasspathDigest(boolean abiClasspathDigest) {
+    digester.setAbiDigest(abiClasspathDigest);
   }
 
   @Override
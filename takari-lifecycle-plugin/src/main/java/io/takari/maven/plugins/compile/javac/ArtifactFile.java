@@ -22,11 +22,27 @@ class ArtifactFile implements Serializable {
 
   final long lastModified;
 
+  /**
+   * Aggregate ABI hash of the artifact types or {@code null} if the hash was not calculated.
+   */
+  final String abiHash;
+
+  /**
+   * Position of the artifact on the classpath, only tracked together with {@link #abiHash}.
+   */
+  final int position;
+
   public ArtifactFile(File file, boolean isFile, long length, long lastModified) {
+    this(file, isFile, length, lastModified, null, 0);
+  }
+
+  public ArtifactFile(File file, boolean isFile, long length, long lastModified, String abiHash, int position) {
     this.file = file;
     this.isFile = isFile;
     this.length = length;
     this.lastModified = lastModified;
+    this.abiHash = abiHash;
+    this.position = position;
   }
 
   @Override
@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.javac;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Types referenced by a compiled class, collected from class file constant pool. Includes class constants and all types mentioned in field, method, generic signature and local variable
+ * descriptors. Types from {@code java.} packages are not collected, project sources cannot declare them.
+ * <p>
+ * Some source dependencies do not leave any trace in the class file and are not collected:
+ * <ul>
+ * <li>types only used as local variable types, unless the class file has {@code LocalVariableTable}, i.e. was compiled with {@code -g:vars};</li>
+ * <li>annotations with {@code SOURCE} retention;</li>
+ * <li>compile-time constants of other classes, javac inlines their values. {@link #getConstantsHash()} allows detecting constant value changes instead.</li>
+ * </ul>
+ * <p>
+ * All type names use class file internal form, i.e. {@code java/lang/Object}.
+ */
+class ClassfileReferences {
+
+  private static final int CONSTANT_Utf8 = 1;
+  private static final int CONSTANT_Integer = 3;
+  private static final int CONSTANT_Float = 4;
+  private static final int CONSTANT_Long = 5;
+  private static final int CONSTANT_Double = 6;
+  private static final int CONSTANT_Class = 7;
+  private static final int CONSTANT_String = 8;
+  private static final int CONSTANT_Fieldref = 9;
+  private static final int CONSTANT_Methodref = 10;
+  private static final int CONSTANT_InterfaceMethodref = 11;
+  private static final int CONSTANT_NameAndType = 12;
+  private static final int CONSTANT_MethodHandle = 15;
+  private static final int CONSTANT_MethodType = 16;
+  private static final int CONSTANT_Dynamic = 17;
+  private static final int CONSTANT_InvokeDynamic = 18;
+  private static final int CONSTANT_Module = 19;
+  private static final int CONSTANT_Package = 20;
+
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private static final int ACC_ANNOTATION = 0x2000;
+
+  private final String type;
+
+  private final List<String> supertypes;
+
+  private final Set<String> references;
+
+  private final String constantsHash;
+
+  private final boolean annotation;
+
+  private ClassfileReferences(String type, List<String> supertypes, Set<String> references, String constantsHash, boolean annotation) {
+    this.type = type;
+    this.supertypes = supertypes;
+    this.references = references;
+    this.constantsHash = constantsHash;
+    this.annotation = annotation;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * Superclass and implemented interfaces.
+   */
+  public List<String> getSupertypes() {
+    return supertypes;
+  }
+
+  public Set<String> getReferences() {
+    return references;
+  }
+
+  /**
+   * Returns hash of names and values of constant fields declared by the class or {@code null} if the class does not declare constant fields.
+   */
+  public String getConstantsHash() {
+    return constantsHash;
+  }
+
+  /**
+   * Returns {@code true} if the class is an annotation type. Uses of annotation types with {@code SOURCE} retention are not collected as references.
+   */
+  public boolean isAnnotation() {
+    return annotation;
+  }
+
+  public static ClassfileReferences read(byte[] classfile) throws IOException {
+    DataInputStream is = new DataInputStream(new ByteArrayInputStream(classfile));
+    if (is.readInt() != MAGIC) {
+      throw new IOException("Not a class file");
+    }
+    is.readUnsignedShort(); // minor_version
+    is.readUnsignedShort(); // major_version
+
+    int poolSize = is.readUnsignedShort();
+    Object[] pool = new Object[poolSize];
+    int[] classes = new int[poolSize];
+    int classCount = 0;
+    for (int i = 1; i < poolSize; i++) {
+      int tag = is.readUnsignedByte();
+      switch (tag) {
+        case CONSTANT_Utf8:
+          pool[i] = is.readUTF();
+          break;
+        case CONSTANT_Integer:
+          pool[i] = is.readInt();
+          break;
+        case CONSTANT_Float:
+          pool[i] = is.readFloat();
+          break;
+        case CONSTANT_Long:
+          pool[i++] = is.readLong(); // takes two constant pool entries
+          break;
+        case CONSTANT_Double:
+          pool[i++] = is.readDouble(); // takes two constant pool entries
+          break;
+        case CONSTANT_Class:
+          classes[classCount++] = i;
+          pool[i] = is.readUnsignedShort();
+          break;
+        case CONSTANT_String:
+          pool[i] = is.readUnsignedShort();
+          break;
+        case CONSTANT_MethodType:
+        case CONSTANT_Module:
+        case CONSTANT_Package:
+          is.readUnsignedShort();
+          break;
+        case CONSTANT_MethodHandle:
+          is.readUnsignedByte();
+          is.readUnsignedShort();
+          break;
+        case CONSTANT_Fieldref:
+        case CONSTANT_Methodref:
+        case CONSTANT_InterfaceMethodref:
+        case CONSTANT_NameAndType:
+        case CONSTANT_Dynamic:
+        case CONSTANT_InvokeDynamic:
+          is.readInt();
+          break;
+        default:
+          throw new IOException("Unsupported constant pool tag " + tag);
+      }
+    }
+
+    int accessFlags = is.readUnsignedShort();
+    String type = getClassName(pool, is.readUnsignedShort());
+    List<String> supertypes = new ArrayList<String>();
+    int superclass = is.readUnsignedShort();
+    if (superclass != 0) {
+      supertypes.add(getClassName(pool, superclass));
+    }
+    int interfaceCount = is.readUnsignedShort();
+    for (int i = 0; i < interfaceCount; i++) {
+      supertypes.add(getClassName(pool, is.readUnsignedShort()));
+    }
+
+    Hasher constants = null;
+    int fieldCount = is.readUnsignedShort();
+    for (int i = 0; i < fieldCount; i++) {
+      is.readUnsignedShort(); // access_flags
+      String name = (String) pool[is.readUnsignedShort()];
+      String descriptor = (String) pool[is.readUnsignedShort()];
+      int attributeCount = is.readUnsignedShort();
+      for (int j = 0; j < attributeCount; j++) {
+        String attributeName = (String) pool[is.readUnsignedShort()];
+        int length = is.readInt();
+        if ("ConstantValue".equals(attributeName)) {
+          Object value = pool[is.readUnsignedShort()];
+          if (descriptor.equals("Ljava/lang/String;")) {
+            value = pool[(Integer) value];
+          }
+          if (constants == null) {
+            constants = Hashing.murmur3_128().newHasher();
+          }
+          constants.putUnencodedChars(name).putChar(':').putUnencodedChars(descriptor).putChar('=').putUnencodedChars(String.valueOf(value)).putChar(';');
+        } else {
+          is.readFully(new byte[length]);
+        }
+      }
+    }
+    // methods and class attributes are only relevant through descriptors already in the constant pool
+
+    Set<String> references = new HashSet<String>();
+    for (int i = 0; i < classCount; i++) {
+      String name = getClassName(pool, classes[i]);
+      if (name.startsWith("[")) {
+        collectDescriptorTypes(name, references);
+      } else {
+        addReference(name, references);
+      }
+    }
+    for (Object value : pool) {
+      if (value instanceof String) {
+        collectDescriptorTypes((String) value, references);
+      }
+    }
+    references.remove(type);
+
+    return new ClassfileReferences(type, supertypes, references, constants != null ? constants.hash().toString() : null, (accessFlags & ACC_ANNOTATION) != 0);
+  }
+
+  private static String getClassName(Object[] pool, int index) throws IOException {
+    Object nameIndex = pool[index];
+    if (!(nameIndex instanceof Integer) || !(pool[(Integer) nameIndex] instanceof String)) {
+      throw new IOException("Malformed class constant " + index);
+    }
+    return (String) pool[(Integer) nameIndex];
+  }
+
+  /**
+   * Collects {@code Lpackage/Name;} type references from field, method and generic signatures. Any other Utf8 constant is scanned too, which can only yield extra references.
+   */
+  static void collectDescriptorTypes(String descriptor, Collection<String> types) {
+    int length = descriptor.length();
+    for (int i = 0; i < length; i++) {
+      if (descriptor.charAt(i) == 'L' && (i == 0 || "()[<;:+-*^".indexOf(descriptor.charAt(i - 1)) >= 0)) {
+        int end = i + 1;
+        while (end < length && ";<.".indexOf(descriptor.charAt(end)) < 0) {
+          end++;
+        }
+        if (end < length && end > i + 1 && descriptor.charAt(end) != '.') {
+          addReference(descriptor.substring(i + 1, end), types);
+          i = end - 1;
+        }
+      }
+    }
+  }
+
+  private static void addReference(String type, Collection<String> types) {
+    if (!type.startsWith("java/")) {
+      types.add(type);
+    }
+  }
+
+  /**
+   * Returns simple name of the type, i.e. the name after the last package or nested type separator.
+   */
+  public static String getSimpleName(String type) {
+    return type.substring(Math.max(type.lastIndexOf('/'), type.lastIndexOf('$')) + 1);
+  }
+}
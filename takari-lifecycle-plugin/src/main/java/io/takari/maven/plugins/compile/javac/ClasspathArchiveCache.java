@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.javac;
+
+import io.takari.maven.plugins.util.SessionProperties;
+import io.takari.maven.plugins.util.SharedCache;
+import io.takari.maven.plugins.util.SharedZipFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.execution.scope.MojoExecutionScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * JVM-wide cache of indexed dependency jars used by in-process javac compilations, see {@link ClasspathArchiveFileManager}.
+ * <p>
+ * Cached jars are validated on each lookup by size and last modified timestamp. Cache capacity is bounded by the number of jars, least recently used jars are evicted and their zip files are
+ * closed. Each cached jar keeps at most one zip file open, so the capacity bounds open file handles held by the cache. Memory used by jar indexes is proportional to the number of jar entries
+ * and is not bounded separately.
+ */
+@Named
+@MojoExecutionScoped
+public class ClasspathArchiveCache {
+
+  /**
+   * Maximum number of cached jars, see {@link SharedCache} for how the value is applied.
+   */
+  public static final String PROP_MAX_SIZE = "takari.javacArchiveCache.maxSize";
+
+  private static final int DEFAULT_MAX_SIZE = 500;
+
+  private static final Logger log = LoggerFactory.getLogger(ClasspathArchiveCache.class);
+
+  private static final SharedCache<File, Archive> CACHE = new SharedCache<File, Archive>("Javac classpath archive cache", log);
+
+  /**
+   * Entries of a jar file by package, lazily opened zip file.
+   */
+  static class Archive implements Closeable {
+
+    final File file;
+
+    final long stamp;
+
+    /**
+     * Entry file names by package name, package names use {@code /} separator, the default package is the empty string. {@code null} if the file is not a jar.
+     */
+    private final Map<String, List<String>> packages;
+
+    private final SharedZipFile zipFile;
+
+    private Archive(File file, long stamp, SharedZipFile zipFile, Map<String, List<String>> packages) {
+      this.file = file;
+      this.stamp = stamp;
+      this.zipFile = zipFile;
+      this.packages = packages;
+    }
+
+    public Collection<String> getPackageNames() {
+      return packages.keySet();
+    }
+
+    public List<String> getEntries(String packageName) {
+      List<String> entries = packages.get(packageName);
+      return entries != null ? entries : Collections.<String>emptyList();
+    }
+
+    public byte[] read(String entryName) throws IOException {
+      try (SharedZipFile.Reader reader = zipFile.acquire()) {
+        ZipEntry entry = reader.getZipFile().getEntry(entryName);
+        if (entry == null) {
+          throw new IOException("Missing jar entry " + entryName);
+        }
+        try (InputStream is = reader.getZipFile().getInputStream(entry)) {
+          return ByteStreams.toByteArray(is);
+        }
+      }
+    }
+
+    /**
+     * Closes underlying zip file, see {@link SharedZipFile#close()}. The archive remains usable.
+     */
+    @Override
+    public void close() throws IOException {
+      if (zipFile != null) {
+        zipFile.close();
+      }
+    }
+
+    static Archive create(File file, long stamp) throws IOException {
+      ZipFile zipFile = new ZipFile(file);
+      try {
+        Map<String, List<String>> packages = new HashMap<String, List<String>>();
+        for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+          ZipEntry entry = e.nextElement();
+          if (entry.isDirectory()) {
+            continue;
+          }
+          String name = entry.getName();
+          int idx = name.lastIndexOf('/');
+          String packageName = idx > 0 ? name.substring(0, idx) : "";
+          List<String> entries = packages.get(packageName);
+          if (entries == null) {
+            entries = new ArrayList<String>();
+            packages.put(packageName, entries);
+          }
+          entries.add(name.substring(idx + 1));
+        }
+        return new Archive(file, stamp, new SharedZipFile(file, zipFile), packages);
+      } catch (RuntimeException e) {
+        zipFile.close();
+        throw e;
+      }
+    }
+  }
+
+  @Inject
+  public ClasspathArchiveCache(MavenSession session) {
+    this(SessionProperties.getInt(session, PROP_MAX_SIZE, DEFAULT_MAX_SIZE));
+  }
+
+  ClasspathArchiveCache(int maxSize) {
+    CACHE.init(maxSize);
+  }
+
+  /**
+   * Returns indexed jar file or {@code null} if the file is not a jar.
+   */
+  public Archive get(File location) {
+    final File file = location.toPath().toAbsolutePath().normalize().toFile();
+    Archive archive = CACHE.get(file, new Callable<Archive>() {
+      @Override
+      public Archive call() {
+        return load(file);
+      }
+    }, new SharedCache.Validator<Archive>() {
+      @Override
+      public boolean isValid(Archive archive) {
+        return archive.stamp == getStamp(file);
+      }
+    });
+    return archive.packages != null ? archive : null;
+  }
+
+  private static Archive load(File file) {
+    long stamp = getStamp(file);
+    try {
+      return Archive.create(file, stamp);
+    } catch (IOException e) {
+      // not a zip/jar, ignore
+      return new Archive(file, stamp, null, null);
+    }
+  }
+
+  private static long getStamp(File file) {
+    return 31 * file.length() + file.lastModified();
+  }
+}
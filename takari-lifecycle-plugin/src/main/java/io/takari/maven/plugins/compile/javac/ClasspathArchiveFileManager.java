@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.javac;
+
+import io.takari.maven.plugins.compile.javac.ClasspathArchiveCache.Archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * Serves compile classpath of a single in-process javac compilation from {@link ClasspathArchiveCache}, so dependency jars are opened and indexed once and shared by all compilations. All other
+ * locations, outputs and sources are handled by the underlying per-compilation file manager. Classpath directories are listed directly, they may change between compilations.
+ */
+class ClasspathArchiveFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+  private final ClasspathArchiveCache archives;
+
+  private final Charset encoding;
+
+  /**
+   * Classpath entries, either {@link Archive} or {@link File} directory, resolved on first use after javac applied compiler options.
+   */
+  private List<Object> classpath;
+
+  public ClasspathArchiveFileManager(StandardJavaFileManager fileManager, ClasspathArchiveCache archives, Charset encoding) {
+    super(fileManager);
+    this.archives = archives;
+    this.encoding = encoding;
+  }
+
+  @Override
+  public Iterable<JavaFileObject> list(Location location, String packageName, Set<Kind> kinds, boolean recurse) throws IOException {
+    if (location != StandardLocation.CLASS_PATH) {
+      return super.list(location, packageName, kinds, recurse);
+    }
+    String packagePath = packageName.replace('.', '/');
+    List<JavaFileObject> result = new ArrayList<JavaFileObject>();
+    for (Object entry : getClasspath()) {
+      if (entry instanceof Archive) {
+        listArchive((Archive) entry, packagePath, kinds, recurse, result);
+      } else {
+        listDirectory((File) entry, packagePath, kinds, recurse, result);
+      }
+    }
+    return result;
+  }
+
+  private List<Object> getClasspath() {
+    if (classpath == null) {
+      List<Object> classpath = new ArrayList<Object>();
+      Iterable<? extends File> location = fileManager.getLocation(StandardLocation.CLASS_PATH);
+      if (location != null) {
+        for (File file : location) {
+          if (file.isDirectory()) {
+            classpath.add(file);
+          } else if (file.isFile()) {
+            Archive archive = archives.get(file);
+            if (archive != null) {
+              classpath.add(archive);
+            }
+          }
+        }
+      }
+      this.classpath = classpath;
+    }
+    return classpath;
+  }
+
+  private void listArchive(Archive archive, String packagePath, Set<Kind> kinds, boolean recurse, List<JavaFileObject> result) {
+    if (!recurse) {
+      listArchivePackage(archive, packagePath, kinds, result);
+      return;
+    }
+    for (String packageName : archive.getPackageNames()) {
+      if (packagePath.isEmpty() || packageName.equals(packagePath) || packageName.startsWith(packagePath + "/")) {
+        listArchivePackage(archive, packageName, kinds, result);
+      }
+    }
+  }
+
+  private void listArchivePackage(Archive archive, String packagePath, Set<Kind> kinds, List<JavaFileObject> result) {
+    for (String name : archive.getEntries(packagePath)) {
+      Kind kind = getKind(name);
+      if (kinds.contains(kind)) {
+        result.add(new ArchiveFileObject(archive, packagePath, name, kind, encoding));
+      }
+    }
+  }
+
+  private void listDirectory(File directory, String packagePath, Set<Kind> kinds, boolean recurse, List<JavaFileObject> result) {
+    File[] files = new File(directory, packagePath).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isFile()) {
+        Kind kind = getKind(file.getName());
+        if (kinds.contains(kind)) {
+          result.add(new DirectoryFileObject(file, packagePath, kind, encoding));
+        }
+      } else if (recurse && file.isDirectory()) {
+        listDirectory(directory, packagePath.isEmpty() ? file.getName() : packagePath + "/" + file.getName(), kinds, true, result);
+      }
+    }
+  }
+
+  @Override
+  public String inferBinaryName(Location location, JavaFileObject file) {
+    if (file instanceof ClasspathFileObject) {
+      return ((ClasspathFileObject) file).binaryName;
+    }
+    return super.inferBinaryName(location, file);
+  }
+
+  @Override
+  public boolean isSameFile(FileObject a, FileObject b) {
+    if (a instanceof ClasspathFileObject || b instanceof ClasspathFileObject) {
+      return a.toUri().equals(b.toUri());
+    }
+    return super.isSameFile(a, b);
+  }
+
+  private static Kind getKind(String name) {
+    for (Kind kind : new Kind[] {Kind.CLASS, Kind.SOURCE, Kind.HTML}) {
+      if (name.endsWith(kind.extension)) {
+        return kind;
+      }
+    }
+    return Kind.OTHER;
+  }
+
+  private abstract static class ClasspathFileObject implements JavaFileObject {
+
+    final String binaryName;
+
+    private final URI uri;
+
+    private final String fileName;
+
+    private final Kind kind;
+
+    private final Charset encoding;
+
+    protected ClasspathFileObject(URI uri, String packagePath, String fileName, Kind kind, Charset encoding) {
+      String simpleName = kind != Kind.OTHER ? fileName.substring(0, fileName.length() - kind.extension.length()) : fileName;
+      this.binaryName = packagePath.isEmpty() ? simpleName : packagePath.replace('/', '.') + "." + simpleName;
+      this.uri = uri;
+      this.fileName = fileName;
+      this.kind = kind;
+      this.encoding = encoding;
+    }
+
+    protected abstract byte[] getBytes() throws IOException;
+
+    @Override
+    public URI toUri() {
+      return uri;
+    }
+
+    @Override
+    public Kind getKind() {
+      return kind;
+    }
+
+    @Override
+    public InputStream openInputStream() throws IOException {
+      return new ByteArrayInputStream(getBytes());
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+      return new String(getBytes(), encoding != null ? encoding : Charset.defaultCharset());
+    }
+
+    @Override
+    public Reader openReader(boolean ignoreEncodingErrors) throws IOException {
+      return new StringReader(getCharContent(ignoreEncodingErrors).toString());
+    }
+
+    @Override
+    public OutputStream openOutputStream() throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Writer openWriter() throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean delete() {
+      return false;
+    }
+
+    @Override
+    public boolean isNameCompatible(String simpleName, Kind kind) {
+      return this.kind == kind && fileName.equals(simpleName + kind.extension);
+    }
+
+    @Override
+    public NestingKind getNestingKind() {
+      return null;
+    }
+
+    @Override
+    public Modifier getAccessLevel() {
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return getName();
+    }
+  }
+
+  private static class ArchiveFileObject extends ClasspathFileObject {
+
+    private final Archive archive;
+
+    private final String entryName;
+
+    public ArchiveFileObject(Archive archive, String packagePath, String fileName, Kind kind, Charset encoding) {
+      this(archive, packagePath.isEmpty() ? fileName : packagePath + "/" + fileName, packagePath, fileName, kind, encoding);
+    }
+
+    private ArchiveFileObject(Archive archive, String entryName, String packagePath, String fileName, Kind kind, Charset encoding) {
+      super(toUri(archive.file, entryName), packagePath, fileName, kind, encoding);
+      this.archive = archive;
+      this.entryName = entryName;
+    }
+
+    private static URI toUri(File file, String entryName) {
+      try {
+        return URI.create("jar:" + file.toURI() + "!/" + new URI(null, entryName, null).getRawPath());
+      } catch (URISyntaxException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+
+    @Override
+    protected byte[] getBytes() throws IOException {
+      return archive.read(entryName);
+    }
+
+    @Override
+    public String getName() {
+      return archive.file.getPath() + "(" + entryName + ")";
+    }
+
+    @Override
+    public long getLastModified() {
+      return archive.file.lastModified();
+    }
+  }
+
+  private static class DirectoryFileObject extends ClasspathFileObject {
+
+    private final File file;
+
+    public DirectoryFileObject(File file, String packagePath, Kind kind, Charset encoding) {
+      super(file.toURI(), packagePath, file.getName(), kind, encoding);
+      this.file = file;
+    }
+
+    @Override
+    protected byte[] getBytes() throws IOException {
+      return Files.readAllBytes(file.toPath());
+    }
+
+    @Override
+    public InputStream openInputStream() throws IOException {
+      return new FileInputStream(file);
+    }
+
+    @Override
+    public String getName() {
+      return file.getPath();
+    }
+
+    @Override
+    public long getLastModified() {
+      return file.lastModified();
+    }
+  }
+}
@@ -9,32 +9,58 @@ package io.takari.maven.plugins.compile.javac;
 
 import io.takari.incrementalbuild.BuildContext;
 import io.takari.incrementalbuild.BuildContext.Input;
+import io.takari.incrementalbuild.BuildContext.InputMetadata;
 import io.takari.incrementalbuild.BuildContext.Output;
+import io.takari.incrementalbuild.BuildContext.OutputMetadata;
 import io.takari.incrementalbuild.BuildContext.Resource;
+import io.takari.incrementalbuild.BuildContext.ResourceStatus;
 import io.takari.incrementalbuild.BuildContext.Severity;
 import io.takari.incrementalbuild.spi.DefaultBuildContext;
+import io.takari.incrementalbuild.spi.DefaultOutputMetadata;
+import io.takari.maven.plugins.compile.AbstractCompileMojo.Debug;
 import io.takari.maven.plugins.compile.AbstractCompileMojo.Proc;
+import io.takari.maven.plugins.compile.jdt.ClassfileDigester;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.processing.Processor;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileManager.Location;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+
+import com.google.common.base.Objects;
+import com.google.common.io.Files;
 
 @Named(CompilerJavac.ID)
 public class CompilerJavac extends AbstractCompilerJavac {
@@ -107,9 +133,53 @@ public class CompilerJavac extends AbstractCompilerJavac {
     }
   };
 
+  /**
+   * Types referenced by classes compiled from the source, see {@link ClassfileReferences}.
+   */
+  private static final String ATTR_REFERENCES = "javac.references";
+
+  /**
+   * {@link ClassfileDigester} structural hash of the class.
+   */
+  private static final String ATTR_CLASS_DIGEST = "javac.class.digest";
+
+  /**
+   * Hash of class constant field values, only present if the class declares constants.
+   */
+  private static final String ATTR_CLASS_CONSTANTS = "javac.class.constants";
+
+  /**
+   * Superclass and interfaces of the class.
+   */
+  private static final String ATTR_CLASS_SUPERTYPES = "javac.class.supertypes";
+
+  /**
+   * Present and {@code true} if the class is an annotation type.
+   */
+  private static final String ATTR_CLASS_ANNOTATION = "javac.class.annotation";
+
+  /**
+   * Present and {@code true} if the source declares types annotated with annotations processed by annotation processors.
+   */
+  private static final String ATTR_PROCESSOR_INPUT = "javac.processorInput";
+
+  /**
+   * Incremental compilation switches to full build after this many compiler rounds.
+   */
+  private static final int MAX_ROUNDS = 10;
+
+  private final ClassfileDigester digester = new ClassfileDigester();
+
+  private boolean incremental;
+
+  private final ClasspathArchiveCache archiveCache;
+
+  private boolean sharedClasspathArchives;
+
   @Inject
-  public CompilerJavac(DefaultBuildContext<?> context, ProjectClasspathDigester digester) {
+  public CompilerJavac(DefaultBuildContext<?> context, ProjectClasspathDigester digester, ClasspathArchiveCache archiveCache) {
     super(context, digester);
+    this.archiveCache = archiveCache;
   }
 
   @Override
@@ -135,80 +205,645 @@ public class CompilerJavac extends AbstractCompilerJavac {
     final JavaCompiler compiler = factory.acquire();
     final StandardJavaFileManager javaFileManager = compiler.getStandardFileManager(null, null, getSourceEncoding());
     try {
-      compile(compiler, javaFileManager);
+      return compile(compiler, javaFileManager);
     } finally {
       javaFileManager.flush();
       javaFileManager.close();
       factory.release(compiler);
     }
+  }
 
-    return sources.size();
+  private int compile(JavaCompiler compiler, StandardJavaFileManager javaFileManager) throws IOException {
+    if (!incremental) {
+      context.deleteStaleOutputs(false);
+      Compilation compilation = new Compilation(compiler, javaFileManager, false);
+      compilation.compile(getSourceFiles());
+      compilation.report();
+      return sources.size();
+    }
+    return new IncrementalCompilation(compiler, javaFileManager).compile();
   }
 
-  private void compile(JavaCompiler compiler, StandardJavaFileManager javaFileManager) throws IOException {
-    context.deleteStaleOutputs(false);
+  /**
+   * Compiles sources in one or more javac rounds, all rounds share the same build context inputs. Compiler messages are reported after the last round, each source gets messages of its last
+   * compilation, messages not associated with any source are those of the last round.
+   */
+  private class Compilation {
 
-    final DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<JavaFileObject>();
-    final Iterable<? extends JavaFileObject> javaSources = javaFileManager.getJavaFileObjectsFromFiles(getSourceFiles());
+    private final JavaCompiler compiler;
 
+    private final StandardJavaFileManager javaFileManager;
+
+    private final boolean trackReferences;
+
+    /**
+     * Outputs not associated with any input, i.e. generated by annotation processors.
+     */
     final Map<File, Output<File>> looseOutputs = new HashMap<File, Output<File>>();
-    final Map<File, Input<File>> inputs = new HashMap<File, Input<File>>();
 
-    for (JavaFileObject source : javaSources) {
-      File sourceFile = FileObjects.toFile(source);
-      inputs.put(sourceFile, context.registerInput(sourceFile).process());
-    }
+    private final Map<File, Input<File>> inputs = new HashMap<File, Input<File>>();
 
-    final Iterable<String> options = getCompilerOptions();
-    final RecordingJavaFileManager recordingFileManager = new RecordingJavaFileManager(javaFileManager) {
-      @Override
-      protected void record(File inputFile, File outputFile) {
-        Input<File> input = inputs.get(inputFile);
-        if (input != null) {
-          input.associateOutput(outputFile);
-        } else {
-          looseOutputs.put(outputFile, context.processOutput(outputFile));
-        }
-      }
-    };
+    private final Map<File, List<Message>> messages = new LinkedHashMap<File, List<Message>>();
+
+    /**
+     * Messages not associated with any source, produced by the last round.
+     */
+    private final List<Message> generalMessages = new ArrayList<Message>();
+
+    /**
+     * Outputs produced by the last round, per round input.
+     */
+    final Map<File, List<Output<File>>> roundOutputs = new LinkedHashMap<File, List<Output<File>>>();
 
-    Writer stdout = new PrintWriter(System.out, true);
-    final JavaCompiler.CompilationTask task = compiler.getTask(stdout, // Writer out
-        recordingFileManager, // file manager
-        diagnosticCollector, // diagnostic listener
-        options, //
-        null, // Iterable<String> classes to process by annotation processor(s)
-        javaSources);
+    /**
+     * Class files produced by the last round, only populated when references are tracked.
+     */
+    final Map<File, Classfile> classfiles = new HashMap<File, Classfile>();
 
-    final boolean success = task.call();
+    /**
+     * Types referenced by the last round inputs, only populated when references are tracked.
+     */
+    final Map<File, Set<String>> roundReferences = new HashMap<File, Set<String>>();
 
-    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnosticCollector.getDiagnostics()) {
-      final JavaFileObject source = diagnostic.getSource();
-      final Severity severity = toSeverity(diagnostic.getKind(), success);
-      final String message = diagnostic.getMessage(null);
+    /**
+     * Outputs not associated with any input produced by the last round, only populated when references are tracked.
+     */
+    final Map<File, Output<File>> roundLooseOutputs = new LinkedHashMap<File, Output<File>>();
 
-      if (isShowWarnings() || severity != Severity.WARNING) {
-        if (source != null) {
-          File file = FileObjects.toFile(source);
-          if (file != null) {
-            Resource<File> resource = inputs.get(file);
-            if (resource == null) {
-              resource = looseOutputs.get(file);
+    /**
+     * The last round inputs that declare types annotated with annotations processed by annotation processors, {@code null} if annotation processors were not tracked.
+     */
+    Set<File> roundProcessorInputs;
+
+    /**
+     * {@code true} if annotation processors of the last round may aggregate over all round sources, see {@link RecordingProcessor}.
+     */
+    boolean roundAggregatingProcessors;
+
+    boolean success = true;
+
+    public Compilation(JavaCompiler compiler, StandardJavaFileManager javaFileManager, boolean trackReferences) {
+      this.compiler = compiler;
+      this.javaFileManager = javaFileManager;
+      this.trackReferences = trackReferences;
+    }
+
+    public void compile(Collection<File> sourceFiles) throws IOException {
+      final DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<JavaFileObject>();
+      final Iterable<? extends JavaFileObject> javaSources = javaFileManager.getJavaFileObjectsFromFiles(sourceFiles);
+
+      roundOutputs.clear();
+      roundReferences.clear();
+      roundLooseOutputs.clear();
+      generalMessages.clear();
+      for (JavaFileObject source : javaSources) {
+        File sourceFile = FileObjects.toFile(source);
+        inputs.put(sourceFile, context.registerInput(sourceFile).process());
+        roundOutputs.put(sourceFile, new ArrayList<Output<File>>());
+        messages.remove(sourceFile);
+      }
+
+      final Iterable<String> options = getCompilerOptions();
+      JavaFileManager fileManager = javaFileManager;
+      if (sharedClasspathArchives) {
+        fileManager = new ClasspathArchiveFileManager(javaFileManager, archiveCache, getSourceEncoding());
+      }
+      final RecordingJavaFileManager recordingFileManager = new RecordingJavaFileManager(fileManager) {
+        @Override
+        protected void record(File inputFile, File outputFile) {
+          Input<File> input = inputs.get(inputFile);
+          if (input != null) {
+            Output<File> output = input.associateOutput(outputFile);
+            List<Output<File>> outputs = roundOutputs.get(inputFile);
+            if (outputs != null) {
+              outputs.add(output);
             }
-            if (resource != null) {
-              resource.addMessage((int) diagnostic.getLineNumber(), (int) diagnostic.getColumnNumber(), message, severity, null);
+          } else {
+            Output<File> output = context.processOutput(outputFile);
+            looseOutputs.put(outputFile, output);
+            roundLooseOutputs.put(outputFile, output);
+          }
+        }
+      };
+
+      Writer stdout = new PrintWriter(System.out, true);
+      final JavaCompiler.CompilationTask task = compiler.getTask(stdout, // Writer out
+          recordingFileManager, // file manager
+          diagnosticCollector, // diagnostic listener
+          options, //
+          null, // Iterable<String> classes to process by annotation processor(s)
+          javaSources);
+
+      Set<String> annotatedTypes = null;
+      AtomicBoolean aggregating = new AtomicBoolean();
+      ClassLoader processorLoader = null;
+      if (trackReferences && getProc() != Proc.none) {
+        annotatedTypes = new HashSet<String>();
+        processorLoader = trackProcessors(task, recordingFileManager, annotatedTypes, aggregating);
+        if (processorLoader == null) {
+          annotatedTypes = null;
+        }
+      }
+
+      final boolean success;
+      try {
+        success = task.call();
+      } finally {
+        if (processorLoader instanceof Closeable) {
+          ((Closeable) processorLoader).close();
+        }
+      }
+      this.success &= success;
+      this.roundAggregatingProcessors = aggregating.get();
+
+      for (Diagnostic<? extends JavaFileObject> diagnostic : diagnosticCollector.getDiagnostics()) {
+        final JavaFileObject source = diagnostic.getSource();
+        final Severity severity = toSeverity(diagnostic.getKind(), success);
+        final String message = diagnostic.getMessage(null);
+
+        if (isShowWarnings() || severity != Severity.WARNING) {
+          if (source != null) {
+            File file = FileObjects.toFile(source);
+            if (file != null) {
+              List<Message> fileMessages = messages.get(file);
+              if (fileMessages == null) {
+                fileMessages = new ArrayList<Message>();
+                messages.put(file, fileMessages);
+              }
+              fileMessages.add(new Message((int) diagnostic.getLineNumber(), (int) diagnostic.getColumnNumber(), message, severity));
             } else {
-              log.warn("Unexpected java {} resource {}", source.getKind(), source.toUri().toASCIIString());
+              log.warn("Unsupported compiler message on {} resource {}: {}", source.getKind(), source.toUri(), message);
             }
           } else {
-            log.warn("Unsupported compiler message on {} resource {}: {}", source.getKind(), source.toUri(), message);
+            generalMessages.add(new Message(0, 0, message, severity));
+          }
+        }
+      }
+
+      // failed compilation does not write class files, references of sources without class files are unknown and must not be used by the next build
+      if (trackReferences && success) {
+        classfiles.clear();
+        roundProcessorInputs = annotatedTypes != null ? new HashSet<File>() : null;
+        for (Map.Entry<File, List<Output<File>>> entry : roundOutputs.entrySet()) {
+          HashSet<String> references = new HashSet<String>();
+          boolean processorInput = false;
+          for (Output<File> output : entry.getValue()) {
+            Classfile classfile = readClassfile(output);
+            if (classfile != null) {
+              classfiles.put(output.getResource(), classfile);
+              references.addAll(classfile.references.getReferences());
+              processorInput |= annotatedTypes != null && annotatedTypes.contains(classfile.references.getType());
+            }
+          }
+          Input<File> input = inputs.get(entry.getKey());
+          input.setAttribute(ATTR_REFERENCES, references);
+          roundReferences.put(entry.getKey(), references);
+          if (processorInput) {
+            input.setAttribute(ATTR_PROCESSOR_INPUT, Boolean.TRUE);
+            roundProcessorInputs.add(entry.getKey());
+          }
+        }
+        for (Output<File> output : roundLooseOutputs.values()) {
+          Classfile classfile = readClassfile(output);
+          if (classfile != null) {
+            classfiles.put(output.getResource(), classfile);
+          }
+        }
+      }
+    }
+
+    /**
+     * Replaces annotation processors javac would discover with wrappers that record annotated types. Returns class loader of the processors, which must be closed after compilation, or
+     * {@code null} if the processors could not be loaded, in which case javac runs the processors as usual.
+     */
+    private ClassLoader trackProcessors(JavaCompiler.CompilationTask task, JavaFileManager fileManager, Set<String> annotatedTypes, AtomicBoolean aggregating) {
+      // javac loads processors from classpath unless processor path is set
+      Location location = fileManager.hasLocation(StandardLocation.ANNOTATION_PROCESSOR_PATH) ? StandardLocation.ANNOTATION_PROCESSOR_PATH : StandardLocation.CLASS_PATH;
+      ClassLoader loader = fileManager.getClassLoader(location);
+      if (loader == null) {
+        return null;
+      }
+      try {
+        List<Processor> processors = new ArrayList<Processor>();
+        for (Processor processor : RecordingProcessor.load(loader, getAnnotationProcessors())) {
+          processors.add(new RecordingProcessor(processor, annotatedTypes, aggregating));
+        }
+        task.setProcessors(processors);
+        return loader;
+      } catch (ReflectiveOperationException | ServiceConfigurationError | RuntimeException e) {
+        log.debug("Could not load annotation processors", e);
+        if (loader instanceof Closeable) {
+          try {
+            ((Closeable) loader).close();
+          } catch (IOException ignored) {
+            // ignore
+          }
+        }
+        return null;
+      }
+    }
+
+    private Classfile readClassfile(Output<File> output) throws IOException {
+      File file = output.getResource();
+      if (!file.getName().endsWith(".class") || !file.isFile()) {
+        return null;
+      }
+      byte[] bytes = Files.toByteArray(file);
+      ClassfileReferences references;
+      byte[] digest;
+      try {
+        references = ClassfileReferences.read(bytes);
+        digest = digester.digest(bytes);
+      } catch (IOException | ClassFormatException e) {
+        log.debug("Could not read class file {}", file, e);
+        return null;
+      }
+      if (digest != null) {
+        output.setAttribute(ATTR_CLASS_DIGEST, digest);
+      }
+      output.setAttribute(ATTR_CLASS_SUPERTYPES, new ArrayList<String>(references.getSupertypes()));
+      if (references.getConstantsHash() != null) {
+        output.setAttribute(ATTR_CLASS_CONSTANTS, references.getConstantsHash());
+      }
+      if (references.isAnnotation()) {
+        output.setAttribute(ATTR_CLASS_ANNOTATION, Boolean.TRUE);
+      }
+      return new Classfile(references, digest);
+    }
+
+    public void report() {
+      for (Map.Entry<File, List<Message>> entry : messages.entrySet()) {
+        Resource<File> resource = inputs.get(entry.getKey());
+        if (resource == null) {
+          resource = looseOutputs.get(entry.getKey());
+        }
+        if (resource != null) {
+          for (Message message : entry.getValue()) {
+            resource.addMessage(message.line, message.column, message.message, message.severity, null);
           }
         } else {
-          Input<File> input = context.registerInput(getPom()).process();
+          log.warn("Unexpected java resource {}", entry.getKey());
+        }
+      }
+      if (!generalMessages.isEmpty()) {
+        Input<File> input = context.registerInput(getPom()).process();
+        for (Message message : generalMessages) {
           // TODO execution line/column
-          input.addMessage(0, 0, message, severity, null);
+          input.addMessage(message.line, message.column, message.message, message.severity, null);
+        }
+      }
+    }
+  }
+
+  private static class Classfile {
+    final ClassfileReferences references;
+    final byte[] digest;
+
+    Classfile(ClassfileReferences references, byte[] digest) {
+      this.references = references;
+      this.digest = digest;
+    }
+  }
+
+  private static class Message {
+    final int line;
+    final int column;
+    final String message;
+    final Severity severity;
+
+    Message(int line, int column, String message, Severity severity) {
+      this.line = line;
+      this.column = column;
+      this.message = message;
+      this.severity = severity;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(line, column, message, severity);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Message)) {
+        return false;
+      }
+      Message other = (Message) obj;
+      return line == other.line && column == other.column && message.equals(other.message) && severity == other.severity;
+    }
+  }
+
+  /**
+   * Compiles modified sources and sources that reference types with changed {@link ClassfileDigester structure}, iterating until no more dependents are affected. Compiles all sources in a single
+   * round when previous build state is not usable or changes cannot be tracked through type references.
+   * <p>
+   * With annotation processing enabled, sources that declare types annotated with processed annotations are compiled in every round, so processors always see all their inputs. Classes
+   * generated by processors are tracked like classes of project sources. Processors are assumed to only depend on annotated elements and types they reference. Processors that claim all
+   * annotations or look at all root elements of a round, for example to generate aggregated outputs from all sources, and changes that leave generated outputs stale, for example removal of a
+   * processor input, result in full compilation.
+   */
+  private class IncrementalCompilation {
+
+    private final Compilation compilation;
+
+    /**
+     * Project types declared by each source, in class file internal form.
+     */
+    private final Map<File, Set<String>> sourceTypes = new HashMap<File, Set<String>>();
+
+    /**
+     * Types referenced by each source.
+     */
+    private final Map<File, Set<String>> sourceReferences = new HashMap<File, Set<String>>();
+
+    private final Map<String, byte[]> digests = new HashMap<String, byte[]>();
+
+    private final Map<String, String> constants = new HashMap<String, String>();
+
+    private final Map<String, List<String>> supertypes = new HashMap<String, List<String>>();
+
+    /**
+     * Annotation types, uses of {@code SOURCE} retention annotations are not tracked.
+     */
+    private final Set<String> annotationTypes = new HashSet<String>();
+
+    /**
+     * Sources that declare types annotated with annotations processed by annotation processors.
+     */
+    private final Set<File> processorInputs = new HashSet<File>();
+
+    private final Set<File> compiled = new HashSet<File>();
+
+    private final List<File> looseOutputs = new ArrayList<File>();
+
+    public IncrementalCompilation(JavaCompiler compiler, StandardJavaFileManager javaFileManager) {
+      this.compilation = new Compilation(compiler, javaFileManager, true);
+    }
+
+    public int compile() throws IOException {
+      boolean processing = getProc() != Proc.none;
+      // local variable types are only referenced from LocalVariableTable
+      boolean fullBuild = context.isEscalated() || classpathChanged || getProc() == Proc.only || !hasLocalVariableTable();
+
+      // capture previous build state before any input is processed
+      for (OutputMetadata<File> output : context.getProcessedOutputs()) {
+        String type = getType(output.getResource());
+        if (type != null) {
+          byte[] digest = output.getAttribute(ATTR_CLASS_DIGEST, byte[].class);
+          if (digest != null) {
+            digests.put(type, digest);
+          }
+          String hash = output.getAttribute(ATTR_CLASS_CONSTANTS, String.class);
+          if (hash != null) {
+            constants.put(type, hash);
+          }
+          @SuppressWarnings("unchecked")
+          List<String> types = output.getAttribute(ATTR_CLASS_SUPERTYPES, ArrayList.class);
+          if (types != null) {
+            supertypes.put(type, types);
+          }
+          if (Boolean.TRUE.equals(output.getAttribute(ATTR_CLASS_ANNOTATION, Boolean.class))) {
+            annotationTypes.add(type);
+          }
+        }
+        if (!output.getAssociatedInputs(File.class).iterator().hasNext()) {
+          looseOutputs.add(output.getResource());
+        }
+      }
+
+      Set<File> queue = new LinkedHashSet<File>();
+      for (InputMetadata<File> source : sources) {
+        Set<String> types = new HashSet<String>();
+        for (OutputMetadata<File> output : source.getAssociatedOutputs()) {
+          String type = getType(output.getResource());
+          if (type != null) {
+            types.add(type);
+          }
+          ResourceStatus status = output.getStatus();
+          if (status == ResourceStatus.MODIFIED || status == ResourceStatus.REMOVED) {
+            queue.add(source.getResource());
+          }
+        }
+        sourceTypes.put(source.getResource(), types);
+        if (processing && Boolean.TRUE.equals(source.getAttribute(ATTR_PROCESSOR_INPUT, Boolean.class))) {
+          processorInputs.add(source.getResource());
+        }
+        if (source.getStatus() != ResourceStatus.UNMODIFIED) {
+          queue.add(source.getResource());
+        } else {
+          @SuppressWarnings("unchecked")
+          Set<String> references = source.getAttribute(ATTR_REFERENCES, HashSet.class);
+          if (references != null) {
+            sourceReferences.put(source.getResource(), references);
+          } else {
+            // no usable previous state, for example, when switching from full compilation mode
+            fullBuild = true;
+          }
+        }
+      }
+
+      for (InputMetadata<File> source : context.getRemovedInputs(File.class)) {
+        // outputs generated from removed processor inputs are only cleaned up by full compilation
+        fullBuild |= processing && Boolean.TRUE.equals(source.getAttribute(ATTR_PROCESSOR_INPUT, Boolean.class));
+      }
+
+      Set<String> changedTypes = new HashSet<String>();
+      for (DefaultOutputMetadata output : context.deleteStaleOutputs(false)) {
+        String type = getType(output.getResource());
+        if (type != null) {
+          changedTypes.add(type);
+          fullBuild |= constants.remove(type) != null;
+          fullBuild |= annotationTypes.remove(type);
+        }
+      }
+      queue.addAll(getDependents(changedTypes, Collections.<String>emptySet(), Collections.<File>emptySet()));
+
+      int round = 0;
+      while (!queue.isEmpty() && !fullBuild) {
+        if (++round > MAX_ROUNDS) {
+          log.debug("Switching to full build after {} incremental rounds", MAX_ROUNDS);
+          fullBuild = true;
+          break;
+        }
+        Set<File> roundSources = queue;
+        if (processing) {
+          // processors may depend on all their inputs, for example, to generate aggregated outputs
+          roundSources = new LinkedHashSet<File>(queue);
+          roundSources.addAll(processorInputs);
+        }
+        log.debug("Compiling {} sources, round {}", roundSources.size(), round);
+        compilation.compile(roundSources);
+        compiled.addAll(roundSources);
+        if (!compilation.success) {
+          // report errors the same way full build would
+          fullBuild = true;
+          break;
+        }
+        if (processing) {
+          if (compilation.roundProcessorInputs == null) {
+            log.debug("Switching to full build, could not track annotation processors");
+            fullBuild = true;
+            break;
+          }
+          if (compilation.roundAggregatingProcessors) {
+            log.debug("Switching to full build, annotation processors aggregate over all sources");
+            fullBuild = true;
+            break;
+          }
+          processorInputs.removeAll(roundSources);
+          processorInputs.addAll(compilation.roundProcessorInputs);
+        }
+        Set<String> addedTypes = new HashSet<String>();
+        changedTypes.clear();
+        fullBuild = processRoundOutputs(changedTypes, addedTypes);
+        queue = getDependents(changedTypes, addedTypes, roundSources);
+      }
+
+      if (!fullBuild && processing && round > 0) {
+        // all processor inputs were processed again, outputs not generated this time are stale
+        for (File output : looseOutputs) {
+          if (!compilation.looseOutputs.containsKey(output)) {
+            log.debug("Switching to full build, stale annotation processor output {}", output);
+            fullBuild = true;
+            break;
+          }
         }
       }
+
+      if (fullBuild) {
+        compilation.compile(getSourceFiles());
+        compiled.addAll(getSourceFiles());
+      } else {
+        // see skipCompilation
+        for (File output : looseOutputs) {
+          if (!compilation.looseOutputs.containsKey(output)) {
+            context.markOutputAsUptodate(output);
+          }
+        }
+      }
+      compilation.report();
+
+      return compiled.size();
+    }
+
+    /**
+     * Updates type digests and references with outputs of the last compilation round, collects changed and added types. Returns {@code true} if a constant value or an annotation type
+     * changed.
+     */
+    private boolean processRoundOutputs(Set<String> changedTypes, Set<String> addedTypes) {
+      boolean fullBuildRequired = false;
+      for (Map.Entry<File, List<Output<File>>> entry : compilation.roundOutputs.entrySet()) {
+        Set<String> oldTypes = sourceTypes.get(entry.getKey());
+        Set<String> newTypes = new HashSet<String>();
+        for (Output<File> output : entry.getValue()) {
+          String type = getType(output.getResource());
+          if (type == null) {
+            continue;
+          }
+          newTypes.add(type);
+          if (oldTypes == null || !oldTypes.contains(type)) {
+            addedTypes.add(type);
+          }
+          fullBuildRequired |= processClassfile(type, compilation.classfiles.get(output.getResource()), changedTypes);
+        }
+        if (oldTypes != null) {
+          for (String type : oldTypes) {
+            if (!newTypes.contains(type)) {
+              changedTypes.add(type);
+              digests.remove(type);
+              supertypes.remove(type);
+              fullBuildRequired |= constants.remove(type) != null;
+              fullBuildRequired |= annotationTypes.remove(type);
+            }
+          }
+        }
+        sourceTypes.put(entry.getKey(), newTypes);
+        sourceReferences.put(entry.getKey(), compilation.roundReferences.get(entry.getKey()));
+      }
+      // classes compiled from sources generated by annotation processors
+      for (Output<File> output : compilation.roundLooseOutputs.values()) {
+        String type = getType(output.getResource());
+        if (type != null) {
+          if (!digests.containsKey(type)) {
+            addedTypes.add(type);
+          }
+          fullBuildRequired |= processClassfile(type, compilation.classfiles.get(output.getResource()), changedTypes);
+        }
+      }
+      return fullBuildRequired;
+    }
+
+    /**
+     * Updates digest, constants and supertypes of the type, collects the type if its structure changed. Returns {@code true} if a constant value or an annotation type changed.
+     */
+    private boolean processClassfile(String type, Classfile classfile, Set<String> changedTypes) {
+      byte[] digest = classfile != null ? classfile.digest : null;
+      byte[] oldDigest = digest != null ? digests.put(type, digest) : digests.remove(type);
+      boolean changed = digest == null || oldDigest == null || !Arrays.equals(digest, oldDigest);
+      if (changed) {
+        changedTypes.add(type);
+      }
+      String hash = classfile != null ? classfile.references.getConstantsHash() : null;
+      boolean fullBuildRequired = !Objects.equal(hash, hash != null ? constants.put(type, hash) : constants.remove(type));
+      supertypes.put(type, classfile != null ? classfile.references.getSupertypes() : Collections.<String>emptyList());
+      boolean annotation = classfile != null && classfile.references.isAnnotation();
+      boolean oldAnnotation = annotation ? !annotationTypes.add(type) : annotationTypes.remove(type);
+      return fullBuildRequired || changed && (annotation || oldAnnotation);
+    }
+
+    /**
+     * Returns sources that reference changed types, their subtypes or types with the same simple name as added types. Sources compiled in the last round are already up-to-date.
+     */
+    private Set<File> getDependents(Set<String> changedTypes, Set<String> addedTypes, Set<File> roundSources) {
+      Set<File> dependents = new LinkedHashSet<File>();
+      if (changedTypes.isEmpty() && addedTypes.isEmpty()) {
+        return dependents;
+      }
+
+      // members inherited from changed supertypes are referenced through subtypes
+      Set<String> affectedTypes = new HashSet<String>(changedTypes);
+      boolean added;
+      do {
+        added = false;
+        for (Map.Entry<String, List<String>> entry : supertypes.entrySet()) {
+          if (!affectedTypes.contains(entry.getKey()) && !Collections.disjoint(affectedTypes, entry.getValue())) {
+            added |= affectedTypes.add(entry.getKey());
+          }
+        }
+      } while (added);
+
+      // added types can shadow on-demand imported types from other packages
+      Set<String> addedNames = new HashSet<String>();
+      for (String type : addedTypes) {
+        addedNames.add(ClassfileReferences.getSimpleName(type));
+      }
+
+      for (Map.Entry<File, Set<String>> entry : sourceReferences.entrySet()) {
+        File source = entry.getKey();
+        if (roundSources.contains(source)) {
+          continue;
+        }
+        for (String type : entry.getValue()) {
+          if (affectedTypes.contains(type) || addedNames.contains(ClassfileReferences.getSimpleName(type))) {
+            dependents.add(source);
+            break;
+          }
+        }
+      }
+      return dependents;
+    }
+
+    private String getType(File file) {
+      String outputDirectory = getOutputDirectory().getAbsolutePath();
+      String path = file.getAbsolutePath();
+      if (!path.startsWith(outputDirectory) || !path.endsWith(".class")) {
+        return null;
+      }
+      path = path.substring(outputDirectory.length(), path.length() - ".class".length());
+      if (path.startsWith(File.separator)) {
+        path = path.substring(1);
+      }
+      return path.replace(File.separatorChar, '/');
     }
   }
 
@@ -236,6 +871,19 @@ public class CompilerJavac extends AbstractCompilerJavac {
     return severity;
   }
 
+  private boolean hasLocalVariableTable() {
+    Set<Debug> debug = getDebug();
+    return debug == null || debug.contains(Debug.all) || debug.contains(Debug.vars);
+  }
+
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  public void setSharedClasspathArchives(boolean sharedClasspathArchives) {
+    this.sharedClasspathArchives = sharedClasspathArchives;
+  }
+
   @Override
   protected String getCompilerId() {
     return ID;
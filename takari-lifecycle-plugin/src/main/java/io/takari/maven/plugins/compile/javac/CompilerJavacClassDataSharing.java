@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.javac;
+
+import io.takari.incrementalbuild.BuildContext.Severity;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerConfiguration;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerOutputProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Maintains class data sharing archives of forked compiler JVMs. The archive captures {@link CompilerJavacForked} and javac classes loaded during a small training compilation, which saves
+ * class loading and verification on every subsequent fork.
+ * <p>
+ * Archives are keyed by java installation and version and by compiler jar contents, and are created on first use. Archive files are shared by concurrent and subsequent maven JVMs. Uses JDK 13+
+ * dynamic archives, forks on older JDKs run without archive. If the archive does not match the forked JVM after all, the JVM silently runs without it.
+ * <p>
+ * Archives of replaced java installations and compiler jars are never used again. The number of archives in the directory is bounded, least recently used archives are deleted when a new archive
+ * is created.
+ */
+class CompilerJavacClassDataSharing {
+
+  private static final Logger log = LoggerFactory.getLogger(CompilerJavacClassDataSharing.class);
+
+  private static final int MIN_FEATURE_VERSION = 13;
+
+  private static final String PREFIX = "forked-javac-";
+
+  private static final String SUFFIX = ".jsa";
+
+  /**
+   * Maximum number of archives kept in the archive directory. Archives are tens of megabytes each, the directory is shared by all java installations and plugin versions used on the machine.
+   */
+  static final int MAX_ARCHIVES = 8;
+
+  private static final String TRAINING_SOURCE = "" //
+      + "import java.util.ArrayList;\n" //
+      + "import java.util.List;\n" //
+      + "public class Training implements java.io.Serializable {\n" //
+      + "  private final List<String> values = new ArrayList<>();\n" //
+      + "  @Override\n" //
+      + "  public String toString() { return values.toString(); }\n" //
+      + "}\n";
+
+  /**
+   * Archive file per java executable and compiler jar, or {@code null} if archive could not be created.
+   */
+  private static final Map<String, File> ARCHIVES = new HashMap<String, File>();
+
+  private CompilerJavacClassDataSharing() {}
+
+  /**
+   * Returns JVM options that use the class data sharing archive of forked compiler launched with {@code executable} and {@code jar}. Creates the archive in {@code directory} if necessary.
+   * Returns empty list if the current JDK does not support dynamic archives or the archive could not be created.
+   */
+  public static List<String> getJvmOptions(String executable, File jar, File directory) {
+    if (getFeatureVersion() < MIN_FEATURE_VERSION) {
+      return Collections.emptyList();
+    }
+    File archive = getArchive(executable, jar, directory);
+    if (archive == null) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+  }
+
+  private static int getFeatureVersion() {
+    String version = System.getProperty("java.specification.version");
+    if (version.startsWith("1.")) {
+      version = version.substring(2);
+    }
+    try {
+      return Integer.parseInt(version);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static synchronized File getArchive(String executable, File jar, File directory) {
+    String cacheKey = executable + File.pathSeparator + jar.getAbsolutePath() + File.pathSeparator + jar.length() + File.pathSeparator + jar.lastModified();
+    if (ARCHIVES.containsKey(cacheKey)) {
+      return ARCHIVES.get(cacheKey);
+    }
+    File archive = null;
+    try {
+      archive = new File(directory, getArchiveName(executable, jar));
+      if (archive.isFile()) {
+        // once per JVM, keeps archives in use from being evicted
+        archive.setLastModified(System.currentTimeMillis());
+      } else {
+        createArchive(executable, jar, archive);
+        evictIfNecessary(directory, archive);
+      }
+    } catch (IOException e) {
+      log.warn("Could not create forked compiler class data sharing archive {}, forked compilers will run without it", archive, e);
+      archive = null;
+    }
+    ARCHIVES.put(cacheKey, archive);
+    return archive;
+  }
+
+  private static String getArchiveName(String executable, File jar) throws IOException {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putString(executable, Charsets.UTF_8);
+    hasher.putString(System.getProperty("java.vm.vendor"), Charsets.UTF_8);
+    hasher.putString(System.getProperty("java.vm.version"), Charsets.UTF_8);
+    hasher.putBytes(com.google.common.io.Files.hash(jar, Hashing.murmur3_128()).asBytes());
+    return PREFIX + getFeatureVersion() + "-" + hasher.hash() + SUFFIX;
+  }
+
+  /**
+   * Compiles a training source in a forked compiler JVM that dumps loaded classes at exit.
+   */
+  private static void createArchive(String executable, File jar, File archive) throws IOException {
+    File directory = archive.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create directory " + directory);
+    }
+    log.info("Creating forked compiler class data sharing archive {}", archive);
+
+    File workdir = Files.createTempDirectory(directory.toPath(), "training").toFile();
+    File temp = new File(workdir, archive.getName());
+    try {
+      File source = new File(workdir, "Training.java");
+      Files.write(source.toPath(), TRAINING_SOURCE.getBytes(Charsets.UTF_8));
+      File classes = new File(workdir, "classes");
+
+      List<String> command = new ArrayList<String>();
+      command.add(executable);
+      command.add("-cp");
+      command.add(jar.getAbsolutePath());
+      command.addAll(CompilerJavacForked.getJvmLogOptions());
+      command.add("-XX:ArchiveClassesAtExit=" + temp.getAbsolutePath());
+      command.add(CompilerJavacForked.class.getName());
+
+      List<String> options = Arrays.asList("-d", classes.getAbsolutePath(), "-cp", classes.getAbsolutePath());
+      CompilerConfiguration config = new CompilerConfiguration(Charsets.UTF_8, options, Collections.singletonList(source));
+      final List<String> errors = new ArrayList<String>();
+      CompilerJavacWorkerPool.compileOnce(command, workdir, config, new CompilerOutputProcessor() {
+        @Override
+        public void processOutput(File inputFile, File outputFile) {}
+
+        @Override
+        public void addMessage(String path, int line, int column, String message, Severity kind) {
+          if (kind == Severity.ERROR) {
+            errors.add(message);
+          }
+        }
+
+        @Override
+        public void addLogMessage(String message) {}
+      });
+      if (!errors.isEmpty()) {
+        throw new IOException("Training compilation failed " + errors);
+      }
+      if (!temp.isFile()) {
+        throw new IOException("Forked compiler JVM did not create the archive");
+      }
+
+      // concurrent maven JVMs create identical archives, last one wins
+      Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      delete(workdir);
+    }
+  }
+
+  /**
+   * Deletes least recently used archives other than {@code current} if the directory has more than {@link #MAX_ARCHIVES} archives. Archives in use by running JVMs may fail to delete on some
+   * platforms, these are left for the next eviction.
+   */
+  private static void evictIfNecessary(File directory, File current) {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    // snapshot timestamps, concurrent maven JVMs may touch archives while they are being sorted
+    List<long[]> archives = new ArrayList<long[]>();
+    for (int i = 0; i < files.length; i++) {
+      String name = files[i].getName();
+      if (name.startsWith(PREFIX) && name.endsWith(SUFFIX) && !files[i].equals(current)) {
+        archives.add(new long[] {files[i].lastModified(), i});
+      }
+    }
+    // the current archive counts towards the limit
+    int excess = archives.size() + 1 - MAX_ARCHIVES;
+    if (excess <= 0) {
+      return;
+    }
+    Collections.sort(archives, new Comparator<long[]>() {
+      @Override
+      public int compare(long[] o1, long[] o2) {
+        return Long.compare(o1[0], o2[0]);
+      }
+    });
+    for (int i = 0; i < excess; i++) {
+      File file = files[(int) archives.get(i)[1]];
+      if (file.delete()) {
+        log.debug("Deleted forked compiler class data sharing archive {}", file);
+      }
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
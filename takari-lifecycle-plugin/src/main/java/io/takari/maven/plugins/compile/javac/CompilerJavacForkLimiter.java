@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.javac;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+
+/**
+ * JVM-wide limit of concurrently running forked compilations, shared by all projects of parallel reactor builds. Limits both the number of concurrent forks and the sum of their max heap
+ * sizes. Compilations that exceed either limit wait in first-come-first-served order, so compilations with large heaps are not starved by smaller ones. A compilation that does not fit in the
+ * memory budget on its own still runs, but only when no other forked compilation is running. Both limits are opt-in, see {@link CompilerJavacLauncher#PROP_MAX_FORKS} and
+ * {@link CompilerJavacLauncher#PROP_MEMORY_BUDGET}.
+ * <p>
+ * Idle forked JVMs kept for reuse, see {@link CompilerJavacWorkerPool}, are counted against the memory budget too. Idle forks are closed, least recently used first, before a compilation that
+ * does not fit in the budget is made to wait.
+ */
+class CompilerJavacForkLimiter {
+
+  /**
+   * Assumed max heap size of forks started without {@code maxmem}. JVM default max heap size is 1/4 of physical memory, which javac rarely needs, so the assumed size is capped.
+   */
+  private static final long DEFAULT_FORK_MEMORY = 1024L * 1024 * 1024;
+
+  /**
+   * Idle forked JVMs that hold memory outside of running compilations.
+   */
+  static interface IdleForks {
+
+    /**
+     * Returns the sum of max heap sizes of idle forks, in bytes.
+     */
+    long getMemory();
+
+    /**
+     * Closes idle forks, least recently used first, until at least {@code memory} bytes are released or there are no idle forks left. Returns released bytes.
+     */
+    long evict(long memory);
+  }
+
+  private static final IdleForks NO_IDLE_FORKS = new IdleForks() {
+    @Override
+    public long getMemory() {
+      return 0;
+    }
+
+    @Override
+    public long evict(long memory) {
+      return 0;
+    }
+  };
+
+  static final CompilerJavacForkLimiter INSTANCE = new CompilerJavacForkLimiter(CompilerJavacWorkerPool.IDLE_FORKS);
+
+  private final IdleForks idleForks;
+
+  private final Deque<Object> queue = new ArrayDeque<Object>();
+
+  private int forks;
+
+  private long memory;
+
+  CompilerJavacForkLimiter() {
+    this(NO_IDLE_FORKS);
+  }
+
+  CompilerJavacForkLimiter(IdleForks idleForks) {
+    this.idleForks = idleForks;
+  }
+
+  /**
+   * Waits until a compilation with {@code forkMemory} bytes max heap can run within {@code maxForks} and {@code memoryBudget} bytes limits. Non-positive limits are ignored. Returns wait time
+   * in milliseconds. Each successful call must be followed by {@link #release(long)}.
+   */
+  public synchronized long acquire(int maxForks, long memoryBudget, long forkMemory) throws InterruptedException {
+    long start = System.currentTimeMillis();
+    Object ticket = new Object();
+    queue.addLast(ticket);
+    try {
+      while (queue.peekFirst() != ticket || !fits(maxForks, memoryBudget, forkMemory)) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      queue.remove(ticket);
+      notifyAll();
+      throw e;
+    }
+    queue.removeFirst();
+    forks++;
+    memory += forkMemory;
+    // the next queued compilation may fit too
+    notifyAll();
+    return System.currentTimeMillis() - start;
+  }
+
+  public synchronized void release(long forkMemory) {
+    forks--;
+    memory -= forkMemory;
+    notifyAll();
+  }
+
+  private boolean fits(int maxForks, long memoryBudget, long forkMemory) {
+    if (forks > 0 && maxForks > 0 && forks >= maxForks) {
+      return false;
+    }
+    if (memoryBudget > 0) {
+      // idle forks are closed even if this compilation runs alone over budget
+      long excess = memory + idleForks.getMemory() + forkMemory - memoryBudget;
+      if (excess > 0) {
+        excess -= idleForks.evict(excess);
+      }
+      if (excess > 0 && forks > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  synchronized int getForks() {
+    return forks;
+  }
+
+  /**
+   * Returns max heap size, in bytes, of forked JVM started with {@code -Xmx<maxmem>}. Returns JVM default max heap size, but at most {@link #DEFAULT_FORK_MEMORY}, if {@code maxmem} is
+   * {@code null}. Uses JVM {@code -Xmx} value syntax.
+   */
+  public static long getMaxHeap(String maxmem) {
+    if (maxmem == null || maxmem.isEmpty()) {
+      // JVM default max heap is 1/4 of physical memory
+      long physicalMemory = getPhysicalMemory();
+      return physicalMemory > 0 ? Math.min(physicalMemory / 4, DEFAULT_FORK_MEMORY) : DEFAULT_FORK_MEMORY;
+    }
+    String value = maxmem.trim().toLowerCase(Locale.ENGLISH);
+    long multiplier = 1;
+    switch (value.charAt(value.length() - 1)) {
+      case 'k':
+        multiplier = 1024L;
+        break;
+      case 'm':
+        multiplier = 1024L * 1024;
+        break;
+      case 'g':
+        multiplier = 1024L * 1024 * 1024;
+        break;
+      case 't':
+        multiplier = 1024L * 1024 * 1024 * 1024;
+        break;
+    }
+    if (multiplier > 1) {
+      value = value.substring(0, value.length() - 1);
+    }
+    try {
+      return Long.parseLong(value) * multiplier;
+    } catch (NumberFormatException e) {
+      // the forked JVM will fail to start and report the problem
+      return 0;
+    }
+  }
+
+  /**
+   * Returns total physical memory size, in bytes, or {@code 0} if the size is not known.
+   */
+  @SuppressWarnings("deprecation")
+  public static long getPhysicalMemory() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      try {
+        // java 14+, replaces deprecated getTotalPhysicalMemorySize
+        Method method = com.sun.management.OperatingSystemMXBean.class.getMethod("getTotalMemorySize");
+        return (Long) method.invoke(os);
+      } catch (ReflectiveOperationException e) {
+        return ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+      }
+    }
+    return 0;
+  }
+}
@@ -9,36 +9,72 @@ package io.takari.maven.plugins.compile.javac;
 
 import io.takari.incrementalbuild.BuildContext;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
-import javax.tools.DiagnosticCollector;
+import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 
+/**
+ * Forked compiler process. Reads compile requests from stdin and streams compiler output to stdout while javac is running, until stdin end-of-stream. Outputs, warnings and notes are sent as
+ * javac reports them, errors are sent when compilation finishes. Javac and annotation processor console output is redirected to stderr, JVM logging is redirected to stderr by
+ * {@link #getJvmLogOptions()}.
+ * <p>
+ * The protocol is a binary stream of records, each record starts with one byte record type. Strings are encoded as UTF-8 byte length followed by the bytes. Requests are {@code P} (ping) and
+ * {@code C} (compile, followed by {@link CompilerConfiguration}). Responses are {@code P} (ping), {@code O}, {@code M} and {@code L} (see {@link CompilerOutput}), {@code D} (compilation done)
+ * and {@code F} (request failed, followed by failure message, the process exits).
+ */
 public class CompilerJavacForked {
 
-  private static final String EOL = "\n";
+  private static final Charset ENCODING = Charset.forName("UTF-8");
+
+  /**
+   * Command line argument that starts a long-lived worker, followed by idle timeout in seconds.
+   */
+  static final String WORKER = "--worker";
+
+  /**
+   * JVM unified logging goes to stdout by default, including logging enabled by {@code JAVA_TOOL_OPTIONS}, and would corrupt the protocol. Logging to other outputs is not affected.
+   */
+  private static final List<String> JVM_LOG_OPTIONS = Collections.unmodifiableList(Arrays.asList("-Xlog:all=off:stdout", "-Xlog:all=warning:stderr"));
+
+  static final byte REQ_PING = 'P';
+
+  static final byte REQ_COMPILE = 'C';
+
+  static final byte RES_PING = 'P';
+
+  static final byte RES_OUTPUT = 'O';
+
+  static final byte RES_MESSAGE = 'M';
+
+  static final byte RES_LOG = 'L';
+
+  static final byte RES_DONE = 'D';
 
-  private static final String ENCODING = "UTF-8";
+  static final byte RES_FAILED = 'F';
 
   public static class CompilerConfiguration {
 
@@ -66,79 +102,65 @@ public class CompilerJavacForked {
       return sources;
     }
 
-    public void write(File file) throws IOException {
-      Writer writer = newWriter(file);
-      try {
-        // encoding
-        if (encoding != null) {
-          writer.write('C');
-          writer.write(encoding.name());
-          writer.write(EOL);
-        }
+    public void write(DataOutputStream os) throws IOException {
+      writeString(os, encoding != null ? encoding.name() : "");
 
-        // options
-        for (String option : options) {
-          writer.write('O');
-          writer.write(option);
-          writer.write(EOL);
-        }
+      List<String> options = new ArrayList<String>();
+      for (String option : this.options) {
+        options.add(option);
+      }
+      os.writeInt(options.size());
+      for (String option : options) {
+        writeString(os, option);
+      }
 
-        // sources
-        for (File source : sources) {
-          writer.write('S');
-          writer.write(source.getCanonicalPath());
-          writer.write(EOL);
-        }
-      } finally {
-        writer.close();
+      List<String> sources = new ArrayList<String>();
+      for (File source : this.sources) {
+        sources.add(source.getCanonicalPath());
+      }
+      os.writeInt(sources.size());
+      for (String source : sources) {
+        writeString(os, source);
       }
     }
 
-    public static CompilerConfiguration read(File file) throws IOException {
-      Charset encoding = null;
-      List<String> options = new ArrayList<String>();
-      List<File> sources = new ArrayList<File>();
+    public static CompilerConfiguration read(DataInputStream is) throws IOException {
+      String encoding = readString(is);
 
-      BufferedReader reader = newBufferedReader(file);
-      try {
-        String str;
-        while ((str = reader.readLine()) != null) {
-          String value = str.substring(1);
-          switch (str.charAt(0)) {
-            case 'C':
-              encoding = Charset.forName(value);
-              break;
-            case 'O':
-              options.add(value);
-              break;
-            case 'S':
-              sources.add(new File(value));
-              break;
-          }
-        }
-      } finally {
-        reader.close();
+      int optionCount = is.readInt();
+      List<String> options = new ArrayList<String>(optionCount);
+      for (int i = 0; i < optionCount; i++) {
+        options.add(readString(is));
+      }
+
+      int sourceCount = is.readInt();
+      List<File> sources = new ArrayList<File>(sourceCount);
+      for (int i = 0; i < sourceCount; i++) {
+        sources.add(new File(readString(is)));
       }
 
-      return new CompilerConfiguration(encoding, options, sources);
+      return new CompilerConfiguration(!encoding.isEmpty() ? Charset.forName(encoding) : null, options, sources);
     }
   }
 
+  /**
+   * Streams compiler output records, {@code O} (input file or empty string, output file), {@code M} (file path or {@code .}, line, column, severity, message) and {@code L} (log message). Each
+   * record is flushed immediately, so the parent process can register outputs and messages while the compilation is still running.
+   */
   public static class CompilerOutput {
 
-    private final Writer writer;
+    private final DataOutputStream os;
 
-    public CompilerOutput(File file) throws IOException {
-      this.writer = newWriter(file);
+    public CompilerOutput(DataOutputStream os) {
+      this.os = os;
     }
 
     public void processOutput(File inputFile, File outputFile) {
       try {
-        writer.write('O');
-        writer.write(inputFile != null ? URLEncoder.encode(inputFile.getCanonicalPath(), ENCODING) : ".");
-        writer.write(' ');
-        writer.write(URLEncoder.encode(outputFile.getCanonicalPath(), ENCODING));
-        writer.write(EOL);
+        os.writeByte(RES_OUTPUT);
+        writeString(os, inputFile != null ? inputFile.getCanonicalPath() : "");
+        writeString(os, outputFile.getCanonicalPath());
+        os.flush();
       } catch (IOException e) {
         handleException(e);
       }
@@ -146,27 +168,23 @@ public class CompilerJavacForked {
 
     public void addMessage(String path, int line, int column, String message, Kind kind) {
       try {
-        writer.write('M');
-        writer.write(URLEncoder.encode(path, ENCODING));
-        writer.write(' ');
-        writer.write(Integer.toString(line));
-        writer.write(' ');
-        writer.write(Integer.toString(column));
-        writer.write(' ');
+        os.writeByte(RES_MESSAGE);
+        writeString(os, path);
+        os.writeInt(line);
+        os.writeInt(column);
         switch (kind) {
           case ERROR:
-            writer.write('E');
+            os.writeByte('E');
             break;
           case NOTE:
-            writer.write('I');
+            os.writeByte('I');
             break;
           default:
-            writer.write('W');
+            os.writeByte('W');
             break;
         }
-        writer.write(' ');
-        writer.write(URLEncoder.encode(message, ENCODING));
-        writer.write(EOL);
+        writeString(os, message);
+        os.flush();
       } catch (IOException e) {
         handleException(e);
       }
@@ -174,65 +192,62 @@ public class CompilerJavacForked {
 
     public void addLogMessage(String message) {
       try {
-        writer.write('L');
-        writer.write(message);
-        writer.write(EOL);
+        os.writeByte(RES_LOG);
+        writeString(os, message);
+        os.flush();
       } catch (IOException e) {
         handleException(e);
       }
     }
 
-    public void close() throws IOException {
-      writer.close();
-    }
-
     private void handleException(IOException e) {
       e.printStackTrace();
       System.exit(1); // this will trigger ExecutionException in Maven plugin
     }
 
-    public static void process(File file, CompilerOutputProcessor callback) throws IOException {
-      BufferedReader reader = newBufferedReader(file);
-      try {
-        String str;
-        while ((str = reader.readLine()) != null) {
-          String value = str.substring(1);
-          switch (str.charAt(0)) {
-            case 'O': {
-              StringTokenizer st = new StringTokenizer(value, " ");
-              String inputPath = URLDecoder.decode(st.nextToken(), ENCODING);
-              String outputPath = URLDecoder.decode(st.nextToken(), ENCODING);
-              callback.processOutput(!".".equals(inputPath) ? new File(inputPath) : null, new File(outputPath));
-              break;
-            }
-            case 'M': {
-              StringTokenizer st = new StringTokenizer(value, " ");
-              String path = URLDecoder.decode(st.nextToken(), ENCODING);
-              int line = Integer.parseInt(st.nextToken());
-              int column = Integer.parseInt(st.nextToken());
-              BuildContext.Severity severity = toSeverity(st.nextToken());
-              String message = URLDecoder.decode(st.nextToken(), ENCODING);
-              callback.addMessage(path, line, column, message, severity);
-              break;
-            }
-            case 'L': {
-              callback.addLogMessage(value);
-              break;
-            }
-            default:
-              throw new IllegalArgumentException();
+    /**
+     * Reads compiler output records until the end of compilation and passes them to the callback.
+     *
+     * @throws IOException if the compilation failed or the forked process terminated unexpectedly
+     */
+    public static void process(DataInputStream is, CompilerOutputProcessor callback) throws IOException {
+      while (true) {
+        byte type = is.readByte();
+        switch (type) {
+          case RES_OUTPUT: {
+            String inputPath = readString(is);
+            String outputPath = readString(is);
+            callback.processOutput(!inputPath.isEmpty() ? new File(inputPath) : null, new File(outputPath));
+            break;
+          }
+          case RES_MESSAGE: {
+            String path = readString(is);
+            int line = is.readInt();
+            int column = is.readInt();
+            BuildContext.Severity severity = toSeverity(is.readByte());
+            String message = readString(is);
+            callback.addMessage(path, line, column, message, severity);
+            break;
           }
+          case RES_LOG: {
+            callback.addLogMessage(readString(is));
+            break;
+          }
+          case RES_DONE:
+            return;
+          case RES_FAILED:
+            throw new IOException("Forked compiler failed: " + readString(is));
+          default:
+            throw new IOException("Unexpected forked compiler output record " + type);
         }
-      } finally {
-        reader.close();
       }
     }
 
-    private static BuildContext.Severity toSeverity(String token) {
+    private static BuildContext.Severity toSeverity(byte token) {
       switch (token) {
-        case "E":
+        case 'E':
           return BuildContext.Severity.ERROR;
-        case "I":
+        case 'I':
           return BuildContext.Severity.INFO;
         default:
           return BuildContext.Severity.WARNING;
@@ -248,25 +263,99 @@ public class CompilerJavacForked {
     public void addLogMessage(String message);
   }
 
-  static Writer newWriter(File file) throws IOException {
-    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+  static void writeString(DataOutputStream os, String str) throws IOException {
+    byte[] bytes = str.getBytes(ENCODING);
+    os.writeInt(bytes.length);
+    os.write(bytes);
+  }
+
+  static String readString(DataInputStream is) throws IOException {
+    byte[] bytes = new byte[is.readInt()];
+    is.readFully(bytes);
+    return new String(bytes, ENCODING);
   }
 
-  static BufferedReader newBufferedReader(File file) throws IOException {
-    return new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+  /**
+   * Returns options of the forked compiler JVM that keep JVM logging off the protocol stream. Returns empty list on java 8 and older, which do not support unified logging.
+   */
+  static List<String> getJvmLogOptions() {
+    String version = System.getProperty("java.specification.version");
+    return version.startsWith("1.") ? Collections.<String>emptyList() : JVM_LOG_OPTIONS;
   }
 
   public static void main(String[] args) throws IOException {
-    final CompilerConfiguration config = CompilerConfiguration.read(new File(args[0]));
-    final CompilerOutput output = new CompilerOutput(new File(args[1]));
-    try {
-      compile(config, output);
-    } finally {
-      output.close();
+    long idleTimeout = args.length > 1 && WORKER.equals(args[0]) ? Long.parseLong(args[1]) : 0;
+
+    final DataInputStream requests = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+    final DataOutputStream responses = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+    // javac and annotation processor output must not interfere with the protocol
+    System.setOut(System.err);
+
+    serve(requests, responses, idleTimeout);
+  }
+
+  /**
+   * Handles requests until stdin end-of-stream or until no requests were received for {@code idleTimeout} seconds, if positive.
+   */
+  private static void serve(DataInputStream requests, DataOutputStream responses, final long idleTimeout) throws IOException {
+    final AtomicLong lastRequest = new AtomicLong(System.currentTimeMillis());
+    final AtomicBoolean busy = new AtomicBoolean();
+    if (idleTimeout > 0) {
+      Thread watchdog = new Thread("takari-javac-worker-watchdog") {
+        @Override
+        public void run() {
+          while (true) {
+            try {
+              Thread.sleep(1000L);
+            } catch (InterruptedException e) {
+              return;
+            }
+            if (!busy.get() && System.currentTimeMillis() - lastRequest.get() > idleTimeout * 1000L) {
+              System.exit(0);
+            }
+          }
+        }
+      };
+      watchdog.setDaemon(true);
+      watchdog.start();
+    }
+
+    while (true) {
+      byte type;
+      try {
+        type = requests.readByte();
+      } catch (EOFException e) {
+        return;
+      }
+      busy.set(true);
+      try {
+        switch (type) {
+          case REQ_PING:
+            responses.writeByte(RES_PING);
+            break;
+          case REQ_COMPILE:
+            compile(CompilerConfiguration.read(requests), new CompilerOutput(responses));
+            responses.writeByte(RES_DONE);
+            break;
+          default:
+            throw new IllegalArgumentException("Unsupported request " + type);
+        }
+        responses.flush();
+      } catch (Throwable e) {
+        // the process state is unknown after a failure, report and exit
+        e.printStackTrace();
+        responses.writeByte(RES_FAILED);
+        writeString(responses, String.valueOf(e));
+        responses.flush();
+        System.exit(1);
+      } finally {
+        lastRequest.set(System.currentTimeMillis());
+        busy.set(false);
+      }
     }
   }
 
-  private static void compile(final CompilerConfiguration config, final CompilerOutput output) {
+  private static void compile(final CompilerConfiguration config, final CompilerOutput output) throws IOException {
 
     final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
     if (compiler == null) {
@@ -274,9 +363,40 @@ public class CompilerJavacForked {
       return;
     }
 
+    // when doing annotation processing, javac 6 reports errors when handwritten sources
+    // depend on generated sources even when overall compilation is reported as success
+    // to prevent false build failures, never issue ERROR messages after successful compilation
+    // errors are held back until the compilation result is known, other messages are sent immediately
+    final List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+    final DiagnosticListener<JavaFileObject> diagnosticListener = new DiagnosticListener<JavaFileObject>() {
+      @Override
+      public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+        if (diagnostic.getKind() == Kind.ERROR) {
+          errors.add(diagnostic);
+        } else {
+          addMessage(output, diagnostic, diagnostic.getKind());
+        }
+      }
+    };
+
     final Charset sourceEncoding = config.getSourceEncoding();
-    final DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<JavaFileObject>();
-    final StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnosticCollector, null, sourceEncoding);
+    final StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnosticListener, null, sourceEncoding);
+    boolean success;
+    try {
+      success = compile(compiler, standardFileManager, diagnosticListener, config, output);
+    } finally {
+      // worker processes run many compilations, release classpath jar handles and file manager caches
+      standardFileManager.flush();
+      standardFileManager.close();
+    }
+
+    for (Diagnostic<? extends JavaFileObject> diagnostic : errors) {
+      addMessage(output, diagnostic, success ? Kind.WARNING : Kind.ERROR);
+    }
+  }
+
+  private static boolean compile(JavaCompiler compiler, StandardJavaFileManager standardFileManager, DiagnosticListener<JavaFileObject> diagnosticListener, CompilerConfiguration config,
+      final CompilerOutput output) {
     final Iterable<? extends JavaFileObject> fileObjects = standardFileManager.getJavaFileObjectsFromFiles(config.getSources());
     final Iterable<String> options = config.getCompilerOptions();
     final RecordingJavaFileManager recordingFileManager = new RecordingJavaFileManager(standardFileManager) {
@@ -289,34 +409,25 @@ public class CompilerJavacForked {
     Writer stdout = new PrintWriter(System.out, true);
     final JavaCompiler.CompilationTask task = compiler.getTask(stdout, // Writer out
         recordingFileManager, // file manager
-        diagnosticCollector, // diagnostic listener
+        diagnosticListener, // diagnostic listener
         options, //
         null, // Iterable<String> classes to process by annotation processor(s)
         fileObjects);
 
-    boolean success = task.call();
-
-    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnosticCollector.getDiagnostics()) {
-      JavaFileObject source = diagnostic.getSource();
-
-      // when doing annotation processing, javac 6 reports errors when handwritten sources
-      // depend on generated sources even when overall compilation is reported as success
-      // to prevent false build failures, never issue ERROR messages after successful compilation
-      Kind kind = diagnostic.getKind();
-      if (success && kind == Kind.ERROR) {
-        kind = Kind.WARNING;
-      }
+    return task.call();
+  }
 
-      if (source != null) {
-        File file = FileObjects.toFile(source);
-        if (file != null) {
-          output.addMessage(file.getAbsolutePath(), (int) diagnostic.getLineNumber(), (int) diagnostic.getColumnNumber(), diagnostic.getMessage(null), kind);
-        } else {
-          output.addLogMessage(String.format("Unsupported compiler message on %s resource %s: %s", source.getKind(), source.toUri(), diagnostic.getMessage(null)));
-        }
+  private static void addMessage(CompilerOutput output, Diagnostic<? extends JavaFileObject> diagnostic, Kind kind) {
+    JavaFileObject source = diagnostic.getSource();
+    if (source != null) {
+      File file = FileObjects.toFile(source);
+      if (file != null) {
+        output.addMessage(file.getAbsolutePath(), (int) diagnostic.getLineNumber(), (int) diagnostic.getColumnNumber(), diagnostic.getMessage(null), kind);
       } else {
-        output.addMessage(".", 0, 0, diagnostic.getMessage(null), kind);
+        output.addLogMessage(String.format("Unsupported compiler message on %s resource %s: %s", source.getKind(), source.toUri(), diagnostic.getMessage(null)));
       }
+    } else {
+      output.addMessage(".", 0, 0, diagnostic.getMessage(null), kind);
     }
   }
 }
@@ -15,27 +15,44 @@ import io.takari.incrementalbuild.BuildContext.Resource;
 import io.takari.incrementalbuild.BuildContext.Severity;
 import io.takari.incrementalbuild.spi.DefaultBuildContext;
 import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerConfiguration;
-import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerOutput;
 import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerOutputProcessor;
+import io.takari.maven.plugins.util.SessionProperties;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecutor;
-import org.apache.commons.exec.ExecuteException;
-import org.apache.commons.exec.ShutdownHookProcessDestroyer;
+import org.apache.maven.execution.MavenSession;
 
 @Named(CompilerJavacLauncher.ID)
 public class CompilerJavacLauncher extends AbstractCompilerJavac {
 
   public static final String ID = "forked-javac";
 
+  /**
+   * Maximum number of concurrently running forked compilations in the maven JVM. Zero, the default, disables the limit. Use the number of available processors, for example, to keep parallel
+   * builds from overcommitting the machine.
+   */
+  public static final String PROP_MAX_FORKS = "takari.javacForks.max";
+
+  /**
+   * Maximum sum of max heap sizes of concurrently running forked compilations in the maven JVM, in megabytes. Zero, the default, disables the limit. Compilations without {@code maxmem} are
+   * counted with JVM default max heap size, capped at 1g. Idle forked worker JVMs are counted too and are closed when running compilations need the memory.
+   */
+  public static final String PROP_MEMORY_BUDGET = "takari.javacForks.memoryBudget";
+
+  /**
+   * Forked compiler slot wait time, in milliseconds, reported at info level.
+   */
+  private static final long SLOW_WAIT = 1000;
+
   private File jar;
 
   private File basedir;
@@ -46,71 +63,24 @@ public class CompilerJavacLauncher extends AbstractCompilerJavac {
 
   private String maxmem;
 
+  private boolean workers;
+
+  private int workerIdleTimeout;
+
+  private boolean classDataSharing;
+
+  private final MavenSession session;
+
   @Inject
-  public CompilerJavacLauncher(DefaultBuildContext<?> context, ProjectClasspathDigester digester) {
+  public CompilerJavacLauncher(DefaultBuildContext<?> context, ProjectClasspathDigester digester, MavenSession session) {
     super(context, digester);
+    this.session = session;
   }
 
   @Override
   public int compile() throws IOException {
-    File options = File.createTempFile("javac-forked", ".options", buildDirectory);
-    File output = File.createTempFile("javac-forked", ".output", buildDirectory);
-    compile(options, output);
-    // don't delete temp files in case of an exception
-    // they maybe useful to debug the problem
-    options.delete();
-    output.delete();
-
-    return sources.size();
-  }
-
-  private void compile(File options, File output) throws IOException {
     context.deleteStaleOutputs(false);
 
-    new CompilerConfiguration(getSourceEncoding(), getCompilerOptions(), getSourceFiles()).write(options);
-
-    // use the same JVM as the one used to run Maven (the "java.home" one)
-    String executable = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
-    if (File.separatorChar == '\\') {
-      executable = executable + ".exe";
-    }
-
-    CommandLine cli = new CommandLine(executable);
-
-    // jvm options
-    cli.addArguments(new String[] {"-cp", jar.getAbsolutePath()});
-    if (meminitial != null) {
-      cli.addArgument("-Xms" + meminitial);
-    }
-    if (maxmem != null) {
-      cli.addArgument("-Xmx" + maxmem);
-    }
-
-    // main class and program arguments
-    cli.addArgument(CompilerJavacForked.class.getName());
-    cli.addArgument(options.getAbsolutePath(), false);
-    cli.addArgument(output.getAbsolutePath(), false);
-
-    DefaultExecutor executor = new DefaultExecutor();
-    // ExecuteWatchdog watchdog = null;
-    // if (forkedProcessTimeoutInSeconds > 0) {
-    // watchdog = new ExecuteWatchdog(forkedProcessTimeoutInSeconds * 1000L);
-    // executor.setWatchdog(watchdog);
-    // }
-    // best effort to avoid orphaned child process
-    executor.setProcessDestroyer(new ShutdownHookProcessDestroyer());
-    executor.setWorkingDirectory(basedir);
-
-    log.debug("External java process command line:\n   {}", cli);
-    try {
-      executor.execute(cli); // this throws ExecuteException if process return code != 0
-    } catch (ExecuteException e) {
-      if (!log.isDebugEnabled()) {
-        log.info("External java process command line:\n   {}", cli);
-      }
-      throw e;
-    }
-
     final Map<File, Output<File>> looseOutputs = new HashMap<File, Output<File>>();
     final Map<File, Input<File>> inputs = new HashMap<File, Input<File>>();
 
@@ -118,7 +88,8 @@ public class CompilerJavacLauncher extends AbstractCompilerJavac {
       inputs.put(source.getResource(), source.process());
     }
 
-    CompilerOutput.process(output, new CompilerOutputProcessor() {
+    CompilerConfiguration config = new CompilerConfiguration(getSourceEncoding(), getCompilerOptions(), getSourceFiles());
+    CompilerOutputProcessor callback = new CompilerOutputProcessor() {
       @Override
       public void processOutput(File inputFile, File outputFile) {
         Input<File> input = inputs.get(inputFile);
@@ -153,7 +124,98 @@ public class CompilerJavacLauncher extends AbstractCompilerJavac {
       public void addLogMessage(String message) {
         log.warn(message);
       }
-    });
+    };
+
+    long forkMemory = CompilerJavacForkLimiter.getMaxHeap(maxmem);
+    long waited;
+    try {
+      waited = CompilerJavacForkLimiter.INSTANCE.acquire(getMaxForks(), getMemoryBudget(), forkMemory);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for forked compiler slot");
+    }
+    if (waited >= SLOW_WAIT) {
+      log.info("Waited {} ms for forked compiler slot", waited);
+    } else {
+      log.debug("Waited {} ms for forked compiler slot", waited);
+    }
+    try {
+      // class data sharing training fork, if any, runs within this compilation slot
+      List<String> command = getJvmCommand();
+      if (workers) {
+        command.add(CompilerJavacForked.WORKER);
+        command.add(Integer.toString(workerIdleTimeout));
+        CompilerJavacWorkerPool.compile(command, basedir, getMaxIdleWorkers(), forkMemory, config, callback);
+      } else {
+        log.debug("External java process command line:\n   {}", command);
+        try {
+          CompilerJavacWorkerPool.compileOnce(command, basedir, config, callback);
+        } catch (IOException e) {
+          if (!log.isDebugEnabled()) {
+            log.info("External java process command line:\n   {}", command);
+          }
+          throw e;
+        }
+      }
+    } finally {
+      CompilerJavacForkLimiter.INSTANCE.release(forkMemory);
+    }
+
+    return sources.size();
+  }
+
+  /**
+   * Returns java executable and jvm options of forked compiler processes, followed by the main class.
+   */
+  private List<String> getJvmCommand() {
+    List<String> command = new ArrayList<String>();
+
+    // use the same JVM as the one used to run Maven (the "java.home" one)
+    String executable = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    if (File.separatorChar == '\\') {
+      executable = executable + ".exe";
+    }
+    command.add(executable);
+
+    // jvm options
+    command.add("-cp");
+    command.add(jar.getAbsolutePath());
+    if (meminitial != null) {
+      command.add("-Xms" + meminitial);
+    }
+    if (maxmem != null) {
+      command.add("-Xmx" + maxmem);
+    }
+    command.addAll(CompilerJavacForked.getJvmLogOptions());
+    if (classDataSharing) {
+      command.addAll(CompilerJavacClassDataSharing.getJvmOptions(executable, jar, getClassDataSharingDirectory()));
+    }
+
+    // main class
+    command.add(CompilerJavacForked.class.getName());
+
+    return command;
+  }
+
+  private int getMaxForks() {
+    return SessionProperties.getInt(session, PROP_MAX_FORKS, 0);
+  }
+
+  /**
+   * More idle workers than concurrently running forks are never used at once.
+   */
+  private int getMaxIdleWorkers() {
+    int maxForks = getMaxForks();
+    return maxForks > 0 ? maxForks : Runtime.getRuntime().availableProcessors();
+  }
+
+  private long getMemoryBudget() {
+    return SessionProperties.getLong(session, PROP_MEMORY_BUDGET, 0) * 1024 * 1024;
+  }
+
+  private File getClassDataSharingDirectory() {
+    File directory = SessionProperties.getCacheDirectory(session, "javac-cds");
+    return directory != null ? directory : new File(buildDirectory, "javac-cds");
   }
 
   public void setBasedir(File basedir) {
@@ -176,6 +238,18 @@ public class CompilerJavacLauncher extends AbstractCompilerJavac {
     this.maxmem = maxmem;
   }
 
+  public void setWorkers(boolean workers) {
+    this.workers = workers;
+  }
+
+  public void setWorkerIdleTimeout(int workerIdleTimeout) {
+    this.workerIdleTimeout = workerIdleTimeout;
+  }
+
+  public void setClassDataSharing(boolean classDataSharing) {
+    this.classDataSharing = classDataSharing;
+  }
+
   @Override
   protected String getCompilerId() {
     return ID;
@@ -0,0 +1,433 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.javac;
+
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerConfiguration;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerOutput;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerOutputProcessor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM-wide pool of long-lived forked javac worker processes, see {@link CompilerJavacForked}. Workers are keyed by their full command line, i.e. java executable, compiler jar and memory
+ * settings, and by their working directory, i.e. project basedir, the same as non-pooled forked compilations, because compiler arguments and annotation processors may resolve relative paths
+ * against the working directory. Workers are reused by all compatible compilations, including compilations of subsequent builds when maven JVM stays alive between builds. Idle workers are health-checked before reuse,
+ * workers that crashed or failed a compilation are discarded and replaced by new workers on demand. Workers exit on their own after configured idle timeout or when maven JVM exits. The number of
+ * idle workers kept per command line is capped, workers released above the cap are closed. Idle workers are counted against forked compilations memory budget and are closed when running
+ * compilations need the memory, see {@link CompilerJavacForkLimiter}.
+ * <p>
+ * Compiler output is read on the calling thread as the worker streams it, so outputs, warnings and notes are reported to the build while javac is still running.
+ */
+class CompilerJavacWorkerPool {
+
+  private static final Logger log = LoggerFactory.getLogger(CompilerJavacWorkerPool.class);
+
+  /**
+   * Time to wait for idle worker ping response, in seconds.
+   */
+  private static final long PING_TIMEOUT = 10;
+
+  private static final Map<WorkerKey, Deque<Worker>> IDLE = new HashMap<WorkerKey, Deque<Worker>>();
+
+  private static final Set<Worker> WORKERS = new LinkedHashSet<Worker>();
+
+  static final CompilerJavacForkLimiter.IdleForks IDLE_FORKS = new CompilerJavacForkLimiter.IdleForks() {
+    @Override
+    public long getMemory() {
+      return getIdleMemory();
+    }
+
+    @Override
+    public long evict(long memory) {
+      return evictIdle(memory);
+    }
+  };
+
+  private static final ExecutorService PING_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "takari-javac-worker-ping");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread("takari-javac-workers-shutdown") {
+      @Override
+      public void run() {
+        List<Worker> workers;
+        synchronized (IDLE) {
+          workers = new ArrayList<Worker>(WORKERS);
+        }
+        for (Worker worker : workers) {
+          worker.destroy();
+        }
+      }
+    });
+  }
+
+  /**
+   * Command line and working directory of pooled workers.
+   */
+  private static class WorkerKey {
+    final List<String> command;
+
+    final File basedir;
+
+    WorkerKey(List<String> command, File basedir) {
+      this.command = command;
+      this.basedir = basedir;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * command.hashCode() + basedir.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof WorkerKey)) {
+        return false;
+      }
+      WorkerKey other = (WorkerKey) obj;
+      return command.equals(other.command) && basedir.equals(other.basedir);
+    }
+  }
+
+  /**
+   * Compiles {@code config} sources on a pooled worker started with {@code command} in {@code basedir}, which uses up to {@code memory} bytes of max heap. At most {@code maxIdle} workers
+   * started with {@code command} in {@code basedir} are kept idle after compilation.
+   */
+  public static void compile(List<String> command, File basedir, int maxIdle, long memory, CompilerConfiguration config, CompilerOutputProcessor callback) throws IOException {
+    WorkerKey key = new WorkerKey(command, basedir);
+    Worker worker = acquire(key, memory);
+    boolean reusable = false;
+    try {
+      worker.compile(config, callback);
+      reusable = true;
+    } finally {
+      if (reusable) {
+        release(key, worker, maxIdle);
+      } else {
+        worker.destroy();
+      }
+    }
+  }
+
+  /**
+   * Compiles {@code config} sources in a new forked process started with {@code command} in {@code basedir}. The process exits when the compilation is done.
+   */
+  public static void compileOnce(List<String> command, File basedir, CompilerConfiguration config, CompilerOutputProcessor callback) throws IOException {
+    Worker worker = Worker.start(command, basedir, 0);
+    try {
+      worker.compile(config, callback);
+      worker.shutdown();
+    } finally {
+      worker.destroy();
+    }
+  }
+
+  private static Worker acquire(WorkerKey key, long memory) throws IOException {
+    while (true) {
+      Worker worker;
+      synchronized (IDLE) {
+        Deque<Worker> idle = IDLE.get(key);
+        pruneExited(idle);
+        worker = idle != null ? idle.pollFirst() : null;
+      }
+      if (worker == null) {
+        return Worker.start(key.command, key.basedir, memory);
+      }
+      if (worker.ping()) {
+        return worker;
+      }
+      log.debug("Discarding unresponsive javac worker {}", worker);
+      worker.destroy();
+    }
+  }
+
+  private static void release(WorkerKey key, Worker worker, int maxIdle) {
+    List<Worker> extras = new ArrayList<Worker>();
+    synchronized (IDLE) {
+      Deque<Worker> idle = IDLE.get(key);
+      if (idle == null) {
+        idle = new ArrayDeque<Worker>();
+        IDLE.put(key, idle);
+      }
+      pruneExited(idle);
+      worker.lastUsed = System.nanoTime();
+      idle.addFirst(worker);
+      // least recently used workers are closed first
+      while (idle.size() > maxIdle) {
+        extras.add(idle.pollLast());
+      }
+    }
+    for (Worker extra : extras) {
+      log.debug("Closing javac worker {}, more than {} idle workers", extra, maxIdle);
+      extra.close();
+    }
+  }
+
+  /**
+   * Removes idle workers that exited on their own idle timeout or crashed. Must be called while holding {@link #IDLE} lock.
+   */
+  private static void pruneExited(Deque<Worker> idle) {
+    if (idle == null) {
+      return;
+    }
+    Iterator<Worker> iterator = idle.iterator();
+    while (iterator.hasNext()) {
+      Worker worker = iterator.next();
+      if (!worker.isAlive()) {
+        log.debug("Discarding exited javac worker {}", worker);
+        iterator.remove();
+        WORKERS.remove(worker);
+      }
+    }
+  }
+
+  /**
+   * Returns the sum of max heap sizes of idle workers.
+   */
+  static long getIdleMemory() {
+    long memory = 0;
+    synchronized (IDLE) {
+      for (Deque<Worker> idle : IDLE.values()) {
+        pruneExited(idle);
+        for (Worker worker : idle) {
+          memory += worker.memory;
+        }
+      }
+    }
+    return memory;
+  }
+
+  /**
+   * Closes least recently used idle workers of all command lines until at least {@code memory} bytes of max heap are released. Returns released bytes.
+   */
+  static long evictIdle(long memory) {
+    List<Worker> evicted = new ArrayList<Worker>();
+    long released = 0;
+    synchronized (IDLE) {
+      while (released < memory) {
+        Deque<Worker> oldest = null;
+        for (Deque<Worker> idle : IDLE.values()) {
+          if (!idle.isEmpty() && (oldest == null || idle.peekLast().lastUsed < oldest.peekLast().lastUsed)) {
+            oldest = idle;
+          }
+        }
+        if (oldest == null) {
+          break;
+        }
+        Worker worker = oldest.pollLast();
+        evicted.add(worker);
+        released += worker.memory;
+      }
+    }
+    for (Worker worker : evicted) {
+      log.debug("Closing idle javac worker {}, memory is needed by other compilations", worker);
+      worker.close();
+    }
+    return released;
+  }
+
+  static int getIdleCount(List<String> command, File basedir) {
+    synchronized (IDLE) {
+      Deque<Worker> idle = IDLE.get(new WorkerKey(command, basedir));
+      pruneExited(idle);
+      return idle != null ? idle.size() : 0;
+    }
+  }
+
+  private static class Worker {
+
+    private static int count;
+
+    private final String name;
+
+    private final Process process;
+
+    private final DataOutputStream requests;
+
+    private final DataInputStream responses;
+
+    /**
+     * Max heap size of the worker JVM, in bytes.
+     */
+    private final long memory;
+
+    /**
+     * {@link System#nanoTime()} when the worker was last released to the pool.
+     */
+    private long lastUsed;
+
+    private Worker(String name, Process process, long memory) {
+      this.name = name;
+      this.process = process;
+      this.memory = memory;
+      this.requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+      this.responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+    }
+
+    public static Worker start(List<String> command, File basedir, long memory) throws IOException {
+      String name;
+      synchronized (IDLE) {
+        name = "takari-javac-worker-" + (++count);
+      }
+      log.debug("Starting javac process {}, command line:\n   {}", name, command);
+
+      final Worker worker = new Worker(name, new ProcessBuilder(command).directory(basedir).start(), memory);
+      synchronized (IDLE) {
+        WORKERS.add(worker);
+      }
+
+      // javac and annotation processors print to forked process stderr
+      Thread pump = new Thread(name + "-stderr") {
+        @Override
+        public void run() {
+          byte[] buf = new byte[4096];
+          try (InputStream is = worker.process.getErrorStream()) {
+            int n;
+            while ((n = is.read(buf)) > 0) {
+              System.err.write(buf, 0, n);
+            }
+          } catch (IOException e) {
+            // the process is gone
+          }
+        }
+      };
+      pump.setDaemon(true);
+      pump.start();
+
+      return worker;
+    }
+
+    public boolean ping() {
+      Future<Boolean> response = PING_EXECUTOR.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws IOException {
+          requests.writeByte(CompilerJavacForked.REQ_PING);
+          requests.flush();
+          return responses.readByte() == CompilerJavacForked.RES_PING;
+        }
+      });
+      try {
+        return response.get(PING_TIMEOUT, TimeUnit.SECONDS);
+      } catch (ExecutionException | TimeoutException e) {
+        response.cancel(true);
+        return false;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    public void compile(CompilerConfiguration config, CompilerOutputProcessor callback) throws IOException {
+      try {
+        requests.writeByte(CompilerJavacForked.REQ_COMPILE);
+        config.write(requests);
+        requests.flush();
+        CompilerOutput.process(responses, callback);
+      } catch (EOFException e) {
+        // the process crashed or ran out of memory
+        throw new IOException("Forked javac process " + name + " terminated unexpectedly" + getExitStatus(), e);
+      }
+    }
+
+    /**
+     * Closes forked process stdin and waits for the process to exit.
+     */
+    public void shutdown() throws IOException {
+      requests.close();
+      try {
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+          throw new IOException("Forked javac process " + name + " exit code " + exitCode);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for forked javac process " + name, e);
+      }
+    }
+
+    public boolean isAlive() {
+      try {
+        process.exitValue();
+        return false;
+      } catch (IllegalThreadStateException e) {
+        return true;
+      }
+    }
+
+    private String getExitStatus() {
+      try {
+        return ", exit code " + process.waitFor();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return "";
+      }
+    }
+
+    /**
+     * Closes forked process stdin, the process exits when it reads end-of-stream.
+     */
+    public void close() {
+      synchronized (IDLE) {
+        WORKERS.remove(this);
+      }
+      try {
+        requests.close();
+      } catch (IOException e) {
+        process.destroy();
+      }
+    }
+
+    public void destroy() {
+      synchronized (IDLE) {
+        WORKERS.remove(this);
+      }
+      process.destroy();
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
@@ -9,9 +9,15 @@ package io.takari.maven.plugins.compile.javac;
 
 import io.takari.incrementalbuild.BuildContext.InputMetadata;
 import io.takari.incrementalbuild.spi.DefaultBuildContext;
+import io.takari.maven.plugins.compile.jdt.ClasspathDigester;
+import io.takari.maven.plugins.compile.jdt.ClasspathDigester.DependencyDigest;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,15 +46,27 @@ public class ProjectClasspathDigester {
 
   private final DefaultBuildContext<?> context;
 
+  private final ClasspathDigester abiDigester;
+
+  private boolean abiDigest;
+
   @Inject
-  public ProjectClasspathDigester(DefaultBuildContext<?> context, MavenProject project, MavenSession session) {
+  public ProjectClasspathDigester(DefaultBuildContext<?> context, MavenProject project, MavenSession session, ClasspathDigester abiDigester) {
     this.context = context;
+    this.abiDigester = abiDigester;
 
     // this is only needed for unit tests, but won't hurt in general
     CACHE.remove(new File(project.getBuild().getOutputDirectory()));
     CACHE.remove(new File(project.getBuild().getTestOutputDirectory()));
   }
 
+  /**
+   * When enabled, dependencies with changed timestamps are only considered changed if their aggregate ABI hash, as calculated by jdt compiler {@link ClasspathDigester}, changed.
+   */
+  public void setAbiDigest(boolean abiDigest) {
+    this.abiDigest = abiDigest;
+  }
+
   /**
    * Detects if classpath dependencies changed compared to the previous build or not.
    */
@@ -58,11 +76,12 @@ public class ProjectClasspathDigester {
     boolean changed = false;
 
     Map<File, ArtifactFile> previousArtifacts = getPreviousDependencies();
+    List<ArtifactFile> artifacts = new ArrayList<ArtifactFile>();
 
     for (File dependency : dependencies) {
       ArtifactFile previousArtifact = previousArtifacts.get(dependency);
       ArtifactFile artifact = CACHE.get(dependency);
-      if (artifact == null) {
+      if (artifact == null || (abiDigest && artifact.abiHash == null)) {
         if (dependency.isFile()) {
           artifact = newFileArtifact(dependency, previousArtifact);
         } else if (dependency.isDirectory()) {
@@ -74,6 +93,11 @@ public class ProjectClasspathDigester {
         CACHE.put(dependency, artifact);
       }
 
+      if (abiDigest) {
+        // remember classpath order, it determines which of duplicate dependency types are visible to the compiler
+        artifact = new ArtifactFile(artifact.file, artifact.isFile, artifact.length, artifact.lastModified, artifact.abiHash, artifacts.size());
+      }
+      artifacts.add(artifact);
       context.registerInput(new ArtifactFileHolder(artifact));
 
       if (hasChanged(artifact, previousArtifact)) {
@@ -87,6 +111,10 @@ public class ProjectClasspathDigester {
       log.debug("Removed classpath entry {}", removedArtifact.getResource().file);
     }
 
+    if (abiDigest && changed) {
+      changed = hasChangedTypes(artifacts, new ArrayList<ArtifactFile>(previousArtifacts.values()));
+    }
+
     log.debug("Analyzed {} classpath dependencies ({} ms)", dependencies.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
 
     return changed;
@@ -96,10 +124,94 @@ public class ProjectClasspathDigester {
     if (previousArtifact == null) {
       return true;
     }
+    if (abiDigest && artifact.abiHash != null && previousArtifact.abiHash != null) {
+      return !artifact.abiHash.equals(previousArtifact.abiHash) || artifact.position != previousArtifact.position;
+    }
+    return isModified(artifact, previousArtifact);
+  }
+
+  /**
+   * Compares types visible to the compiler on the current and the previous classpath. When several dependencies define the same type, the first definition wins. Digests of new or changed
+   * dependencies are stored for subsequent builds. Returns {@code true} if any type is different or previous type digests are not available.
+   */
+  private boolean hasChangedTypes(List<ArtifactFile> artifacts, List<ArtifactFile> previousArtifacts) throws IOException {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+
+    List<DependencyDigest> digests = new ArrayList<DependencyDigest>();
+    for (ArtifactFile artifact : artifacts) {
+      digests.add(abiDigester.digestDependency(artifact.file));
+    }
+    abiDigester.storeDigests(digests);
+
+    Collections.sort(previousArtifacts, new Comparator<ArtifactFile>() {
+      @Override
+      public int compare(ArtifactFile a, ArtifactFile b) {
+        return Integer.compare(a.position, b.position);
+      }
+    });
+    List<DependencyDigest> previousDigests = new ArrayList<DependencyDigest>();
+    for (ArtifactFile artifact : previousArtifacts) {
+      DependencyDigest digest = artifact.abiHash != null ? abiDigester.getDigest(artifact.abiHash) : null;
+      if (digest == null) {
+        log.debug("Previous ABI digest of classpath entry {} is not available", artifact.file);
+        return true;
+      }
+      previousDigests.add(digest);
+    }
+
+    Map<String, byte[]> types = getVisibleTypes(digests);
+    Map<String, byte[]> previousTypes = getVisibleTypes(previousDigests);
+    boolean changed = !types.keySet().equals(previousTypes.keySet());
+    if (!changed) {
+      for (Map.Entry<String, byte[]> entry : types.entrySet()) {
+        if (!Arrays.equals(entry.getValue(), previousTypes.get(entry.getKey()))) {
+          changed = true;
+          break;
+        }
+      }
+    }
+
+    log.debug("Compared {} classpath types, ABI {} ({} ms)", types.size(), changed ? "changed" : "did not change", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+    return changed;
+  }
+
+  private static Map<String, byte[]> getVisibleTypes(List<DependencyDigest> digests) {
+    Map<String, byte[]> types = new HashMap<String, byte[]>();
+    for (DependencyDigest digest : digests) {
+      for (Map.Entry<String, byte[]> entry : digest.getTypes().entrySet()) {
+        if (!types.containsKey(entry.getKey())) {
+          types.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    return types;
+  }
+
+  private static boolean isModified(ArtifactFile artifact, ArtifactFile previousArtifact) {
     return artifact.lastModified != previousArtifact.lastModified || artifact.length != previousArtifact.length;
   }
 
-  private ArtifactFile newDirectoryArtifact(File directory, ArtifactFile previousArtifact) {
+  /**
+   * Returns the artifact with aggregate ABI hash, if ABI digest is enabled. The hash of unmodified artifacts is carried over from the previous build.
+   */
+  private ArtifactFile withAbiHash(ArtifactFile artifact, ArtifactFile previousArtifact) throws IOException {
+    if (!abiDigest) {
+      return artifact;
+    }
+    String abiHash;
+    if (previousArtifact != null && previousArtifact.abiHash != null && !isModified(artifact, previousArtifact)) {
+      abiHash = previousArtifact.abiHash;
+    } else {
+      abiHash = abiDigester.digestDependency(artifact.file).getHash();
+      if (previousArtifact != null && abiHash.equals(previousArtifact.abiHash)) {
+        log.debug("Classpath entry {} changed without ABI changes", artifact.file);
+      }
+    }
+    return new ArtifactFile(artifact.file, artifact.isFile, artifact.length, artifact.lastModified, abiHash, 0);
+  }
+
+  private ArtifactFile newDirectoryArtifact(File directory, ArtifactFile previousArtifact) throws IOException {
     StringBuilder msg = new StringBuilder();
     DirectoryScanner scanner = new DirectoryScanner();
     scanner.setBasedir(directory);
@@ -124,11 +236,11 @@ public class ProjectClasspathDigester {
       log.debug("Changed dependency class folder {}: {}", directory, msg.toString());
     }
 
-    return new ArtifactFile(directory, false, fileCount, maxLastModified);
+    return withAbiHash(new ArtifactFile(directory, false, fileCount, maxLastModified), previousArtifact);
   }
 
-  private ArtifactFile newFileArtifact(File file, ArtifactFile previousArtifact) {
-    return new ArtifactFile(file, true, file.length(), file.lastModified());
+  private ArtifactFile newFileArtifact(File file, ArtifactFile previousArtifact) throws IOException {
+    return withAbiHash(new ArtifactFile(file, true, file.length(), file.lastModified()), previousArtifact);
   }
 
   private Map<File, ArtifactFile> getPreviousDependencies() {
@@ -15,12 +15,12 @@ import javax.tools.FileObject;
 import javax.tools.ForwardingFileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
-import javax.tools.StandardJavaFileManager;
 
-abstract class RecordingJavaFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+abstract class RecordingJavaFileManager extends ForwardingJavaFileManager<JavaFileManager> {
 
-  protected RecordingJavaFileManager(StandardJavaFileManager fileManager) {
+  protected RecordingJavaFileManager(JavaFileManager fileManager) {
     super(fileManager);
   }
 
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.javac;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Annotation processor wrapper that records top-level types of elements annotated with annotations processed by the wrapped processor. Used by incremental compilation to find sources
+ * processors depend on.
+ * <p>
+ * Also detects processors that may aggregate over all sources of a round rather than over annotated elements, i.e. processors that claim all annotations or look at all round root elements.
+ * Such processors see only recompiled sources during incremental compilation.
+ */
+class RecordingProcessor implements Processor {
+
+  private final Processor processor;
+
+  private final Collection<String> annotatedTypes;
+
+  private final AtomicBoolean aggregating;
+
+  public RecordingProcessor(Processor processor, Collection<String> annotatedTypes, AtomicBoolean aggregating) {
+    this.processor = processor;
+    this.annotatedTypes = annotatedTypes;
+    this.aggregating = aggregating;
+  }
+
+  @Override
+  public Set<String> getSupportedOptions() {
+    return processor.getSupportedOptions();
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return processor.getSupportedAnnotationTypes();
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return processor.getSupportedSourceVersion();
+  }
+
+  @Override
+  public void init(ProcessingEnvironment processingEnv) {
+    processor.init(processingEnv);
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+    if (processor.getSupportedAnnotationTypes().contains("*")) {
+      aggregating.set(true);
+    }
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        String type = getTopLevelType(element);
+        if (type != null) {
+          annotatedTypes.add(type);
+        }
+      }
+    }
+    return processor.process(annotations, new RoundEnvironment() {
+      @Override
+      public boolean processingOver() {
+        return roundEnv.processingOver();
+      }
+
+      @Override
+      public boolean errorRaised() {
+        return roundEnv.errorRaised();
+      }
+
+      @Override
+      public Set<? extends Element> getRootElements() {
+        aggregating.set(true);
+        return roundEnv.getRootElements();
+      }
+
+      @Override
+      public Set<? extends Element> getElementsAnnotatedWith(TypeElement a) {
+        return roundEnv.getElementsAnnotatedWith(a);
+      }
+
+      @Override
+      public Set<? extends Element> getElementsAnnotatedWith(Class<? extends Annotation> a) {
+        return roundEnv.getElementsAnnotatedWith(a);
+      }
+    });
+  }
+
+  @Override
+  public Iterable<? extends Completion> getCompletions(Element element, AnnotationMirror annotation, ExecutableElement member, String userText) {
+    return processor.getCompletions(element, annotation, member, userText);
+  }
+
+  /**
+   * Returns class file internal name of the top-level type that encloses the element or {@code null} if the element is not enclosed by a type, for example, a package.
+   */
+  static String getTopLevelType(Element element) {
+    while (element.getEnclosingElement() != null && element.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+      element = element.getEnclosingElement();
+    }
+    if (!(element instanceof TypeElement) || element.getEnclosingElement() == null) {
+      return null;
+    }
+    PackageElement pkg = (PackageElement) element.getEnclosingElement();
+    String simpleName = element.getSimpleName().toString();
+    return pkg.isUnnamed() ? simpleName : pkg.getQualifiedName().toString().replace('.', '/') + "/" + simpleName;
+  }
+
+  /**
+   * Instantiates annotation processors the same way javac does, i.e. processors with the given class names or, if no names are given, processors registered as
+   * {@code META-INF/services/javax.annotation.processing.Processor} services.
+   */
+  public static List<Processor> load(ClassLoader loader, String[] names) throws ReflectiveOperationException {
+    List<Processor> processors = new ArrayList<Processor>();
+    if (names != null) {
+      for (String name : names) {
+        processors.add((Processor) loader.loadClass(name).getDeclaredConstructor().newInstance());
+      }
+    } else {
+      for (Processor processor : ServiceLoader.load(Processor.class, loader)) {
+        processors.add(processor);
+      }
+    }
+    return processors;
+  }
+}
@@ -1,7 +1,8 @@
 package io.takari.maven.plugins.compile.jdt;
 
-import io.takari.maven.plugins.compile.jdt.classpath.ClasspathEntry;
 import io.takari.maven.plugins.compile.jdt.classpath.DependencyClasspathEntry;
+import io.takari.maven.plugins.compile.jdt.classpath.FilteredClasspathEntry;
+import io.takari.maven.plugins.compile.jdt.classpath.TypeNameFilter;
 
 import java.util.Collection;
 
@@ -10,7 +11,7 @@ import org.eclipse.jdt.internal.compiler.env.AccessRestriction;
 import org.eclipse.jdt.internal.compiler.env.AccessRule;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 
-class AccessRestrictionClasspathEntry implements ClasspathEntry {
+class AccessRestrictionClasspathEntry implements FilteredClasspathEntry {
   private final DependencyClasspathEntry entry;
   private final AccessRestriction accessRestriction;
 
@@ -29,6 +30,11 @@ class AccessRestrictionClasspathEntry implements ClasspathEntry {
     return entry.findType(packageName, binaryFileName, accessRestriction);
   }
 
+  @Override
+  public TypeNameFilter getTypeNameFilter() {
+    return entry.getTypeNameFilter();
+  }
+
   @Override
   public String getEntryDescription() {
     StringBuilder sb = new StringBuilder();
@@ -7,10 +7,11 @@
  */
 package io.takari.maven.plugins.compile.jdt;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
 import org.eclipse.jdt.internal.compiler.classfmt.FieldInfo;
 import org.eclipse.jdt.internal.compiler.classfmt.MethodInfo;
 import org.eclipse.jdt.internal.compiler.env.ClassSignature;
@@ -22,40 +23,59 @@ import org.eclipse.jdt.internal.compiler.env.IBinaryType;
 import org.eclipse.jdt.internal.compiler.impl.Constant;
 import org.eclipse.jdt.internal.compiler.lookup.TagBits;
 import org.eclipse.jdt.internal.compiler.lookup.TypeIds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 /**
  * Adopted from {@link ClassFileReader#hasStructuralChanges(byte[], boolean, boolean)}
+ * <p>
+ * Class file structure is encoded into a buffer reused for all class files, which is hashed at once. The digest is the same as if the values were fed to a streaming {@link Hasher}, which
+ * encodes primitive values little-endian. Not thread safe.
  */
 public class ClassfileDigester {
 
-  // TODO use Guava Hasher
-  private final MessageDigest digester;
+  /**
+   * Digest algorithm version. Must be incremented whenever digested class file structure, its encoding or default hash function change. Digests produced by different versions are not comparable.
+   */
+  public static final int VERSION = 2;
+
+  /**
+   * Only consider a portion of the tagbits which indicate a structural change for dependents, e.g. @Override change has no influence outside.
+   */
+  static final long STRUCTURAL_TAG_BITS = TagBits.AnnotationTargetMASK // different @Target status ?
+      | TagBits.AnnotationDeprecated // different @Deprecated status ?
+      | TagBits.AnnotationRetentionMASK // different @Retention status ?
+      | TagBits.HierarchyHasProblems; // different hierarchy status ?
+
+  private static final Logger log = LoggerFactory.getLogger(ClassfileDigester.class);
+
+  private final ClassfileSkimmer skimmer = new ClassfileSkimmer();
+
+  private final HashFunction hashFunction;
+
+  private ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
 
   public ClassfileDigester() {
-    try {
-      digester = MessageDigest.getInstance("SHA1");
-    } catch (NoSuchAlgorithmException e) {
-      throw new IllegalStateException("Unsupported JVM", e);
-    }
+    this(Hashing.murmur3_128());
+  }
+
+  public ClassfileDigester(HashFunction hashFunction) {
+    this.hashFunction = hashFunction;
   }
 
   public byte[] digest(IBinaryType classFile) {
+    buffer.clear();
 
     // type level comparison
     // modifiers
     updateInt(classFile.getModifiers());
 
-    // only consider a portion of the tagbits which indicate a structural change for dependents
-    // e.g. @Override change has no influence outside
-    long OnlyStructuralTagBits = TagBits.AnnotationTargetMASK // different @Target status ?
-        | TagBits.AnnotationDeprecated // different @Deprecated status ?
-        | TagBits.AnnotationRetentionMASK // different @Retention status ?
-        | TagBits.HierarchyHasProblems; // different hierarchy status ?
-
     // meta-annotations
-    updateLong(classFile.getTagBits() & OnlyStructuralTagBits);
+    updateLong(classFile.getTagBits() & STRUCTURAL_TAG_BITS);
     // annotations
     updateAnnotations(classFile.getAnnotations());
 
@@ -109,7 +129,41 @@ public class ClassfileDigester {
       }
     }
 
-    return digester.digest();
+    return hash();
+  }
+
+  private byte[] hash() {
+    return hashFunction.hashBytes(buffer.array(), 0, buffer.position()).asBytes();
+  }
+
+  /**
+   * Digests class file bytes directly, without creating {@link ClassFileReader} and its field, method and annotation structures. Returns the same digest as {@link #digest(IBinaryType)} of the same
+   * class file.
+   * <p>
+   * Class files the skimmer fails to digest are digested using {@link ClassFileReader} instead and the failure is logged at debug level, so skimmer defects do not drop types from classpath
+   * digests. Only class files {@link ClassFileReader} cannot read are reported as malformed.
+   */
+  public byte[] digest(byte[] classfile) throws ClassFormatException {
+    RuntimeException failure;
+    try {
+      return skim(classfile);
+    } catch (RuntimeException e) {
+      failure = e;
+    }
+    ClassFileReader reader = new ClassFileReader(classfile, null);
+    if (log.isDebugEnabled()) {
+      log.debug("Could not skim class file of {}, digested with ClassFileReader", new String(reader.getName()), failure);
+    }
+    return digest(reader);
+  }
+
+  /**
+   * Digests class file bytes with {@link ClassfileSkimmer} only, without falling back to {@link ClassFileReader}.
+   */
+  byte[] skim(byte[] classfile) {
+    buffer.clear();
+    skimmer.digest(classfile, this);
+    return hash();
   }
 
   private void updateMethod(MethodInfo methodInfo) {
@@ -147,7 +201,7 @@ public class ClassfileDigester {
     }
   }
 
-  private void updateConstant(Constant constant) {
+  void updateConstant(Constant constant) {
     updateInt(constant.typeID());
     updateString(constant.getClass().getName());
     switch (constant.typeID()) {
@@ -229,45 +283,44 @@ public class ClassfileDigester {
   // TODO move to a general purpose digester?
   //
 
-  private void updateLong(long value) {
-    byte[] tmp = new byte[8];
-    tmp[0] = (byte) ((value >> 0x00) & 0xFF);
-    tmp[1] = (byte) ((value >> 0x08) & 0xFF);
-    tmp[2] = (byte) ((value >> 0x10) & 0xFF);
-    tmp[3] = (byte) ((value >> 0x18) & 0xFF);
-    tmp[4] = (byte) ((value >> 0x20) & 0xFF);
-    tmp[5] = (byte) ((value >> 0x28) & 0xFF);
-    tmp[6] = (byte) ((value >> 0x30) & 0xFF);
-    tmp[7] = (byte) ((value >> 0x38) & 0xFF);
-    digester.update(tmp);
+  private void ensureCapacity(int bytes) {
+    if (buffer.remaining() < bytes) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.flip();
+      grown.put(buffer);
+      buffer = grown;
+    }
   }
 
-  private void updateInt(int value) {
-    byte[] tmp = new byte[4];
-    tmp[0] = (byte) ((value >> 0x00) & 0xFF);
-    tmp[1] = (byte) ((value >> 0x08) & 0xFF);
-    tmp[2] = (byte) ((value >> 0x10) & 0xFF);
-    tmp[3] = (byte) ((value >> 0x18) & 0xFF);
-    digester.update(tmp);
+  void updateLong(long value) {
+    ensureCapacity(8);
+    buffer.putLong(value);
+  }
+
+  void updateInt(int value) {
+    ensureCapacity(4);
+    buffer.putInt(value);
   }
 
   private void updateShort(short value) {
-    byte[] tmp = new byte[2];
-    tmp[0] = (byte) ((value >> 0x00) & 0xFF);
-    tmp[1] = (byte) ((value >> 0x08) & 0xFF);
-    digester.update(tmp);
+    ensureCapacity(2);
+    buffer.putShort(value);
   }
 
   private void updateChars(char[] value) {
     if (value != null) {
+      ensureCapacity(value.length * 2);
       for (int i = 0; i < value.length; i++) {
-        updateChar(value[i]);
+        buffer.putChar(value[i]);
       }
     }
   }
 
   private void updateString(String value) {
-    digester.update(value.getBytes(Charsets.UTF_8));
+    ensureCapacity(value.length() * 2);
+    for (int i = 0; i < value.length(); i++) {
+      buffer.putChar(value.charAt(i));
+    }
   }
 
   private void updateDouble(double value) {
@@ -278,16 +331,18 @@ public class ClassfileDigester {
     updateInt(Float.floatToRawIntBits(value));
   }
 
-  private void updateChar(char value) {
-    updateInt(value);
+  void updateChar(char value) {
+    ensureCapacity(2);
+    buffer.putChar(value);
   }
 
   private void updateByte(byte value) {
-    digester.update(value);
+    ensureCapacity(1);
+    buffer.put(value);
   }
 
-  private void updateBoolean(boolean value) {
-    digester.update(value ? (byte) 1 : (byte) 0);
+  void updateBoolean(boolean value) {
+    updateByte(value ? (byte) 1 : (byte) 0);
   }
 
 }
@@ -0,0 +1,990 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.internal.compiler.ast.Annotation;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.compiler.codegen.AttributeNamesConstants;
+import org.eclipse.jdt.internal.compiler.codegen.ConstantPool;
+import org.eclipse.jdt.internal.compiler.impl.BooleanConstant;
+import org.eclipse.jdt.internal.compiler.impl.ByteConstant;
+import org.eclipse.jdt.internal.compiler.impl.CharConstant;
+import org.eclipse.jdt.internal.compiler.impl.Constant;
+import org.eclipse.jdt.internal.compiler.impl.DoubleConstant;
+import org.eclipse.jdt.internal.compiler.impl.FloatConstant;
+import org.eclipse.jdt.internal.compiler.impl.IntConstant;
+import org.eclipse.jdt.internal.compiler.impl.LongConstant;
+import org.eclipse.jdt.internal.compiler.impl.ShortConstant;
+import org.eclipse.jdt.internal.compiler.impl.StringConstant;
+import org.eclipse.jdt.internal.compiler.lookup.TagBits;
+
+/**
+ * Feeds class file structure to {@link ClassfileDigester} directly from class file bytes. Walks constant pool, class header, fields, methods and their signature related attributes, skips
+ * Code and all other attributes by length and does not create any intermediate structures.
+ * <p>
+ * Mirrors {@link org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader} interpretation of class file contents, including its quirks, so digests produced from bytes are the same as digests
+ * produced from ClassFileReader. Keep the two in sync when upgrading JDT.
+ * <p>
+ * Not thread safe, the skimmer keeps per-classfile state and reuses its buffers.
+ */
+class ClassfileSkimmer {
+
+  private static final int[] NO_REFS = new int[0];
+
+  private byte[] bytes;
+
+  private int[] constantPoolOffsets = new int[256];
+
+  private int constantPoolCount;
+
+  //
+  // class header and attributes
+  //
+
+  private int rawAccessFlags;
+
+  private int accessFlags;
+
+  private int classNameIndex;
+
+  private int superclassNameIndex;
+
+  private int interfacesOffset;
+
+  private int interfacesCount;
+
+  private int fieldsOffset;
+
+  private int methodsOffset;
+
+  private long tagBits;
+
+  private int signatureOffset;
+
+  private int innerClassesOffset;
+
+  private int innerClassesCount;
+
+  private int innerInfoOffset;
+
+  private int innerInfoIndex;
+
+  private int missingTypesOffset;
+
+  private final RefList annotations = new RefList();
+
+  //
+  // current member attributes
+  //
+
+  private int memberFlags;
+
+  private long memberTagBits;
+
+  private int memberSignatureOffset;
+
+  private int memberExceptionsOffset;
+
+  private Constant memberConstant;
+
+  private final RefList memberAnnotations = new RefList();
+
+  private final RefList memberParameterAnnotations = new RefList();
+
+  /** Standard annotation tag bits of the last scanned annotation */
+  private long standardTagBits;
+
+  /**
+   * Growable list of annotation attribute offsets, the lowest bit tells if the attribute is runtime visible.
+   */
+  private static class RefList {
+    int[] refs = NO_REFS;
+    int size;
+
+    void add(int offset, boolean runtimeVisible) {
+      if (size == refs.length) {
+        refs = Arrays.copyOf(refs, Math.max(4, size * 2));
+      }
+      refs[size++] = (offset << 1) | (runtimeVisible ? 1 : 0);
+    }
+
+    int offset(int i) {
+      return refs[i] >>> 1;
+    }
+
+    boolean runtimeVisible(int i) {
+      return (refs[i] & 1) != 0;
+    }
+  }
+
+  void digest(byte[] classfile, ClassfileDigester digester) {
+    this.bytes = classfile;
+    try {
+      read();
+      digest(digester);
+    } finally {
+      bytes = null;
+      annotations.size = 0;
+      memberAnnotations.size = 0;
+      memberParameterAnnotations.size = 0;
+      memberConstant = null;
+    }
+  }
+
+  private void read() {
+    int readOffset = 10;
+    constantPoolCount = u2(8);
+    if (constantPoolOffsets.length < constantPoolCount) {
+      constantPoolOffsets = new int[constantPoolCount];
+    } else {
+      Arrays.fill(constantPoolOffsets, 0, constantPoolCount, 0);
+    }
+    for (int i = 1; i < constantPoolCount; i++) {
+      int tag = u1(readOffset);
+      switch (tag) {
+        case ClassFileConstants.Utf8Tag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += u2(readOffset + 1);
+          readOffset += ClassFileConstants.ConstantUtf8FixedSize;
+          break;
+        case ClassFileConstants.IntegerTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantIntegerFixedSize;
+          break;
+        case ClassFileConstants.FloatTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantFloatFixedSize;
+          break;
+        case ClassFileConstants.LongTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantLongFixedSize;
+          i++;
+          break;
+        case ClassFileConstants.DoubleTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantDoubleFixedSize;
+          i++;
+          break;
+        case ClassFileConstants.ClassTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantClassFixedSize;
+          break;
+        case ClassFileConstants.StringTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantStringFixedSize;
+          break;
+        case ClassFileConstants.FieldRefTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantFieldRefFixedSize;
+          break;
+        case ClassFileConstants.MethodRefTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantMethodRefFixedSize;
+          break;
+        case ClassFileConstants.InterfaceMethodRefTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantInterfaceMethodRefFixedSize;
+          break;
+        case ClassFileConstants.NameAndTypeTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantNameAndTypeFixedSize;
+          break;
+        case ClassFileConstants.MethodHandleTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantMethodHandleFixedSize;
+          break;
+        case ClassFileConstants.MethodTypeTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantMethodTypeFixedSize;
+          break;
+        case ClassFileConstants.InvokeDynamicTag:
+          constantPoolOffsets[i] = readOffset;
+          readOffset += ClassFileConstants.ConstantInvokeDynamicFixedSize;
+          break;
+      }
+    }
+
+    rawAccessFlags = u2(readOffset);
+    accessFlags = rawAccessFlags;
+    classNameIndex = u2(readOffset + 2);
+    superclassNameIndex = u2(readOffset + 4);
+    interfacesCount = u2(readOffset + 6);
+    interfacesOffset = readOffset + 8;
+    readOffset = interfacesOffset + interfacesCount * 2;
+
+    fieldsOffset = readOffset;
+    readOffset = skipMembers(readOffset);
+    methodsOffset = readOffset;
+    readOffset = skipMembers(readOffset);
+
+    tagBits = 0;
+    signatureOffset = -1;
+    innerClassesOffset = -1;
+    innerClassesCount = 0;
+    innerInfoOffset = -1;
+    innerInfoIndex = 0;
+    missingTypesOffset = -1;
+
+    int attributesCount = u2(readOffset);
+    readOffset += 2;
+    for (int i = 0; i < attributesCount; i++) {
+      int nameOffset = cp(u2(readOffset));
+      if (utf8Equals(nameOffset, AttributeNamesConstants.DeprecatedName)) {
+        accessFlags |= ClassFileConstants.AccDeprecated;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.SyntheticName)) {
+        accessFlags |= ClassFileConstants.AccSynthetic;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.SignatureName)) {
+        signatureOffset = cp(u2(readOffset + 6));
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.InnerClassName)) {
+        int count = u2(readOffset + 6);
+        if (count != 0) {
+          innerClassesOffset = readOffset + 8;
+          innerClassesCount = count;
+          for (int j = 0; j < count; j++) {
+            int entryOffset = innerClassesOffset + j * 8;
+            if (classNameIndex == u2(entryOffset)) {
+              innerInfoOffset = entryOffset;
+              innerInfoIndex = j;
+            }
+          }
+        }
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.InconsistentHierarchy)) {
+        tagBits |= TagBits.HierarchyHasProblems;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.RuntimeVisibleAnnotationsName)) {
+        annotations.add(readOffset, true);
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.RuntimeInvisibleAnnotationsName)) {
+        annotations.add(readOffset, false);
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.MissingTypesName)) {
+        if (u2(readOffset + 6) != 0) {
+          missingTypesOffset = readOffset + 6;
+        }
+      }
+      readOffset += 6 + u4(readOffset + 2);
+    }
+    tagBits |= getStandardTagBits(annotations);
+  }
+
+  private int skipMembers(int readOffset) {
+    int count = u2(readOffset);
+    readOffset += 2;
+    for (int i = 0; i < count; i++) {
+      readOffset = skipAttributes(readOffset + 6);
+    }
+    return readOffset;
+  }
+
+  private int skipAttributes(int readOffset) {
+    int attributesCount = u2(readOffset);
+    readOffset += 2;
+    for (int i = 0; i < attributesCount; i++) {
+      readOffset += 6 + u4(readOffset + 2);
+    }
+    return readOffset;
+  }
+
+  /**
+   * Same sequence of updates as {@link ClassfileDigester#digest(org.eclipse.jdt.internal.compiler.env.IBinaryType)}.
+   */
+  private void digest(ClassfileDigester digester) {
+    // modifiers
+    if (innerInfoOffset != -1) {
+      digester.updateInt(u2(innerInfoOffset + 6) //
+          | (accessFlags & ClassFileConstants.AccDeprecated) //
+          | (accessFlags & ClassFileConstants.AccSynthetic));
+    } else {
+      digester.updateInt(accessFlags);
+    }
+
+    // meta-annotations
+    digester.updateLong(tagBits & ClassfileDigester.STRUCTURAL_TAG_BITS);
+    // annotations
+    updateAnnotations(digester, annotations);
+
+    // generic signature
+    if (signatureOffset != -1) {
+      updateUtf8(digester, signatureOffset);
+    }
+    // superclass
+    if (superclassNameIndex != 0) {
+      updateClassName(digester, superclassNameIndex);
+    }
+    // interfaces
+    for (int i = 0; i < interfacesCount; i++) {
+      updateClassName(digester, u2(interfacesOffset + i * 2));
+    }
+
+    // member types, see ClassFileReader#getMemberTypes
+    int startingIndex = innerInfoOffset != -1 ? innerInfoIndex + 1 : 0;
+    for (int i = startingIndex; i < innerClassesCount; i++) {
+      int entryOffset = innerClassesOffset + i * 8;
+      int innerClassNameIndex = u2(entryOffset);
+      int outerClassNameIndex = u2(entryOffset + 2);
+      int innerNameIndex = u2(entryOffset + 4);
+      if (outerClassNameIndex != 0 //
+          && innerNameIndex != 0 //
+          && outerClassNameIndex == classNameIndex //
+          && u2(cp(innerNameIndex) + 1) != 0) {
+        if (innerClassNameIndex != 0) {
+          updateClassName(digester, innerClassNameIndex);
+        }
+        digester.updateInt(u2(entryOffset + 6));
+      }
+    }
+
+    // fields
+    int readOffset = fieldsOffset;
+    int fieldsCount = u2(readOffset);
+    readOffset += 2;
+    for (int i = 0; i < fieldsCount; i++) {
+      readOffset = updateField(digester, readOffset);
+    }
+
+    // methods
+    readOffset = methodsOffset;
+    int methodsCount = u2(readOffset);
+    readOffset += 2;
+    boolean isAnnotationType = (rawAccessFlags & ClassFileConstants.AccAnnotation) != 0;
+    for (int i = 0; i < methodsCount; i++) {
+      readOffset = updateMethod(digester, readOffset, isAnnotationType);
+    }
+
+    // missing types
+    if (missingTypesOffset != -1) {
+      int count = u2(missingTypesOffset);
+      for (int i = 0; i < count; i++) {
+        int utf8Offset = cp(u2(cp(u2(missingTypesOffset + 2 + i * 2)) + 1));
+        updateMissingTypeName(digester, utf8Offset);
+      }
+    }
+  }
+
+  /**
+   * Same sequence of updates as ClassfileDigester#updateField, returns offset of the next field.
+   */
+  private int updateField(ClassfileDigester digester, int memberOffset) {
+    int descriptorOffset = cp(u2(memberOffset + 4));
+    memberFlags = u2(memberOffset);
+    memberSignatureOffset = -1;
+    memberAnnotations.size = 0;
+    memberConstant = null;
+    boolean isConstant = false;
+
+    int readOffset = memberOffset + 6;
+    int attributesCount = u2(readOffset);
+    readOffset += 2;
+    for (int i = 0; i < attributesCount; i++) {
+      int nameOffset = cp(u2(readOffset));
+      if (utf8Equals(nameOffset, AttributeNamesConstants.DeprecatedName)) {
+        memberFlags |= ClassFileConstants.AccDeprecated;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.SyntheticName)) {
+        memberFlags |= ClassFileConstants.AccSynthetic;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.SignatureName)) {
+        memberSignatureOffset = cp(u2(readOffset + 6));
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.RuntimeVisibleAnnotationsName)) {
+        memberAnnotations.add(readOffset, true);
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.RuntimeInvisibleAnnotationsName)) {
+        memberAnnotations.add(readOffset, false);
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.ConstantValueName)) {
+        isConstant = true;
+        readConstantValue(cp(u2(readOffset + 6)), descriptorOffset);
+      }
+      readOffset += 6 + u4(readOffset + 2);
+    }
+    if (!isConstant) {
+      memberConstant = Constant.NotAConstant;
+    }
+    memberTagBits = getStandardTagBits(memberAnnotations);
+
+    if (memberSignatureOffset != -1) {
+      updateUtf8(digester, memberSignatureOffset);
+    }
+    digester.updateInt(memberFlags);
+    digester.updateLong(memberTagBits & TagBits.AnnotationDeprecated);
+    updateAnnotations(digester, memberAnnotations);
+    updateUtf8(digester, cp(u2(memberOffset + 2)));
+    updateUtf8(digester, descriptorOffset);
+    boolean hasConstant = memberConstant != Constant.NotAConstant;
+    digester.updateBoolean(hasConstant);
+    if (hasConstant) {
+      digester.updateConstant(memberConstant);
+    }
+
+    return readOffset;
+  }
+
+  /**
+   * See FieldInfo#readConstantAttribute.
+   */
+  private void readConstantValue(int constantOffset, int descriptorOffset) {
+    switch (u1(constantOffset)) {
+      case ClassFileConstants.IntegerTag:
+        int value = i4(constantOffset + 1);
+        switch (u2(descriptorOffset + 1) == 1 ? u1(descriptorOffset + 3) : 0) {
+          case 'Z':
+            memberConstant = BooleanConstant.fromValue(value == 1);
+            break;
+          case 'I':
+            memberConstant = IntConstant.fromValue(value);
+            break;
+          case 'C':
+            memberConstant = CharConstant.fromValue((char) value);
+            break;
+          case 'B':
+            memberConstant = ByteConstant.fromValue((byte) value);
+            break;
+          case 'S':
+            memberConstant = ShortConstant.fromValue((short) value);
+            break;
+          default:
+            memberConstant = Constant.NotAConstant;
+        }
+        break;
+      case ClassFileConstants.FloatTag:
+        memberConstant = FloatConstant.fromValue(Float.intBitsToFloat(i4(constantOffset + 1)));
+        break;
+      case ClassFileConstants.DoubleTag:
+        memberConstant = DoubleConstant.fromValue(Double.longBitsToDouble(i8(constantOffset + 1)));
+        break;
+      case ClassFileConstants.LongTag:
+        memberConstant = LongConstant.fromValue(i8(constantOffset + 1));
+        break;
+      case ClassFileConstants.StringTag:
+        memberConstant = StringConstant.fromValue(String.valueOf(utf8(cp(u2(constantOffset + 1)))));
+        break;
+    }
+  }
+
+  /**
+   * Same sequence of updates as ClassfileDigester#updateMethod, returns offset of the next method.
+   */
+  private int updateMethod(ClassfileDigester digester, int memberOffset, boolean isAnnotationType) {
+    memberFlags = u2(memberOffset);
+    memberSignatureOffset = -1;
+    memberExceptionsOffset = -1;
+    memberAnnotations.size = 0;
+    memberParameterAnnotations.size = 0;
+
+    int readOffset = memberOffset + 6;
+    int attributesCount = u2(readOffset);
+    readOffset += 2;
+    for (int i = 0; i < attributesCount; i++) {
+      int nameOffset = cp(u2(readOffset));
+      if (utf8Equals(nameOffset, AttributeNamesConstants.DeprecatedName)) {
+        memberFlags |= ClassFileConstants.AccDeprecated;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.SyntheticName)) {
+        memberFlags |= ClassFileConstants.AccSynthetic;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.AnnotationDefaultName)) {
+        memberFlags |= ClassFileConstants.AccAnnotationDefault;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.VarargsName)) {
+        memberFlags |= ClassFileConstants.AccVarargs;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.SignatureName)) {
+        memberSignatureOffset = cp(u2(readOffset + 6));
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.ExceptionsName)) {
+        memberExceptionsOffset = readOffset + 6;
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.RuntimeVisibleAnnotationsName)) {
+        memberAnnotations.add(readOffset, true);
+      } else if (utf8Equals(nameOffset, AttributeNamesConstants.RuntimeInvisibleAnnotationsName)) {
+        memberAnnotations.add(readOffset, false);
+      } else if (!isAnnotationType && utf8Equals(nameOffset, AttributeNamesConstants.RuntimeVisibleParameterAnnotationsName)) {
+        memberParameterAnnotations.add(readOffset, true);
+      } else if (!isAnnotationType && utf8Equals(nameOffset, AttributeNamesConstants.RuntimeInvisibleParameterAnnotationsName)) {
+        memberParameterAnnotations.add(readOffset, false);
+      }
+      readOffset += 6 + u4(readOffset + 2);
+    }
+    memberTagBits = getStandardTagBits(memberAnnotations);
+
+    if (memberSignatureOffset != -1) {
+      updateUtf8(digester, memberSignatureOffset);
+    }
+    digester.updateInt(memberFlags);
+    digester.updateLong(memberTagBits & TagBits.AnnotationDeprecated);
+    updateAnnotations(digester, memberAnnotations);
+    updateParameterAnnotations(digester, memberParameterAnnotations);
+    updateUtf8(digester, cp(u2(memberOffset + 2)));
+    updateUtf8(digester, cp(u2(memberOffset + 4)));
+    if (memberSignatureOffset != -1) {
+      updateUtf8(digester, memberSignatureOffset);
+    }
+    if (memberExceptionsOffset != -1) {
+      int count = u2(memberExceptionsOffset);
+      for (int i = 0; i < count; i++) {
+        updateClassName(digester, u2(memberExceptionsOffset + 2 + i * 2));
+      }
+    }
+
+    return readOffset;
+  }
+
+  //
+  // annotations, see AnnotationInfo and MethodInfo#createMethod
+  //
+
+  /**
+   * Returns combined standard annotation tag bits of the annotation attributes.
+   */
+  private long getStandardTagBits(RefList attributes) {
+    long tagBits = 0;
+    for (int i = 0; i < attributes.size; i++) {
+      if (attributes.runtimeVisible(i)) {
+        int offset = attributes.offset(i);
+        int count = u2(offset + 6);
+        offset += 8;
+        for (int j = 0; j < count; j++) {
+          standardTagBits = 0;
+          offset = scanAnnotation(offset, true, true);
+          tagBits |= standardTagBits;
+        }
+      }
+    }
+    return tagBits;
+  }
+
+  /**
+   * Updates digester with annotations of the annotation attributes, skips standard annotations, which are represented by tag bits.
+   */
+  private void updateAnnotations(ClassfileDigester digester, RefList attributes) {
+    for (int i = 0; i < attributes.size; i++) {
+      boolean runtimeVisible = attributes.runtimeVisible(i);
+      int offset = attributes.offset(i);
+      int count = u2(offset + 6);
+      offset += 8;
+      for (int j = 0; j < count; j++) {
+        standardTagBits = 0;
+        int next = scanAnnotation(offset, runtimeVisible, true);
+        if (standardTagBits == 0) {
+          updateAnnotation(digester, offset);
+        }
+        offset = next;
+      }
+    }
+  }
+
+  /**
+   * Updates digester with parameter annotations of the parameter annotation attributes. Annotations of the same parameter are merged in attribute order, the number of parameters is taken from
+   * the first attribute that has any annotations.
+   */
+  private void updateParameterAnnotations(ClassfileDigester digester, RefList attributes) {
+    if (attributes.size == 0) {
+      return;
+    }
+    // offsets of the next parameter annotations of each attribute
+    int[] offsets = new int[attributes.size];
+    int parameterCount = -1;
+    int maxParameterCount = 0;
+    for (int i = 0; i < attributes.size; i++) {
+      int offset = attributes.offset(i);
+      int attributeParameterCount = u1(offset + 6);
+      offsets[i] = offset + 7;
+      maxParameterCount = Math.max(maxParameterCount, attributeParameterCount);
+      if (parameterCount == -1 && hasParameterAnnotations(offsets[i], attributeParameterCount)) {
+        parameterCount = attributeParameterCount;
+      }
+    }
+    if (parameterCount == -1) {
+      return;
+    }
+    for (int p = 0; p < maxParameterCount; p++) {
+      for (int i = 0; i < attributes.size; i++) {
+        if (p >= u1(attributes.offset(i) + 6)) {
+          continue;
+        }
+        boolean runtimeVisible = attributes.runtimeVisible(i);
+        int offset = offsets[i];
+        int count = u2(offset);
+        offset += 2;
+        if (count > 0 && p >= parameterCount) {
+          throw new IllegalStateException("Inconsistent parameter annotations");
+        }
+        for (int j = 0; j < count; j++) {
+          int next = scanAnnotation(offset, runtimeVisible, true);
+          updateAnnotation(digester, offset);
+          offset = next;
+        }
+        offsets[i] = offset;
+      }
+    }
+  }
+
+  private boolean hasParameterAnnotations(int offset, int parameterCount) {
+    for (int p = 0; p < parameterCount; p++) {
+      int count = u2(offset);
+      if (count > 0) {
+        return true;
+      }
+      offset += 2;
+    }
+    return false;
+  }
+
+  /**
+   * Updates digester with the annotation type name and element values, returns offset of the next annotation.
+   */
+  private int updateAnnotation(ClassfileDigester digester, int offset) {
+    updateUtf8(digester, cp(u2(offset)));
+    int numberOfPairs = u2(offset + 2);
+    offset += 4;
+    for (int i = 0; i < numberOfPairs; i++) {
+      updateUtf8(digester, cp(u2(offset)));
+      offset += 2;
+      offset = updateElementValue(digester, offset, true);
+    }
+    return offset;
+  }
+
+  /**
+   * See AnnotationInfo#decodeDefaultValue and ClassfileDigester#updateAnnotationValue.
+   */
+  private int updateElementValue(ClassfileDigester digester, int offset, boolean toplevel) {
+    int tag = u1(offset);
+    offset++;
+    switch (tag) {
+      case 'Z':
+        digester.updateConstant(BooleanConstant.fromValue(i4(cp(u2(offset)) + 1) == 1));
+        offset += 2;
+        break;
+      case 'I':
+        digester.updateConstant(IntConstant.fromValue(i4(cp(u2(offset)) + 1)));
+        offset += 2;
+        break;
+      case 'C':
+        digester.updateConstant(CharConstant.fromValue((char) i4(cp(u2(offset)) + 1)));
+        offset += 2;
+        break;
+      case 'B':
+        digester.updateConstant(ByteConstant.fromValue((byte) i4(cp(u2(offset)) + 1)));
+        offset += 2;
+        break;
+      case 'S':
+        digester.updateConstant(ShortConstant.fromValue((short) i4(cp(u2(offset)) + 1)));
+        offset += 2;
+        break;
+      case 'D':
+        digester.updateConstant(DoubleConstant.fromValue(Double.longBitsToDouble(i8(cp(u2(offset)) + 1))));
+        offset += 2;
+        break;
+      case 'F':
+        digester.updateConstant(FloatConstant.fromValue(Float.intBitsToFloat(i4(cp(u2(offset)) + 1))));
+        offset += 2;
+        break;
+      case 'J':
+        digester.updateConstant(LongConstant.fromValue(i8(cp(u2(offset)) + 1)));
+        offset += 2;
+        break;
+      case 's':
+        digester.updateConstant(StringConstant.fromValue(String.valueOf(utf8(cp(u2(offset))))));
+        offset += 2;
+        break;
+      case 'e':
+        updateUtf8(digester, cp(u2(offset)));
+        updateUtf8(digester, cp(u2(offset + 2)));
+        offset += 4;
+        break;
+      case 'c':
+        updateUtf8(digester, cp(u2(offset)));
+        offset += 2;
+        break;
+      case '@':
+        offset = updateAnnotation(digester, offset);
+        break;
+      case '[':
+        if (!toplevel) {
+          throw new IllegalArgumentException("Unsupported nested array annotation value");
+        }
+        int numberOfValues = u2(offset);
+        offset += 2;
+        for (int i = 0; i < numberOfValues; i++) {
+          offset = updateElementValue(digester, offset, false);
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unrecognized tag " + (char) tag);
+    }
+    return offset;
+  }
+
+  /**
+   * Returns offset of the next annotation, sets {@link #standardTagBits} of top level runtime visible standard annotations. Like AnnotationInfo#scanAnnotation, does not skip element values of
+   * standard annotations.
+   */
+  private int scanAnnotation(int offset, boolean expectRuntimeVisibleAnno, boolean toplevel) {
+    int currentOffset = offset;
+    int utf8Offset = cp(u2(offset));
+    int numberOfPairs = u2(offset + 2);
+    currentOffset += 4;
+    if (expectRuntimeVisibleAnno && toplevel) {
+      if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_DEPRECATED)) {
+        standardTagBits |= TagBits.AnnotationDeprecated;
+        return currentOffset;
+      } else if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_SAFEVARARGS)) {
+        standardTagBits |= TagBits.AnnotationSafeVarargs;
+        return currentOffset;
+      } else if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_ANNOTATION_TARGET)) {
+        currentOffset += 2;
+        return readTargetValue(currentOffset);
+      } else if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_ANNOTATION_RETENTION)) {
+        currentOffset += 2;
+        return readRetentionPolicy(currentOffset);
+      } else if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_ANNOTATION_INHERITED)) {
+        standardTagBits |= TagBits.AnnotationInherited;
+        return currentOffset;
+      } else if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_ANNOTATION_DOCUMENTED)) {
+        standardTagBits |= TagBits.AnnotationDocumented;
+        return currentOffset;
+      } else if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_INVOKE_METHODHANDLE_POLYMORPHICSIGNATURE)) {
+        standardTagBits |= TagBits.AnnotationPolymorphicSignature;
+        return currentOffset;
+      }
+    }
+    for (int i = 0; i < numberOfPairs; i++) {
+      currentOffset += 2;
+      currentOffset = scanElementValue(currentOffset);
+    }
+    return currentOffset;
+  }
+
+  private int scanElementValue(int offset) {
+    int currentOffset = offset;
+    int tag = u1(currentOffset);
+    currentOffset++;
+    switch (tag) {
+      case 'B':
+      case 'C':
+      case 'D':
+      case 'F':
+      case 'I':
+      case 'J':
+      case 'S':
+      case 'Z':
+      case 's':
+      case 'c':
+        currentOffset += 2;
+        break;
+      case 'e':
+        currentOffset += 4;
+        break;
+      case '@':
+        currentOffset = scanAnnotation(currentOffset, false, false);
+        break;
+      case '[':
+        int numberOfValues = u2(currentOffset);
+        currentOffset += 2;
+        for (int i = 0; i < numberOfValues; i++) {
+          currentOffset = scanElementValue(currentOffset);
+        }
+        break;
+      default:
+        throw new IllegalStateException();
+    }
+    return currentOffset;
+  }
+
+  private int readTargetValue(int offset) {
+    int currentOffset = offset;
+    int tag = u1(currentOffset);
+    currentOffset++;
+    switch (tag) {
+      case 'e':
+        int utf8Offset = cp(u2(currentOffset));
+        currentOffset += 2;
+        if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_ANNOTATION_ELEMENTTYPE)) {
+          standardTagBits |= Annotation.getTargetElementType(utf8(cp(u2(currentOffset))));
+        }
+        currentOffset += 2;
+        break;
+      case 'B':
+      case 'C':
+      case 'D':
+      case 'F':
+      case 'I':
+      case 'J':
+      case 'S':
+      case 'Z':
+      case 's':
+      case 'c':
+        currentOffset += 2;
+        break;
+      case '@':
+        currentOffset = scanAnnotation(currentOffset, false, false);
+        break;
+      case '[':
+        int numberOfValues = u2(currentOffset);
+        currentOffset += 2;
+        if (numberOfValues == 0) {
+          standardTagBits |= TagBits.AnnotationTarget;
+        } else {
+          for (int i = 0; i < numberOfValues; i++) {
+            currentOffset = readTargetValue(currentOffset);
+          }
+        }
+        break;
+      default:
+        throw new IllegalStateException();
+    }
+    return currentOffset;
+  }
+
+  private int readRetentionPolicy(int offset) {
+    int currentOffset = offset;
+    int tag = u1(currentOffset);
+    currentOffset++;
+    switch (tag) {
+      case 'e':
+        int utf8Offset = cp(u2(currentOffset));
+        currentOffset += 2;
+        if (utf8Equals(utf8Offset, ConstantPool.JAVA_LANG_ANNOTATION_RETENTIONPOLICY)) {
+          standardTagBits |= Annotation.getRetentionPolicy(utf8(cp(u2(currentOffset))));
+        }
+        currentOffset += 2;
+        break;
+      case 'B':
+      case 'C':
+      case 'D':
+      case 'F':
+      case 'I':
+      case 'J':
+      case 'S':
+      case 'Z':
+      case 's':
+      case 'c':
+        currentOffset += 2;
+        break;
+      case '@':
+        currentOffset = scanAnnotation(currentOffset, false, false);
+        break;
+      case '[':
+        int numberOfValues = u2(currentOffset);
+        currentOffset += 2;
+        for (int i = 0; i < numberOfValues; i++) {
+          currentOffset = scanElementValue(currentOffset);
+        }
+        break;
+      default:
+        throw new IllegalStateException();
+    }
+    return currentOffset;
+  }
+
+  //
+  // constant pool and utf8 access, see ClassFileStruct
+  //
+
+  private int cp(int index) {
+    if (index >= constantPoolCount) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    return constantPoolOffsets[index];
+  }
+
+  private void updateClassName(ClassfileDigester digester, int classIndex) {
+    updateUtf8(digester, cp(u2(cp(classIndex) + 1)));
+  }
+
+  private void updateMissingTypeName(ClassfileDigester digester, int utf8Offset) {
+    // ClassfileDigester joins '/' separated name segments with '.'
+    int length = u2(utf8Offset + 1);
+    int readOffset = utf8Offset + 3;
+    while (length != 0) {
+      int x = bytes[readOffset++] & 0xFF;
+      length--;
+      if ((0x80 & x) != 0) {
+        if ((x & 0x20) != 0) {
+          length -= 2;
+          x = ((x & 0xF) << 12) | ((bytes[readOffset++] & 0x3F) << 6) | (bytes[readOffset++] & 0x3F);
+        } else {
+          length--;
+          x = ((x & 0x1F) << 6) | (bytes[readOffset++] & 0x3F);
+        }
+      }
+      digester.updateChar(x == '/' ? '.' : (char) x);
+    }
+  }
+
+  private void updateUtf8(ClassfileDigester digester, int utf8Offset) {
+    int length = u2(utf8Offset + 1);
+    int readOffset = utf8Offset + 3;
+    while (length != 0) {
+      int x = bytes[readOffset++] & 0xFF;
+      length--;
+      if ((0x80 & x) != 0) {
+        if ((x & 0x20) != 0) {
+          length -= 2;
+          x = ((x & 0xF) << 12) | ((bytes[readOffset++] & 0x3F) << 6) | (bytes[readOffset++] & 0x3F);
+        } else {
+          length--;
+          x = ((x & 0x1F) << 6) | (bytes[readOffset++] & 0x3F);
+        }
+      }
+      digester.updateChar((char) x);
+    }
+  }
+
+  private char[] utf8(int utf8Offset) {
+    int length = u2(utf8Offset + 1);
+    int readOffset = utf8Offset + 3;
+    char[] result = new char[length];
+    int outputLength = 0;
+    while (length != 0) {
+      int x = bytes[readOffset++] & 0xFF;
+      length--;
+      if ((0x80 & x) != 0) {
+        if ((x & 0x20) != 0) {
+          length -= 2;
+          x = ((x & 0xF) << 12) | ((bytes[readOffset++] & 0x3F) << 6) | (bytes[readOffset++] & 0x3F);
+        } else {
+          length--;
+          x = ((x & 0x1F) << 6) | (bytes[readOffset++] & 0x3F);
+        }
+      }
+      result[outputLength++] = (char) x;
+    }
+    if (outputLength != result.length) {
+      result = Arrays.copyOf(result, outputLength);
+    }
+    return result;
+  }
+
+  /**
+   * Compares utf8 constant with ASCII-only {@code expected} without decoding the constant.
+   */
+  private boolean utf8Equals(int utf8Offset, char[] expected) {
+    int length = u2(utf8Offset + 1);
+    if (length != expected.length) {
+      return false;
+    }
+    int readOffset = utf8Offset + 3;
+    for (int i = 0; i < length; i++) {
+      if (bytes[readOffset + i] != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int u1(int offset) {
+    return bytes[offset] & 0xFF;
+  }
+
+  private int u2(int offset) {
+    return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+  }
+
+  private int u4(int offset) {
+    return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+  }
+
+  private int i4(int offset) {
+    return u4(offset);
+  }
+
+  private long i8(int offset) {
+    return ((long) i4(offset) << 32) | (i4(offset + 4) & 0xFFFFFFFFL);
+  }
+}
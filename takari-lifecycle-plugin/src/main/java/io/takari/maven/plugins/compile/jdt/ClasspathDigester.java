@@ -7,20 +7,36 @@
  */
 package io.takari.maven.plugins.compile.jdt;
 
-import io.takari.incrementalbuild.BuildContext.InputMetadata;
 import io.takari.incrementalbuild.spi.DefaultBuildContext;
-import io.takari.incrementalbuild.spi.DefaultInputMetadata;
+import io.takari.maven.plugins.compile.jdt.classpath.DependencyClasspathEntry;
+import io.takari.maven.plugins.compile.jdt.classpath.PersistentCache;
+import io.takari.maven.plugins.compile.jdt.classpath.PersistentCache.EntryReader;
+import io.takari.maven.plugins.compile.jdt.classpath.PersistentCache.EntryWriter;
+import io.takari.maven.plugins.util.SessionProperties;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -29,82 +45,372 @@ import org.apache.maven.execution.MavenSession;
 import org.apache.maven.execution.scope.MojoExecutionScoped;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.DirectoryScanner;
-import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 @Named
 @MojoExecutionScoped
 public class ClasspathDigester {
 
+  /**
+   * Maximum size of the persistent dependency digest cache, in megabytes. Zero disables the persistent cache.
+   */
+  public static final String PROP_PERSISTENT_CACHE_SIZE = "takari.abiDigestCache.maxSize";
+
+  private static final long DEFAULT_PERSISTENT_CACHE_SIZE = 512;
+
+  /**
+   * Persistent cache entry format version. Must be incremented when either cache entry format or {@link ClassfileDigester} algorithm change.
+   */
+  private static final int PERSISTENT_CACHE_VERSION = 3;
+
+  /**
+   * Persistent cache key prefix of type digests, which are keyed by aggregate ABI hash and shared by all dependencies with the same ABI. Dependency jar entries, keyed by artifact identity, only
+   * reference the aggregate hash.
+   */
+  private static final String PREFIX_TYPES = "abi-";
+
+  /**
+   * Max number of dependency digests kept in memory by aggregate ABI hash.
+   */
+  private static final int MAX_DIGESTS = 1000;
+
+  /**
+   * Number of threads used to digest classpath dependencies, defaults to the number of available processors. Use 1 to digest dependencies on the build thread.
+   */
+  public static final String PROP_THREADS = "takari.abiDigest.threads";
+
+  /**
+   * Max number of class files digested by a single fork-join task.
+   */
+  private static final int CHUNK_SIZE = 256;
+
+  /**
+   * Shared digester thread pools by parallelism. Pools are never shut down, executions with different thread counts may use them concurrently. Idle fork-join workers are daemon threads that
+   * terminate on their own.
+   */
+  private static final Map<Integer, ForkJoinPool> POOLS = new HashMap<Integer, ForkJoinPool>();
+
+  private static final EntryReader<Map<String, byte[]>> DIGEST_READER = new EntryReader<Map<String, byte[]>>() {
+    @Override
+    public Map<String, byte[]> read(DataInputStream is) throws IOException {
+      int size = is.readInt();
+      Map<String, byte[]> digest = new HashMap<String, byte[]>(size * 4 / 3 + 1);
+      for (int i = 0; i < size; i++) {
+        String type = is.readUTF();
+        byte[] hash = new byte[is.readUnsignedByte()];
+        is.readFully(hash);
+        digest.put(type, hash);
+      }
+      return digest;
+    }
+  };
+
+  private static final EntryReader<String> HASH_READER = new EntryReader<String>() {
+    @Override
+    public String read(DataInputStream is) throws IOException {
+      return is.readUTF();
+    }
+  };
+
+  /**
+   * Digest of a single classpath dependency, i.e. accessible dependency types, their digests and aggregate ABI hash of all types.
+   */
+  public static class DependencyDigest {
+
+    private final String hash;
+
+    private final Map<String, byte[]> types;
+
+    DependencyDigest(String hash, Map<String, byte[]> types) {
+      this.hash = hash;
+      this.types = types;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+
+    public Map<String, byte[]> getTypes() {
+      return types;
+    }
+  }
+
   private final Logger log = LoggerFactory.getLogger(getClass());
 
-  private static final Map<File, Map<String, byte[]>> CACHE = new ConcurrentHashMap<File, Map<String, byte[]>>();
+  private static final Map<File, DependencyDigest> CACHE = new ConcurrentHashMap<File, DependencyDigest>();
+
+  /**
+   * Dependency digests keyed by aggregate ABI hash. Dependencies rebuilt without ABI changes, e.g. reactor dependency jars, reuse the same digest. Also used to look up digests of dependencies
+   * referenced by previous builds.
+   */
+  private static final Cache<String, DependencyDigest> DIGESTS = CacheBuilder.newBuilder().maximumSize(MAX_DIGESTS).build();
 
   private final DefaultBuildContext<?> context;
 
   private final ClassfileDigester digester;
 
+  private final PersistentCache persistentCache;
+
+  private final int threads;
+
   @Inject
   public ClasspathDigester(DefaultBuildContext<?> context, MavenProject project, MavenSession session, ClassfileDigester digester) {
     this.context = context;
     this.digester = digester;
+    this.persistentCache = newPersistentCache(session);
+    this.threads = SessionProperties.getInt(session, PROP_THREADS, Runtime.getRuntime().availableProcessors());
 
     // this is only needed for unit tests, but won't hurt in general
     CACHE.remove(new File(project.getBuild().getOutputDirectory()));
     CACHE.remove(new File(project.getBuild().getTestOutputDirectory()));
   }
 
-  public HashMap<String, byte[]> digestDependencies(List<File> dependencies) throws IOException {
-    Stopwatch stopwatch = Stopwatch.createStarted();
-
-    HashMap<String, byte[]> digest = new HashMap<String, byte[]>();
+  /**
+   * Discards in-memory dependency digests, as if the next build ran in a new JVM. Only used by unit tests.
+   */
+  static void flush() {
+    CACHE.clear();
+    DIGESTS.invalidateAll();
+  }
 
-    // scan dependencies backwards to properly deal with duplicate type definitions
-    for (int i = dependencies.size() - 1; i >= 0; i--) {
-      File file = dependencies.get(i);
+  /**
+   * Returns digests of the dependencies, in the same order as the dependencies.
+   */
+  public List<DependencyDigest> digestDependencies(List<File> dependencies) throws IOException {
+    Stopwatch stopwatch = Stopwatch.createStarted();
 
-      DefaultInputMetadata<ArtifactFile> metadata = context.registerInput(new ArtifactFileHolder(file));
+    // build context is not thread safe, register all inputs upfront
+    for (File file : dependencies) {
+      context.registerInput(new ArtifactFileHolder(file));
+    }
 
-      if (file.isFile()) {
-        digest.putAll(digestJar(metadata));
-      } else if (file.isDirectory()) {
-        digest.putAll(digestDirectory(metadata));
-      } else {
-        // happens with reactor dependencies with empty source folders
-        continue;
+    List<DependencyDigest> digests;
+    ForkJoinPool pool = dependencies.size() > 1 ? getPool(threads) : null;
+    if (pool != null) {
+      digests = digestParallel(pool, dependencies);
+    } else {
+      digests = new ArrayList<DependencyDigest>(dependencies.size());
+      for (File file : dependencies) {
+        digests.add(digestDependency(file, false));
       }
     }
 
     log.debug("Analyzed {} classpath dependencies ({} ms)", dependencies.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
 
+    return digests;
+  }
+
+  /**
+   * Digests the dependencies ahead of {@link #digestDependencies(List)}, which then finds the digests in JVM-wide cache. Does not use the build context and can be called from any thread, but not
+   * concurrently with {@link #digestDependencies(List)}. Stops when the calling thread is interrupted, dependencies already being digested complete before this method returns.
+   */
+  public void prefetch(List<File> dependencies) throws IOException {
+    ForkJoinPool pool = getPool(threads);
+    if (pool != null) {
+      digestParallel(pool, dependencies);
+    } else {
+      for (File file : dependencies) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException();
+        }
+        // uses the shared digester, which is not thread safe. this is safe because the caller waits for the prefetch to complete before the digester is used by the build thread
+        digestDependency(file, false);
+      }
+    }
+  }
+
+  /**
+   * Returns digest of a dependency with the given aggregate ABI hash or {@code null} if the digest is not available.
+   */
+  public DependencyDigest getDigest(String hash) {
+    DependencyDigest digest = DIGESTS.getIfPresent(hash);
+    if (digest == null && persistentCache != null) {
+      Map<String, byte[]> types = persistentCache.get(PREFIX_TYPES + hash, DIGEST_READER);
+      if (types != null) {
+        digest = new DependencyDigest(hash, types);
+        DIGESTS.put(hash, digest);
+      }
+    }
     return digest;
   }
 
-  private Map<String, byte[]> digestJar(InputMetadata<ArtifactFile> metadata) throws IOException {
-    final File file = metadata.getResource().file;
-    Map<String, byte[]> digest = CACHE.get(file);
+  /**
+   * Stores dependency digests in the persistent cache, so they can be looked up by their aggregate ABI hash by subsequent builds. Returns {@code false} if the persistent cache is disabled or
+   * some of the digests could not be stored, in which case the caller is expected to keep the digests in its build state.
+   */
+  public boolean storeDigests(List<DependencyDigest> digests) {
+    if (persistentCache == null) {
+      return false;
+    }
+    boolean stored = true;
+    for (DependencyDigest digest : digests) {
+      stored = storeDigest(digest) && stored;
+    }
+    return stored;
+  }
+
+  private boolean storeDigest(DependencyDigest digest) {
+    String key = PREFIX_TYPES + digest.getHash();
+    if (!persistentCache.contains(key)) {
+      persistentCache.put(key, newDigestWriter(digest.getTypes()));
+    }
+    return persistentCache.contains(key);
+  }
+
+  private static DependencyDigest newDigest(Map<String, byte[]> types) {
+    String hash = EmbeddedAbiDigest.getAggregateHash(types);
+    DependencyDigest digest = DIGESTS.getIfPresent(hash);
     if (digest == null) {
-      digest = new HashMap<String, byte[]>();
-      JarFile jar = new JarFile(file);
-      try {
-        for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
-          JarEntry entry = entries.nextElement();
-          String path = entry.getName();
-          if (path.endsWith(".class")) {
-            String type = toJavaType(path);
-            try {
-              digest.put(type, digester.digest(ClassFileReader.read(jar, path)));
-            } catch (ClassFormatException e) {
-              // the class file is old for sure, according to jdt
+      digest = new DependencyDigest(hash, types);
+      DIGESTS.put(hash, digest);
+    }
+    return digest;
+  }
+
+  /**
+   * Digests dependency types and packages that can affect sources referencing the symbols, i.e. types whose package and simple name are both in the symbol table and packages whose parent
+   * package and simple name are both in the symbol table, see {@link ReferenceCollection#includes(int[], int[], int[])}. Types already present in {@code types} map are not digested again. When
+   * multiple dependencies define the same type, the first definition wins.
+   *
+   * @param types map of referenced types to their digests, updated in place
+   * @param packages names of referenced packages present on the classpath, updated in place
+   */
+  public void digestReferencedTypes(List<DependencyClasspathEntry> dependencies, SymbolTable symbols, Map<String, byte[]> types, Set<String> packages) {
+    for (DependencyClasspathEntry dependency : dependencies) {
+      for (String packageName : dependency.getPackageNames()) {
+        int idx = packageName.lastIndexOf('/');
+        String qualifiedName = packageName.replace('/', '.');
+        // existence of top-level packages does not affect any sources, their types still do
+        if (idx > 0 && symbols.contains(qualifiedName.substring(0, idx)) && symbols.contains(qualifiedName.substring(idx + 1))) {
+          packages.add(qualifiedName);
+        }
+        if (!symbols.contains(qualifiedName)) {
+          continue;
+        }
+        for (String binaryFileName : dependency.getClassFiles(packageName)) {
+          String simpleName = binaryFileName.substring(0, binaryFileName.length() - ".class".length());
+          String type = qualifiedName + "." + simpleName;
+          if (symbols.contains(simpleName) && !types.containsKey(type)) {
+            NameEnvironmentAnswer answer = dependency.findType(packageName, binaryFileName);
+            if (answer != null && answer.getBinaryType() != null) {
+              types.put(type, digester.digest(answer.getBinaryType()));
             }
           }
         }
-      } finally {
-        jar.close();
+      }
+    }
+  }
+
+  /**
+   * Returns digest of a single dependency. Unlike {@link #digestDependencies(List)}, does not register the dependency with the build context.
+   */
+  public DependencyDigest digestDependency(File file) throws IOException {
+    return digestDependency(file, false);
+  }
+
+  private DependencyDigest digestDependency(File file, boolean parallel) throws IOException {
+    if (file.isFile()) {
+      return getJarDigest(file, parallel);
+    } else if (file.isDirectory()) {
+      return getDirectoryDigest(file, parallel);
+    }
+    // happens with reactor dependencies with empty source folders
+    return newDigest(Collections.<String, byte[]>emptyMap());
+  }
+
+  private List<DependencyDigest> digestParallel(ForkJoinPool pool, List<File> dependencies) throws IOException {
+    List<ForkJoinTask<DependencyDigest>> tasks = new ArrayList<ForkJoinTask<DependencyDigest>>(dependencies.size());
+    for (final File file : dependencies) {
+      tasks.add(pool.submit(new RecursiveTask<DependencyDigest>() {
+        @Override
+        protected DependencyDigest compute() {
+          try {
+            return digestDependency(file, true);
+          } catch (IOException e) {
+            throw new DigestException(e);
+          }
+        }
+      }));
+    }
+    List<DependencyDigest> digests = new ArrayList<DependencyDigest>(dependencies.size());
+    for (ForkJoinTask<DependencyDigest> task : tasks) {
+      try {
+        digests.add(task.get());
+      } catch (InterruptedException e) {
+        // do not leave pool threads digesting after return, digests that already started complete and still end up in the cache
+        for (ForkJoinTask<DependencyDigest> pending : tasks) {
+          pending.cancel(false);
+        }
+        for (ForkJoinTask<DependencyDigest> pending : tasks) {
+          pending.quietlyJoin();
+        }
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof DigestException) {
+          throw ((DigestException) cause).getCause();
+        }
+        Throwables.propagateIfPossible(cause);
+        throw new IllegalStateException(cause);
+      }
+    }
+    return digests;
+  }
+
+  /**
+   * Returns shared digester thread pool or {@code null} if dependencies should be digested by the calling thread.
+   */
+  private static synchronized ForkJoinPool getPool(int threads) {
+    if (threads <= 1) {
+      return null;
+    }
+    ForkJoinPool pool = POOLS.get(threads);
+    if (pool == null) {
+      pool = new ForkJoinPool(threads);
+      POOLS.put(threads, pool);
+    }
+    return pool;
+  }
+
+  private static PersistentCache newPersistentCache(MavenSession session) {
+    long maxSize = SessionProperties.getLong(session, PROP_PERSISTENT_CACHE_SIZE, DEFAULT_PERSISTENT_CACHE_SIZE);
+    File directory = SessionProperties.getCacheDirectory(session, "abi-digests");
+    if (maxSize <= 0 || directory == null) {
+      return null;
+    }
+    return new PersistentCache(directory, PERSISTENT_CACHE_VERSION, maxSize * 1024 * 1024);
+  }
+
+  private DependencyDigest getJarDigest(File file, boolean parallel) throws IOException {
+    DependencyDigest digest = CACHE.get(file);
+    if (digest == null) {
+      // jars are immutable, their digests can be reused by subsequent builds
+      final String key = persistentCache != null ? PersistentCache.getArtifactKey(file) : null;
+      if (key != null) {
+        String hash = persistentCache.get(key, HASH_READER);
+        if (hash != null) {
+          digest = getDigest(hash);
+        }
+      }
+      if (digest == null) {
+        digest = readEmbeddedDigest(file);
+        if (digest == null) {
+          digest = newDigest(digestJar(file, parallel));
+        }
+        if (key != null) {
+          storeDigest(digest);
+          persistentCache.put(key, newHashWriter(digest.getHash()));
+        }
       }
       CACHE.put(file, digest);
     }
@@ -112,29 +418,180 @@ public class ClasspathDigester {
     return digest;
   }
 
-  private Map<String, byte[]> digestDirectory(InputMetadata<ArtifactFile> metadata) throws IOException {
-    final File directory = metadata.getResource().file;
-    Map<String, byte[]> digest = CACHE.get(directory);
+  /**
+   * Returns digest precomputed by the jar mojo and embedded in the jar, or {@code null} if the jar does not have compatible embedded digest or the embedded digest does not match jar class
+   * files.
+   */
+  private DependencyDigest readEmbeddedDigest(File file) throws IOException {
+    ZipFile jar = new ZipFile(file);
+    try {
+      EmbeddedAbiDigest embedded = EmbeddedAbiDigest.read(jar, false);
+      if (embedded == null) {
+        return null;
+      }
+      // jars rebuilt without ABI changes do not need to read individual type digests
+      DependencyDigest digest = getDigest(embedded.getAggregateHash());
+      boolean known = digest != null;
+      if (!known) {
+        embedded = EmbeddedAbiDigest.read(jar, true);
+        digest = new DependencyDigest(embedded.getAggregateHash(), embedded.getTypes());
+      }
+      if (!EmbeddedAbiDigest.matchesClassfiles(jar, digest.getTypes())) {
+        log.debug("Embedded ABI digest of {} does not match jar class files", file);
+        return null;
+      }
+      if (!known) {
+        DIGESTS.put(digest.getHash(), digest);
+      }
+      return digest;
+    } finally {
+      jar.close();
+    }
+  }
+
+  private Map<String, byte[]> digestJar(File file, boolean parallel) throws IOException {
+    JarFile jar = new JarFile(file);
+    try {
+      List<String> paths = new ArrayList<String>();
+      for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+        String path = entries.nextElement().getName();
+        if (path.endsWith(".class")) {
+          paths.add(path);
+        }
+      }
+      return digestClassfiles(jar, null, paths, parallel);
+    } finally {
+      jar.close();
+    }
+  }
+
+  private static EntryWriter newHashWriter(final String hash) {
+    return new EntryWriter() {
+      @Override
+      public void write(DataOutputStream os) throws IOException {
+        os.writeUTF(hash);
+      }
+    };
+  }
+
+  private static EntryWriter newDigestWriter(final Map<String, byte[]> digest) {
+    return new EntryWriter() {
+      @Override
+      public void write(DataOutputStream os) throws IOException {
+        os.writeInt(digest.size());
+        for (Map.Entry<String, byte[]> entry : digest.entrySet()) {
+          os.writeUTF(entry.getKey());
+          os.writeByte(entry.getValue().length);
+          os.write(entry.getValue());
+        }
+      }
+    };
+  }
+
+  private DependencyDigest getDirectoryDigest(File directory, boolean parallel) throws IOException {
+    DependencyDigest digest = CACHE.get(directory);
     if (digest == null) {
-      digest = new HashMap<String, byte[]>();
       DirectoryScanner scanner = new DirectoryScanner();
       scanner.setBasedir(directory);
       scanner.setIncludes(new String[] {"**/*.class"});
       scanner.scan();
-      for (String path : scanner.getIncludedFiles()) {
-        String type = toJavaType(path);
-        try {
-          digest.put(type, digester.digest(ClassFileReader.read(new File(directory, path))));
-        } catch (ClassFormatException e) {
-          // as far as jdt is concerned, the type does not exist
-        }
-      }
+      digest = newDigest(digestClassfiles(null, directory, Arrays.asList(scanner.getIncludedFiles()), parallel));
       CACHE.put(directory, digest);
     }
 
     return digest;
   }
 
+  private Map<String, byte[]> digestClassfiles(ZipFile jar, File directory, List<String> paths, boolean parallel) throws IOException {
+    // only split work among workers of the digester pool, never fork into the common pool
+    if (parallel && paths.size() > CHUNK_SIZE && ForkJoinTask.inForkJoinPool()) {
+      try {
+        return new ClassfilesDigestTask(jar, directory, paths).invoke();
+      } catch (DigestException e) {
+        throw e.getCause();
+      }
+    }
+    return digestClassfiles(jar, directory, paths, parallel ? new ClassfileDigester() : digester);
+  }
+
+  static Map<String, byte[]> digestClassfiles(ZipFile jar, File directory, List<String> paths, ClassfileDigester digester) throws IOException {
+    Map<String, byte[]> digest = new HashMap<String, byte[]>();
+    for (String path : paths) {
+      String type = toJavaType(path);
+      try {
+        byte[] classfile;
+        if (jar != null) {
+          ZipEntry entry = jar.getEntry(path);
+          if (entry == null) {
+            continue;
+          }
+          classfile = Util.getZipEntryByteContent(entry, jar);
+        } else {
+          classfile = Util.getFileByteContent(new File(directory, path));
+        }
+        digest.put(type, digester.digest(classfile));
+      } catch (ClassFormatException e) {
+        // as far as jdt is concerned, the type does not exist
+      }
+    }
+    return digest;
+  }
+
+  /**
+   * Digests class files of a single jar or directory, recursively splitting large entry lists among fork-join worker threads. Each leaf task uses its own {@link ClassfileDigester}, which is not
+   * thread safe. Zip files support concurrent reads of different entries.
+   */
+  private static class ClassfilesDigestTask extends RecursiveTask<Map<String, byte[]>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ZipFile jar;
+
+    private final File directory;
+
+    private final List<String> paths;
+
+    public ClassfilesDigestTask(ZipFile jar, File directory, List<String> paths) {
+      this.jar = jar;
+      this.directory = directory;
+      this.paths = paths;
+    }
+
+    @Override
+    protected Map<String, byte[]> compute() {
+      if (paths.size() > CHUNK_SIZE) {
+        int middle = paths.size() / 2;
+        ClassfilesDigestTask head = new ClassfilesDigestTask(jar, directory, paths.subList(0, middle));
+        ClassfilesDigestTask tail = new ClassfilesDigestTask(jar, directory, paths.subList(middle, paths.size()));
+        tail.fork();
+        Map<String, byte[]> digest = head.compute();
+        digest.putAll(tail.join());
+        return digest;
+      }
+      try {
+        return digestClassfiles(jar, directory, paths, new ClassfileDigester());
+      } catch (IOException e) {
+        throw new DigestException(e);
+      }
+    }
+  }
+
+  /**
+   * Carries {@link IOException} out of fork-join tasks.
+   */
+  private static class DigestException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DigestException(IOException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized IOException getCause() {
+      return (IOException) super.getCause();
+    }
+  }
+
   public static String toJavaType(String path) {
     path = path.substring(0, path.length() - ".class".length());
     return path.replace('/', '.').replace('\\', '.');
@@ -10,61 +10,173 @@ package io.takari.maven.plugins.compile.jdt;
 import io.takari.maven.plugins.compile.jdt.classpath.ClasspathDirectory;
 import io.takari.maven.plugins.compile.jdt.classpath.ClasspathJar;
 import io.takari.maven.plugins.compile.jdt.classpath.DependencyClasspathEntry;
+import io.takari.maven.plugins.compile.jdt.classpath.PersistentCache;
+import io.takari.maven.plugins.util.SessionProperties;
+import io.takari.maven.plugins.util.SharedCache;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.execution.scope.MojoExecutionScoped;
 import org.apache.maven.project.MavenProject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * JVM-wide cache of dependency classpath entries.
+ * <p>
+ * Cached entries are validated on each lookup, jars by size and last modified timestamp, directories by last modified timestamps of the directory and its package directories as of the entry
+ * load. Directories are not listed again, new packages are new subdirectories, which change last modified timestamp of their parent directory. Output directories of the current project are
+ * invalidated up front, they are about to change. Cache capacity is bounded, least recently used entries are evicted and their jar files are closed.
+ */
 @Named
 @MojoExecutionScoped
 public class ClasspathEntryCache {
 
-  private static final Map<File, DependencyClasspathEntry> CACHE = new HashMap<>();
+  /**
+   * Maximum number of cached classpath entries, see {@link SharedCache} for how the value is applied.
+   */
+  public static final String PROP_MAX_SIZE = "takari.classpathCache.maxSize";
+
+  private static final int DEFAULT_MAX_SIZE = 500;
+
+  /**
+   * Maximum size of the persistent jar index cache, in megabytes. Zero disables the persistent cache.
+   */
+  public static final String PROP_INDEX_CACHE_SIZE = "takari.jarIndexCache.maxSize";
+
+  private static final long DEFAULT_INDEX_CACHE_SIZE = 256;
+
+  private static final Logger log = LoggerFactory.getLogger(ClasspathEntryCache.class);
+
+  private static final SharedCache<File, CachedEntry> CACHE = new SharedCache<File, CachedEntry>("Classpath entry cache", log);
+
+  private static class CachedEntry implements Closeable {
+    final DependencyClasspathEntry entry;
+
+    final long stamp;
+
+    /**
+     * Package directories of directory entries as of the entry load, {@code null} for jars.
+     */
+    final String[] packages;
+
+    CachedEntry(DependencyClasspathEntry entry, long stamp, String[] packages) {
+      this.entry = entry;
+      this.stamp = stamp;
+      this.packages = packages;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (entry instanceof Closeable) {
+        ((Closeable) entry).close();
+      }
+    }
+  }
+
+  private final PersistentCache indexCache;
 
   @Inject
-  public ClasspathEntryCache(MavenProject project) {
-    synchronized (CACHE) {
-      // this is only needed for unit tests, but won't hurt in general
-      CACHE.remove(normalize(new File(project.getBuild().getOutputDirectory())));
-      CACHE.remove(normalize(new File(project.getBuild().getTestOutputDirectory())));
+  public ClasspathEntryCache(MavenProject project, MavenSession session) {
+    CACHE.init(SessionProperties.getInt(session, PROP_MAX_SIZE, DEFAULT_MAX_SIZE));
+    this.indexCache = newIndexCache(session);
+
+    // output directories are about to change, other projects of the session must revalidate them
+    invalidate(normalize(new File(project.getBuild().getOutputDirectory())));
+    invalidate(normalize(new File(project.getBuild().getTestOutputDirectory())));
+  }
+
+  private void invalidate(File location) {
+    CACHE.invalidate(location);
+  }
+
+  private static PersistentCache newIndexCache(MavenSession session) {
+    long maxSize = SessionProperties.getLong(session, PROP_INDEX_CACHE_SIZE, DEFAULT_INDEX_CACHE_SIZE);
+    File directory = SessionProperties.getCacheDirectory(session, "jar-index");
+    if (maxSize <= 0 || directory == null) {
+      return null;
     }
+    return new PersistentCache(directory, ClasspathJar.INDEX_VERSION, maxSize * 1024 * 1024);
   }
 
   public DependencyClasspathEntry get(File location) {
-    location = normalize(location);
-    synchronized (CACHE) {
-      DependencyClasspathEntry entry = null;
-      if (!CACHE.containsKey(location)) {
-        if (location.isDirectory()) {
-          entry = ClasspathDirectory.create(location);
-        } else if (location.isFile()) {
-          try {
-            entry = ClasspathJar.create(location);
-          } catch (IOException e) {
-            // not a zip/jar, ignore
-          }
-        }
-        CACHE.put(location, entry);
-      } else {
-        entry = CACHE.get(location);
+    final File file = normalize(location);
+    CachedEntry cached = CACHE.get(file, new Callable<CachedEntry>() {
+      @Override
+      public CachedEntry call() {
+        return load(file);
+      }
+    }, new SharedCache.Validator<CachedEntry>() {
+      @Override
+      public boolean isValid(CachedEntry cached) {
+        return cached.stamp == getStamp(file, cached.packages);
+      }
+    });
+    return cached.entry;
+  }
+
+  private CachedEntry load(File location) {
+    String[] packages = location.isDirectory() ? getPackageDirectories(location) : null;
+    long stamp = getStamp(location, packages);
+    DependencyClasspathEntry entry = null;
+    if (location.isDirectory()) {
+      entry = ClasspathDirectory.create(location);
+    } else if (location.isFile()) {
+      try {
+        entry = ClasspathJar.create(location, indexCache);
+      } catch (IOException e) {
+        // not a zip/jar, ignore
+      }
+    }
+    return new CachedEntry(entry, stamp, packages);
+  }
+
+  /**
+   * Returns value that changes when classpath entry contents changes in a way that affects cached state. Directory {@code packages} are package directories of the directory as of the entry
+   * load, {@code null} for jars.
+   */
+  private static long getStamp(File location, String[] packages) {
+    if (packages != null) {
+      // package names, class file listings and exported packages of the directory are cached
+      long stamp = 31 * getStamp(new File(location, ClasspathDirectory.PATH_EXPORT_PACKAGE), null) + getStamp(new File(location, ClasspathDirectory.PATH_MANIFESTMF), null);
+      stamp = 31 * stamp + location.lastModified();
+      for (String packageName : packages) {
+        stamp = 31 * (31 * stamp + packageName.hashCode()) + new File(location, packageName).lastModified();
       }
-      return entry;
+      return stamp;
     }
+    return 31 * location.length() + location.lastModified();
+  }
+
+  private static String[] getPackageDirectories(File directory) {
+    List<String> packages = new ArrayList<String>();
+    addPackageDirectories(packages, directory, "");
+    return packages.toArray(new String[packages.size()]);
   }
 
-  private File normalize(File location) {
-    try {
-      location = location.getCanonicalFile();
-    } catch (IOException e1) {
-      location = location.getAbsoluteFile();
+  private static void addPackageDirectories(List<String> packages, File directory, String packageName) {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          String childName = packageName.isEmpty() ? file.getName() : packageName + "/" + file.getName();
+          packages.add(childName);
+          addPackageDirectories(packages, file, childName);
+        }
+      }
     }
-    return location;
+  }
+
+  private static File normalize(File location) {
+    return location.toPath().toAbsolutePath().normalize().toFile();
   }
 }
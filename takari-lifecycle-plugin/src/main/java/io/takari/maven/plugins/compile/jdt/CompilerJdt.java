@@ -18,6 +18,7 @@ import io.takari.incrementalbuild.spi.DefaultOutputMetadata;
 import io.takari.maven.plugins.compile.AbstractCompileMojo.AccessRulesViolation;
 import io.takari.maven.plugins.compile.AbstractCompileMojo.Debug;
 import io.takari.maven.plugins.compile.AbstractCompiler;
+import io.takari.maven.plugins.compile.jdt.ClasspathDigester.DependencyDigest;
 import io.takari.maven.plugins.compile.jdt.classpath.Classpath;
 import io.takari.maven.plugins.compile.jdt.classpath.ClasspathEntry;
 import io.takari.maven.plugins.compile.jdt.classpath.DependencyClasspathEntry;
@@ -30,8 +31,11 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -53,7 +57,6 @@ import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 import org.eclipse.jdt.internal.compiler.IErrorHandlingPolicy;
 import org.eclipse.jdt.internal.compiler.IProblemFactory;
 import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
-import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
@@ -80,17 +83,76 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
   private static final String ATTR_CLASS_DIGEST = "jdt.class.digest";
 
   /**
-   * Classpath digest, map of accessible types to their .class structure hashes.
+   * Classpath entries digest, ordered map of classpath entry paths to their aggregate ABI hashes. Digests of individual entry types are kept in a shared digest store, see
+   * {@link ClasspathDigester#getDigest(String)}.
    */
-  private static final String ATTR_CLASSPATH_DIGEST = "jdt.classpath.digest";
+  private static final String ATTR_CLASSPATH_ENTRIES = "jdt.classpath.entries";
+
+  /**
+   * Digests of individual classpath entry types, map of entry aggregate ABI hashes to maps of entry types to their .class structure hashes. Only kept when the shared digest store is not
+   * available, see {@link ClasspathDigester#storeDigests(List)}.
+   */
+  private static final String ATTR_CLASSPATH_TYPES = "jdt.classpath.types";
+
+  /**
+   * Referenced classpath digest, map of dependency types that can affect project sources to their .class structure hashes. Used instead of {@link #ATTR_CLASSPATH_ENTRIES} when
+   * {@link #setLazyClasspathDigest(boolean) lazy classpath digest} is enabled.
+   */
+  private static final String ATTR_REFERENCED_CLASSPATH_DIGEST = "jdt.classpath.referencedDigest";
+
+  /**
+   * Names of dependency packages that can affect project sources, see {@link #ATTR_REFERENCED_CLASSPATH_DIGEST}.
+   */
+  private static final String ATTR_REFERENCED_CLASSPATH_PACKAGES = "jdt.classpath.referencedPackages";
+
+  /**
+   * {@link ClassfileDigester#VERSION} used to calculate class and classpath digests.
+   */
+  private static final String ATTR_DIGEST_VERSION = "jdt.digest.version";
 
   /**
    * Java source {@link ReferenceCollection}
    */
   private static final String ATTR_REFERENCES = "jdt.references";
 
+  /**
+   * Default fraction of project sources that must be affected by changes for incremental build to switch to full build, see {@link #setFullBuildThreshold(double)}.
+   */
+  public static final String DEFAULT_FULL_BUILD_THRESHOLD = "0.5";
+
+  /**
+   * Incremental build is never escalated to full build for projects with fewer sources. Multi-round compilation overhead is negligible for small projects.
+   */
+  private static final int MIN_FULL_BUILD_SOURCES = 20;
+
+  /**
+   * Symbol table carried between incremental builds is compacted once it has this many times more symbols than sources reference.
+   */
+  private static final int MAX_SYMBOL_TABLE_SLACK = 2;
+
   private Classpath dependencypath;
 
+  /**
+   * Output directory classpath entry of the current compilation, notified about written class files.
+   */
+  private OutputDirectoryClasspathEntry outputpath;
+
+  /**
+   * Dependencies considered by classpath change detection, does not include main classes of test compilation.
+   */
+  private List<DependencyClasspathEntry> digestpath;
+
+  private boolean lazyClasspathDigest;
+
+  /**
+   * Digest of referenced dependency types, extended as compiled sources reference more types. Only used with lazy classpath digest.
+   */
+  private HashMap<String, byte[]> referencedTypes;
+
+  private HashSet<String> referencedPackages;
+
+  private boolean referencedDigestChanged;
+
   /**
    * Set of ICompilationUnit to be compiled.
    */
@@ -107,6 +169,30 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
 
   private final Set<String> simpleNames = new LinkedHashSet<String>();
 
+  /**
+   * Maps referenced names to sources, lazily created when affected sources are looked up for the first time.
+   */
+  private ReferenceIndex referenceIndex;
+
+  /**
+   * Names referenced by project sources, shared by all {@link ReferenceCollection}s.
+   */
+  private SymbolTable symbols;
+
+  /**
+   * All project sources, used to switch incremental build to full build.
+   */
+  private final List<File> sources = new ArrayList<File>();
+
+  /**
+   * {@code true} if all sources are compiled in a single round. There is no need to track processed and affected sources during full build, which saves memory and compiler rounds.
+   */
+  private boolean fullBuild;
+
+  private double fullBuildThreshold = Double.parseDouble(DEFAULT_FULL_BUILD_THRESHOLD);
+
+  private int compiledCount;
+
   private final ClassfileDigester digester = new ClassfileDigester();
 
   private final ClasspathEntryCache classpathCache;
@@ -182,27 +268,57 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
     Compiler compiler = new Compiler(namingEnvironment, errorHandlingPolicy, compilerOptions, this, problemFactory);
     compiler.options.produceReferenceInfo = true;
 
-    // TODO optimize full build.
-    // there is no need to track processed inputs during full build,
-    // which saves memory and GC cycles
-    // also, if number of sources in the previous build is known, it may be more efficient to
-    // rebuild everything after certain % of sources is modified
-
     // keep calling the compiler while there are sources in the queue
     while (!compileQueue.isEmpty()) {
       ICompilationUnit[] sourceFiles = compileQueue.toArray(new ICompilationUnit[compileQueue.size()]);
       compileQueue.clear();
       compiler.compile(sourceFiles);
       namingEnvironment.reset();
-      enqueueAffectedSources();
+      if (!fullBuild) {
+        enqueueAffectedSources();
+        escalateIfNecessary();
+      }
     }
 
-    return processedSources.size();
+    log.debug("Classpath lookups: {} entry probes, {} probes avoided by type name filters", namingEnvironment.getProbeCount(), namingEnvironment.getAvoidedProbeCount());
+
+    compactSymbolTable();
+
+    if (lazyClasspathDigest) {
+      // compiled sources may reference types and packages that were not relevant before
+      int typeCount = referencedTypes.size(), packageCount = referencedPackages.size();
+      classpathDigester.digestReferencedTypes(digestpath, getSymbolTable(), referencedTypes, referencedPackages);
+      if (typeCount != referencedTypes.size() || packageCount != referencedPackages.size()) {
+        referencedDigestChanged = true;
+      }
+      saveReferencedClasspathDigest();
+    }
+
+    return compiledCount;
+  }
+
+  /**
+   * Sets fraction of project sources that must be affected by changes for incremental build to switch to full build. Affected sources are counted cumulatively, i.e. sources compiled by
+   * earlier compiler rounds of the same build count towards the threshold.
+   */
+  public void setFullBuildThreshold(double fullBuildThreshold) {
+    if (!(fullBuildThreshold >= 0 && fullBuildThreshold <= 1)) {
+      throw new IllegalArgumentException("Full build threshold must be between 0 and 1: " + fullBuildThreshold);
+    }
+    this.fullBuildThreshold = fullBuildThreshold;
+  }
+
+  /**
+   * When {@code true}, classpath change detection only digests and compares dependency types and packages referenced by project sources instead of all dependency types.
+   */
+  public void setLazyClasspathDigest(boolean lazyClasspathDigest) {
+    this.lazyClasspathDigest = lazyClasspathDigest;
   }
 
   @Override
   public boolean setSources(List<InputMetadata<File>> sources) throws IOException {
     for (InputMetadata<File> source : sources) {
+      this.sources.add(source.getResource());
       if (source.getStatus() != ResourceStatus.UNMODIFIED) {
         enqueue(source.process().getResource());
       }
@@ -217,11 +333,46 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
       }
     }
 
-    enqueueAffectedSources();
+    if (fullBuild) {
+      enqueueAllSources();
+    } else {
+      enqueueAffectedSources();
+      escalateIfNecessary();
+    }
 
     return !compileQueue.isEmpty();
   }
 
+  /**
+   * Switches to full build if too many sources are affected by changes. Full build compiles all sources in a single compiler round, while incremental build may need many rounds to recompile
+   * the same sources. The affected count includes sources already compiled by earlier rounds, not only sources queued for the next round.
+   */
+  private void escalateIfNecessary() {
+    int affectedCount = processedSources.size();
+    if (sources.size() >= MIN_FULL_BUILD_SOURCES && affectedCount > fullBuildThreshold * sources.size()) {
+      log.debug("Switching to full build, {} out of {} sources are affected by changes", affectedCount, sources.size());
+      enqueueAllSources();
+    }
+  }
+
+  /**
+   * Enqueues all sources and switches to full build mode. Sources compiled by earlier rounds are compiled again, they may depend on sources whose ABI changes in the full build round and
+   * dependency tracking is not done during full build.
+   */
+  private void enqueueAllSources() {
+    compileQueue.clear();
+    for (File source : sources) {
+      compileQueue.add(newSourceFile(source));
+    }
+
+    fullBuild = true;
+    referenceIndex = null;
+    processedSources.clear();
+    qualifiedNames.clear();
+    simpleNames.clear();
+    rootNames.clear();
+  }
+
   private String getJavaType(DefaultOutputMetadata output) {
     String outputDirectory = getOutputDirectory().getAbsolutePath();
     String path = output.getResource().getAbsolutePath();
@@ -236,11 +387,9 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
   }
 
   private void enqueueAffectedSources() throws IOException {
-    for (InputMetadata<File> input : context.getRegisteredInputs(File.class)) {
-      final File resource = input.getResource();
-      if (!processedSources.contains(resource) && resource.canRead()) {
-        ReferenceCollection references = input.getAttribute(ATTR_REFERENCES, ReferenceCollection.class);
-        if (references != null && references.includes(qualifiedNames, simpleNames, rootNames)) {
+    if (!simpleNames.isEmpty()) {
+      for (File resource : getReferenceIndex().getAffectedSources(qualifiedNames, simpleNames, rootNames)) {
+        if (!processedSources.contains(resource) && resource.canRead()) {
           enqueue(resource);
         }
       }
@@ -251,6 +400,23 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
     rootNames.clear();
   }
 
+  private ReferenceIndex getReferenceIndex() {
+    if (referenceIndex == null) {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      referenceIndex = new ReferenceIndex();
+      int count = 0;
+      for (InputMetadata<File> input : context.getRegisteredInputs(File.class)) {
+        ReferenceCollection references = input.getAttribute(ATTR_REFERENCES, ReferenceCollection.class);
+        if (references != null) {
+          referenceIndex.put(input.getResource(), references);
+          count++;
+        }
+      }
+      log.debug("Indexed references of {} sources ({} ms)", count, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+    return referenceIndex;
+  }
+
   private void enqueue(File sourceFile) {
     if (processedSources.add(sourceFile)) {
       compileQueue.add(newSourceFile(sourceFile));
@@ -282,15 +448,30 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
     OutputDirectoryClasspathEntry output = new OutputDirectoryClasspathEntry(getOutputDirectory());
     entries.add(output);
     mutableentries.add(output);
+    this.outputpath = output;
 
     entries.addAll(dependencypath.getEntries());
 
     return new Classpath(entries, mutableentries);
   }
 
+  @Override
+  public void prefetchClasspath(List<File> dependencies) throws IOException {
+    List<File> files = new ArrayList<File>();
+    for (File dependency : dependencies) {
+      if (classpathCache.get(dependency) != null) {
+        files.add(dependency);
+      }
+    }
+    if (!lazyClasspathDigest) {
+      classpathDigester.prefetch(files);
+    }
+  }
+
   @Override
   public boolean setClasspath(List<File> dependencies, File mainClasses, Set<File> directDependencies) throws IOException {
     final List<ClasspathEntry> dependencypath = new ArrayList<ClasspathEntry>();
+    final List<DependencyClasspathEntry> digestpath = new ArrayList<DependencyClasspathEntry>();
     final List<File> files = new ArrayList<File>();
 
     if (mainClasses != null) {
@@ -311,6 +492,7 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
           dependencypath.add(entry);
         }
         files.add(dependency);
+        digestpath.add(entry);
       }
     }
 
@@ -323,55 +505,244 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
     }
 
     this.dependencypath = new Classpath(dependencypath, null);
+    this.digestpath = digestpath;
+
+    if (lazyClasspathDigest) {
+      verifyReferencedClasspath();
+    } else {
+      verifyClasspath(files);
+    }
+
+    if (!fullBuild) {
+      enqueueAffectedSources();
+    }
 
+    return !compileQueue.isEmpty();
+  }
+
+  private void verifyClasspath(List<File> files) throws IOException {
     Stopwatch stopwatch = Stopwatch.createStarted();
-    long typecount = 0, packagecount = 0;
 
-    HashMap<String, byte[]> digest = classpathDigester.digestDependencies(files);
+    List<DependencyDigest> digests = classpathDigester.digestDependencies(files);
+    LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>();
+    for (int i = 0; i < files.size(); i++) {
+      entries.put(files.get(i).getAbsolutePath(), digests.get(i).getHash());
+    }
 
     DefaultInputMetadata<File> metadata = context.registerInput(getPom());
     @SuppressWarnings("unchecked")
-    Map<String, byte[]> oldDigest = (Map<String, byte[]>) metadata.getAttribute(ATTR_CLASSPATH_DIGEST, Serializable.class);
+    Map<String, String> oldEntries = (Map<String, String>) metadata.getAttribute(ATTR_CLASSPATH_ENTRIES, Serializable.class);
+    Integer oldDigestVersion = metadata.getAttribute(ATTR_DIGEST_VERSION, Integer.class);
+    @SuppressWarnings("unchecked")
+    Map<String, Map<String, byte[]>> oldEntryTypes = (Map<String, Map<String, byte[]>>) metadata.getAttribute(ATTR_CLASSPATH_TYPES, Serializable.class);
 
     boolean changed = false;
+    int typecount = 0;
 
-    if (oldDigest != null) {
-      Set<String> changedPackages = new HashSet<String>();
+    if (context.isEscalated() || oldEntries == null || oldDigestVersion == null || oldDigestVersion.intValue() != ClassfileDigester.VERSION) {
+      // no usable previous build state, all sources will be compiled
+      fullBuild = true;
+      changed = true;
+    } else if (!new ArrayList<Map.Entry<String, String>>(entries.entrySet()).equals(new ArrayList<Map.Entry<String, String>>(oldEntries.entrySet()))) {
+      changed = true;
+      typecount = verifyChangedClasspathEntries(files, digests, oldEntries, oldEntryTypes);
+      if (typecount < 0) {
+        // previous digest of a changed entry is not available, all sources will be compiled
+        fullBuild = true;
+      }
+    }
 
-      for (Map.Entry<String, byte[]> entry : digest.entrySet()) {
-        String type = entry.getKey();
-        byte[] hash = entry.getValue();
-        if (!Arrays.equals(hash, oldDigest.get(type))) {
-          changed = true;
-          addDependentsOf(type);
+    if (changed) {
+      boolean stored = classpathDigester.storeDigests(digests);
+      DefaultInput<File> input = metadata.process();
+      input.setAttribute(ATTR_CLASSPATH_ENTRIES, entries);
+      input.setAttribute(ATTR_DIGEST_VERSION, ClassfileDigester.VERSION);
+      if (!stored) {
+        HashMap<String, HashMap<String, byte[]>> types = new HashMap<String, HashMap<String, byte[]>>();
+        for (DependencyDigest digest : digests) {
+          types.put(digest.getHash(), new HashMap<String, byte[]>(digest.getTypes()));
         }
-        changedPackages.add(getPackage(type));
+        input.setAttribute(ATTR_CLASSPATH_TYPES, types);
       }
+    }
+
+    log.debug("Verified {} classpath entries and {} types in {} ms", entries.size(), Math.max(typecount, 0), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Compares types of classpath entries that were added, removed or whose aggregate ABI hash changed since the previous build. Types of other entries did not change and are only compared if
+   * relative order of the entries changed. Previous digests are looked up in the shared digest store first, then in the previous build state. Returns number of compared types or {@code -1} if
+   * previous digest of a changed entry is not available.
+   */
+  private int verifyChangedClasspathEntries(List<File> files, List<DependencyDigest> digests, Map<String, String> oldEntries, Map<String, Map<String, byte[]>> oldEntryTypes) {
+    Map<String, DependencyDigest> current = new HashMap<String, DependencyDigest>();
+    for (int i = 0; i < files.size(); i++) {
+      current.put(files.get(i).getAbsolutePath(), digests.get(i));
+    }
 
-      for (String oldType : oldDigest.keySet()) {
-        if (!digest.containsKey(oldType)) {
-          changed = true;
-          addDependentsOf(oldType);
+    List<Map<String, byte[]>> oldTypes = new ArrayList<Map<String, byte[]>>();
+    List<Map<String, byte[]>> changedOldTypes = new ArrayList<Map<String, byte[]>>();
+    List<String> oldUnchanged = new ArrayList<String>();
+    for (Map.Entry<String, String> entry : oldEntries.entrySet()) {
+      DependencyDigest digest = current.get(entry.getKey());
+      if (digest != null && digest.getHash().equals(entry.getValue())) {
+        oldUnchanged.add(entry.getKey());
+      } else {
+        digest = classpathDigester.getDigest(entry.getValue());
+        if (digest == null && oldEntryTypes != null && oldEntryTypes.containsKey(entry.getValue())) {
+          digest = new DependencyDigest(entry.getValue(), oldEntryTypes.get(entry.getValue()));
+        }
+        if (digest == null) {
+          log.debug("Previous digest of classpath entry {} is not available", entry.getKey());
+          return -1;
         }
-        changedPackages.remove(getPackage(oldType));
+        changedOldTypes.add(digest.getTypes());
       }
+      oldTypes.add(digest.getTypes());
+    }
 
-      for (String changedPackage : changedPackages) {
-        addDependentsOf(changedPackage);
+    Set<String> unchanged = new HashSet<String>(oldUnchanged);
+    List<Map<String, byte[]>> newTypes = new ArrayList<Map<String, byte[]>>();
+    List<Map<String, byte[]>> changedNewTypes = new ArrayList<Map<String, byte[]>>();
+    List<String> newUnchanged = new ArrayList<String>();
+    List<DependencyClasspathEntry> unchangedEntries = new ArrayList<DependencyClasspathEntry>();
+    for (int i = 0; i < files.size(); i++) {
+      String path = files.get(i).getAbsolutePath();
+      Map<String, byte[]> types = digests.get(i).getTypes();
+      if (unchanged.contains(path)) {
+        newUnchanged.add(path);
+        unchangedEntries.add(digestpath.get(i));
+      } else {
+        changedNewTypes.add(types);
       }
-    } else {
-      changed = true;
+      newTypes.add(types);
     }
 
-    if (changed) {
-      metadata.process().setAttribute(ATTR_CLASSPATH_DIGEST, digest);
+    if (!oldUnchanged.equals(newUnchanged)) {
+      // different order can change which of duplicate type definitions is visible, compare all types
+      changedOldTypes = oldTypes;
+      changedNewTypes = newTypes;
+      unchangedEntries = Collections.emptyList();
     }
 
-    log.debug("Verified {} types and {} packages in {} ms", typecount, packagecount, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    Set<String> compared = new HashSet<String>();
+    Set<String> oldPackages = new HashSet<String>();
+    Set<String> newPackages = new HashSet<String>();
+    for (Map<String, byte[]> types : changedOldTypes) {
+      for (String type : types.keySet()) {
+        if (compared.add(type) && !Arrays.equals(findType(newTypes, type), findType(oldTypes, type))) {
+          addDependentsOf(type);
+        }
+        oldPackages.add(getPackage(type));
+      }
+    }
+    for (Map<String, byte[]> types : changedNewTypes) {
+      for (String type : types.keySet()) {
+        if (compared.add(type) && !Arrays.equals(findType(newTypes, type), findType(oldTypes, type))) {
+          addDependentsOf(type);
+        }
+        newPackages.add(getPackage(type));
+      }
+    }
 
-    enqueueAffectedSources();
+    newPackages.removeAll(oldPackages);
+    newPackages.remove(null);
+    for (String newPackage : newPackages) {
+      if (!isPackage(unchangedEntries, newPackage)) {
+        addDependentsOf(newPackage);
+      }
+    }
 
-    return !compileQueue.isEmpty();
+    return compared.size();
+  }
+
+  /**
+   * Returns digest of the first definition of the type or {@code null} if the type is not defined.
+   */
+  private static byte[] findType(List<Map<String, byte[]>> digests, String type) {
+    for (Map<String, byte[]> types : digests) {
+      byte[] hash = types.get(type);
+      if (hash != null) {
+        return hash;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isPackage(List<DependencyClasspathEntry> entries, String packageName) {
+    String path = packageName.replace('.', '/');
+    for (DependencyClasspathEntry entry : entries) {
+      if (entry.getPackageNames().contains(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compares digests of dependency types and packages referenced by the previous build with the current classpath. Types and packages that are not referenced by any source cannot affect
+   * compilation results and are not digested at all.
+   */
+  private void verifyReferencedClasspath() {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+
+    DefaultInputMetadata<File> metadata = context.registerInput(getPom());
+    @SuppressWarnings("unchecked")
+    Map<String, byte[]> oldTypes = (Map<String, byte[]>) metadata.getAttribute(ATTR_REFERENCED_CLASSPATH_DIGEST, Serializable.class);
+    @SuppressWarnings("unchecked")
+    Set<String> oldPackages = (Set<String>) metadata.getAttribute(ATTR_REFERENCED_CLASSPATH_PACKAGES, Serializable.class);
+    Integer oldDigestVersion = metadata.getAttribute(ATTR_DIGEST_VERSION, Integer.class);
+    SymbolTable oldSymbols = getPreviousSymbolTable();
+
+    referencedTypes = new HashMap<String, byte[]>();
+    referencedPackages = new HashSet<String>();
+
+    if (context.isEscalated() || oldTypes == null || oldPackages == null || oldSymbols == null || oldDigestVersion == null || oldDigestVersion.intValue() != ClassfileDigester.VERSION) {
+      // no usable previous build state, all sources will be compiled and referenced types digested afterwards
+      fullBuild = true;
+      referencedDigestChanged = true;
+      return;
+    }
+
+    // the previous build digested all types referenced by the old symbols, so missing old entries are types that did not exist
+    classpathDigester.digestReferencedTypes(digestpath, oldSymbols, referencedTypes, referencedPackages);
+
+    for (Map.Entry<String, byte[]> entry : referencedTypes.entrySet()) {
+      if (!Arrays.equals(entry.getValue(), oldTypes.get(entry.getKey()))) {
+        referencedDigestChanged = true;
+        addDependentsOf(entry.getKey());
+      }
+    }
+    for (String oldType : oldTypes.keySet()) {
+      if (!referencedTypes.containsKey(oldType)) {
+        referencedDigestChanged = true;
+        addDependentsOf(oldType);
+      }
+    }
+    for (String referencedPackage : referencedPackages) {
+      if (!oldPackages.contains(referencedPackage)) {
+        referencedDigestChanged = true;
+        addDependentsOf(referencedPackage);
+      }
+    }
+    for (String oldPackage : oldPackages) {
+      if (!referencedPackages.contains(oldPackage)) {
+        referencedDigestChanged = true;
+        addDependentsOf(oldPackage);
+      }
+    }
+
+    log.debug("Verified {} referenced types and {} referenced packages in {} ms", referencedTypes.size(), referencedPackages.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+  }
+
+  private void saveReferencedClasspathDigest() {
+    if (referencedDigestChanged) {
+      DefaultInput<File> input = context.registerInput(getPom()).process();
+      input.setAttribute(ATTR_REFERENCED_CLASSPATH_DIGEST, referencedTypes);
+      input.setAttribute(ATTR_REFERENCED_CLASSPATH_PACKAGES, referencedPackages);
+      input.setAttribute(ATTR_DIGEST_VERSION, ClassfileDigester.VERSION);
+      referencedDigestChanged = false;
+    }
   }
 
   private String getPackage(String type) {
@@ -387,14 +758,21 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
     final String sourceName = new String(result.getFileName());
     final File sourceFile = new File(sourceName);
 
-    processedSources.add(sourceFile);
+    compiledCount++;
+    if (!fullBuild) {
+      processedSources.add(sourceFile);
+    }
 
     // JDT may decide to compile more sources than it was asked to in some cases
     // always register and process sources with build context
     DefaultInput<File> input = context.registerInput(sourceFile).process();
 
     // track type references
-    input.setAttribute(ATTR_REFERENCES, new ReferenceCollection(result.rootReferences, result.qualifiedReferences, result.simpleNameReferences));
+    ReferenceCollection references = new ReferenceCollection(getSymbolTable(), result.rootReferences, result.qualifiedReferences, result.simpleNameReferences);
+    input.setAttribute(ATTR_REFERENCES, references);
+    if (referenceIndex != null) {
+      referenceIndex.put(sourceFile, references);
+    }
 
     if (result.hasProblems()) {
       for (CategorizedProblem problem : result.getProblems()) {
@@ -425,6 +803,61 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
     // XXX double check affected sources are recompiled when this source has errors
   }
 
+  private SymbolTable getSymbolTable() {
+    if (symbols == null) {
+      // reuse symbol table of the previous build, unless all sources are recompiled
+      if (!fullBuild) {
+        symbols = getPreviousSymbolTable();
+      }
+      if (symbols == null) {
+        symbols = new SymbolTable();
+      }
+    }
+    return symbols;
+  }
+
+  /**
+   * Drops names no longer referenced by any source from the symbol table, which otherwise accumulates names of all source versions compiled since the last full build. Compacts the table in
+   * place and rewrites ids of all reference collections that share it, including collections of sources not compiled by this build.
+   */
+  private void compactSymbolTable() {
+    if (symbols == null) {
+      return;
+    }
+    List<ReferenceCollection> collections = new ArrayList<ReferenceCollection>();
+    BitSet live = new BitSet(symbols.size());
+    for (InputMetadata<File> input : context.getRegisteredInputs(File.class)) {
+      ReferenceCollection references = input.getAttribute(ATTR_REFERENCES, ReferenceCollection.class);
+      if (references != null && references.getSymbolTable() == symbols) {
+        references.collectSymbols(live);
+        collections.add(references);
+      }
+    }
+    if (symbols.size() <= MAX_SYMBOL_TABLE_SLACK * live.cardinality()) {
+      return;
+    }
+    int size = symbols.size();
+    int[] mapping = symbols.compact(live);
+    for (ReferenceCollection references : collections) {
+      references.remapSymbols(mapping);
+    }
+    referenceIndex = null;
+    log.debug("Compacted symbol table from {} to {} symbols", size, symbols.size());
+  }
+
+  /**
+   * Returns symbol table shared by the previous build {@link ReferenceCollection}s or {@code null} if there are no references.
+   */
+  private SymbolTable getPreviousSymbolTable() {
+    for (InputMetadata<File> input : context.getRegisteredInputs(File.class)) {
+      ReferenceCollection references = input.getAttribute(ATTR_REFERENCES, ReferenceCollection.class);
+      if (references != null) {
+        return references.getSymbolTable();
+      }
+    }
+    return null;
+  }
+
   private void writeClassFile(DefaultInput<File> input, String relativeStringName, ClassFile classFile) throws IOException {
     final byte[] bytes = classFile.getBytes();
     final File outputFile = new File(getOutputDirectory(), relativeStringName);
@@ -444,13 +877,16 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
     } finally {
       os.close();
     }
+
+    if (outputpath != null) {
+      outputpath.addClassFile(relativeStringName.replace(File.separatorChar, '/'));
+    }
   }
 
   private boolean digestClassFile(DefaultOutput output, byte[] definition) {
     boolean significantChange = true;
     try {
-      ClassFileReader reader = new ClassFileReader(definition, output.getResource().getAbsolutePath().toCharArray());
-      byte[] hash = digester.digest(reader);
+      byte[] hash = digester.digest(definition);
       if (hash != null) {
         byte[] oldHash = (byte[]) output.setAttribute(ATTR_CLASS_DIGEST, hash);
         significantChange = oldHash == null || !Arrays.equals(hash, oldHash);
@@ -462,7 +898,7 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
   }
 
   private void addDependentsOf(String typeOrPackage) {
-    if (typeOrPackage != null) {
+    if (typeOrPackage != null && !fullBuild) {
       // adopted from org.eclipse.jdt.internal.core.builder.IncrementalImageBuilder.addDependentsOf
       // TODO deal with package-info
       int idx = typeOrPackage.indexOf('.');
@@ -482,5 +918,10 @@ public class CompilerJdt extends AbstractCompiler implements ICompilerRequestor
   public void skipCompilation() {
     // unlike javac, jdt compiler tracks input-output association
     // this allows BuildContext to automatically carry-over output metadata
+
+    if (lazyClasspathDigest) {
+      // referenced types changed without affecting any sources
+      saveReferencedClasspathDigest();
+    }
   }
 }
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Per-type ABI digest of jar class files, precomputed when the jar is built and embedded in the jar as {@link #ENTRY_NAME} entry. The entry starts with aggregate jar-level ABI hash, which allows
+ * consumers to recognize jars with unchanged ABI without reading individual type digests.
+ * <p>
+ * Entry format: format version, {@link ClassfileDigester#VERSION}, aggregate hash, number of types followed by type name and digest of each type.
+ */
+public class EmbeddedAbiDigest {
+
+  public static final String ENTRY_NAME = "META-INF/takari/abi-digest";
+
+  /**
+   * Embedded entry format version. Must be incremented when the entry format or the aggregate hash algorithm change.
+   */
+  private static final int FORMAT_VERSION = 1;
+
+  private final String aggregateHash;
+
+  private final Map<String, byte[]> types;
+
+  private EmbeddedAbiDigest(String aggregateHash, Map<String, byte[]> types) {
+    this.aggregateHash = aggregateHash;
+    this.types = types;
+  }
+
+  /**
+   * Returns hex encoded hash of all type names and their digests, independent of type iteration order.
+   */
+  public String getAggregateHash() {
+    return aggregateHash;
+  }
+
+  /**
+   * Returns type digests or {@code null} if the digests were not read.
+   */
+  public Map<String, byte[]> getTypes() {
+    return types;
+  }
+
+  public static String getAggregateHash(Map<String, byte[]> types) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (Map.Entry<String, byte[]> entry : new TreeMap<String, byte[]>(types).entrySet()) {
+      hasher.putInt(entry.getKey().length());
+      hasher.putUnencodedChars(entry.getKey());
+      hasher.putInt(entry.getValue().length);
+      hasher.putBytes(entry.getValue());
+    }
+    return hasher.hash().toString();
+  }
+
+  public static byte[] write(Map<String, byte[]> types) throws IOException {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    try (DataOutputStream os = new DataOutputStream(buf)) {
+      os.writeInt(FORMAT_VERSION);
+      os.writeInt(ClassfileDigester.VERSION);
+      os.writeUTF(getAggregateHash(types));
+      os.writeInt(types.size());
+      for (Map.Entry<String, byte[]> entry : new TreeMap<String, byte[]>(types).entrySet()) {
+        os.writeUTF(entry.getKey());
+        os.writeByte(entry.getValue().length);
+        os.write(entry.getValue());
+      }
+    }
+    return buf.toByteArray();
+  }
+
+  /**
+   * Reads digest embedded in the jar. Returns {@code null} if the jar does not have embedded digest or the digest was produced by incompatible {@link ClassfileDigester} version.
+   *
+   * @param readTypes if {@code false}, only the aggregate hash is read
+   */
+  public static EmbeddedAbiDigest read(ZipFile jar, boolean readTypes) throws IOException {
+    ZipEntry entry = jar.getEntry(ENTRY_NAME);
+    if (entry == null) {
+      return null;
+    }
+    try (DataInputStream is = new DataInputStream(new BufferedInputStream(jar.getInputStream(entry)))) {
+      if (is.readInt() != FORMAT_VERSION || is.readInt() != ClassfileDigester.VERSION) {
+        return null;
+      }
+      String aggregateHash = is.readUTF();
+      if (!readTypes) {
+        return new EmbeddedAbiDigest(aggregateHash, null);
+      }
+      int size = is.readInt();
+      Map<String, byte[]> types = new HashMap<String, byte[]>(size * 4 / 3 + 1);
+      for (int i = 0; i < size; i++) {
+        String type = is.readUTF();
+        byte[] hash = new byte[is.readUnsignedByte()];
+        is.readFully(hash);
+        types.put(type, hash);
+      }
+      return new EmbeddedAbiDigest(aggregateHash, types);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the jar has class files of exactly the given types. Shaded and otherwise repackaged jars often carry stale embedded digest of the original artifact.
+   */
+  public static boolean matchesClassfiles(ZipFile jar, Map<String, byte[]> types) {
+    int count = 0;
+    for (Enumeration<? extends ZipEntry> entries = jar.entries(); entries.hasMoreElements();) {
+      String path = entries.nextElement().getName();
+      if (path.endsWith(".class")) {
+        if (!types.containsKey(ClasspathDigester.toJavaType(path))) {
+          return false;
+        }
+        count++;
+      }
+    }
+    return count == types.size();
+  }
+}
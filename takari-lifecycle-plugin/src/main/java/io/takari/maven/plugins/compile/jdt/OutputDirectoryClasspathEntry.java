@@ -12,25 +12,79 @@ import io.takari.maven.plugins.compile.jdt.classpath.ClasspathEntry;
 import io.takari.maven.plugins.compile.jdt.classpath.MutableClasspathEntry;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 
+/**
+ * Compiler output directory classpath entry. The directory is scanned once, class files written during compilation are reported via {@link #addClassFile(String)} and become visible to package
+ * lookups after {@link #reset()}. Type lookups see reported class files immediately and other class files written to the directory, e.g. by annotation processors, after {@link #reset()}.
+ * <p>
+ * Packages of class files written to the directory by other means are found by {@link #reset()} too. New packages are new subdirectories, which change last modified timestamp of their parent
+ * directory, so only package directories with changed timestamps are listed again.
+ */
 class OutputDirectoryClasspathEntry implements ClasspathEntry, MutableClasspathEntry {
 
+  /**
+   * Directory timestamps this close to the last scan are racy, see {@code ClasspathDirectory}.
+   */
+  private static final long RACY_INTERVAL = 2000L;
+
   private final File directory;
 
-  private ClasspathDirectory delegate;
+  private final ClasspathDirectory delegate;
+
+  private Set<String> packageNames;
+
+  private final Set<String> addedPackageNames = new HashSet<String>();
+
+  /**
+   * Last modified timestamps of package directories, and of the output directory itself as {@code ""} package, as of their last listing.
+   */
+  private final Map<String, Long> timestamps = new HashMap<String, Long>();
+
+  /**
+   * Time of the last {@link #reset()}, or of the initial scan.
+   */
+  private long scannedAt;
 
   public OutputDirectoryClasspathEntry(File directory) {
     this.directory = directory;
 
+    this.scannedAt = System.currentTimeMillis();
     this.delegate = ClasspathDirectory.create(directory);
+    this.packageNames = Collections.unmodifiableSet(new HashSet<String>(delegate.getPackageNames()));
+    // timestamps taken after the scan, directories changed in between are racy and listed again by the first reset
+    timestamps.put("", directory.lastModified());
+    for (String packageName : packageNames) {
+      timestamps.put(packageName, getPackageDirectory(packageName).lastModified());
+    }
   }
 
   @Override
   public Collection<String> getPackageNames() {
-    return delegate.getPackageNames();
+    return packageNames;
+  }
+
+  /**
+   * Records class file written to the output directory, {@code relativeFileName} uses '/' as separator.
+   */
+  public void addClassFile(String relativeFileName) {
+    int last = relativeFileName.lastIndexOf('/');
+    delegate.invalidate(last > 0 ? relativeFileName.substring(0, last) : "");
+    while (last > 0) {
+      String packageName = relativeFileName.substring(0, last);
+      if (packageNames.contains(packageName) || !addedPackageNames.add(packageName)) {
+        break; // parent packages are already known
+      }
+      last = packageName.lastIndexOf('/');
+    }
   }
 
   @Override
@@ -40,7 +94,52 @@ class OutputDirectoryClasspathEntry implements ClasspathEntry, MutableClasspathE
 
   @Override
   public void reset() {
-    this.delegate = ClasspathDirectory.create(directory);
+    delegate.invalidate();
+    Set<String> packageNames = new HashSet<String>(this.packageNames);
+    packageNames.addAll(addedPackageNames);
+    addedPackageNames.clear();
+    long now = System.currentTimeMillis();
+    for (String packageName : new ArrayList<String>(timestamps.keySet())) {
+      long timestamp = timestamps.get(packageName);
+      // directories modified close to the last scan may have changed again without changing their timestamp
+      if (timestamp != getPackageDirectory(packageName).lastModified() || scannedAt - timestamp <= RACY_INTERVAL) {
+        scan(packageName, packageNames);
+      }
+    }
+    // packages of reported class files were not listed yet
+    for (String packageName : new ArrayList<String>(packageNames)) {
+      if (!timestamps.containsKey(packageName)) {
+        scan(packageName, packageNames);
+      }
+    }
+    scannedAt = now;
+    if (packageNames.size() != this.packageNames.size()) {
+      this.packageNames = Collections.unmodifiableSet(packageNames);
+    }
+  }
+
+  /**
+   * Lists package directory and, recursively, its subdirectories not listed before. Adds found packages to {@code packageNames}.
+   */
+  private void scan(String packageName, Set<String> packageNames) {
+    File packageDirectory = getPackageDirectory(packageName);
+    timestamps.put(packageName, packageDirectory.lastModified());
+    File[] files = packageDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          String childName = packageName.isEmpty() ? file.getName() : packageName + "/" + file.getName();
+          packageNames.add(childName);
+          if (!timestamps.containsKey(childName)) {
+            scan(childName, packageNames);
+          }
+        }
+      }
+    }
+  }
+
+  private File getPackageDirectory(String packageName) {
+    return packageName.isEmpty() ? directory : new File(directory, packageName);
   }
 
   @Override
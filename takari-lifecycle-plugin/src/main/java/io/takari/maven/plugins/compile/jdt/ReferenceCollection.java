@@ -13,62 +13,85 @@
 package io.takari.maven.plugins.compile.jdt;
 
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import org.eclipse.jdt.core.compiler.CharOperation;
 
 
 // adopted from org.eclipse.jdt.internal.core.builder.ReferenceCollection
+// references are stored as sorted arrays of SymbolTable ids, which are compact in serialized build state and allow allocation-free includes
 public class ReferenceCollection implements Serializable {
 
+  // old build state with String-based collections fails to deserialize, which forces full rebuild
+  private static final long serialVersionUID = 2L;
+
+  final SymbolTable symbols;
+
   // contains no simple names as in just 'a' which is kept in simpleNameReferences instead
-  Set<String> qualifiedNameReferences;
-  Set<String> simpleNameReferences;
-  Set<String> rootReferences;
-
-  protected ReferenceCollection(char[][] rootReferences, char[][][] qualifiedNameReferences, char[][] simpleNameReferences) {
-    this.qualifiedNameReferences = toStringSet(qualifiedNameReferences);
-    this.simpleNameReferences = toStringSet(simpleNameReferences);
-    this.rootReferences = toStringSet(rootReferences);
+  final int[] qualifiedNameReferences;
+  final int[] simpleNameReferences;
+  final int[] rootReferences;
+
+  protected ReferenceCollection(SymbolTable symbols, char[][] rootReferences, char[][][] qualifiedNameReferences, char[][] simpleNameReferences) {
+    this.symbols = symbols;
+    this.qualifiedNameReferences = toIds(symbols, qualifiedNameReferences);
+    this.simpleNameReferences = toIds(symbols, simpleNameReferences);
+    this.rootReferences = toIds(symbols, rootReferences);
+  }
+
+  private static int[] toIds(SymbolTable symbols, char[][] strings) {
+    int[] ids = new int[strings.length];
+    for (int i = 0; i < strings.length; i++) {
+      ids[i] = symbols.intern(new String(strings[i]));
+    }
+    return sort(ids);
   }
 
-  private Set<String> toStringSet(char[][] strings) {
-    Set<String> set = new LinkedHashSet<String>();
-    for (char[] string : strings) {
-      set.add(new String(string));
+  private static int[] toIds(SymbolTable symbols, char[][][] arrays) {
+    int[] ids = new int[arrays.length];
+    for (int i = 0; i < arrays.length; i++) {
+      ids[i] = symbols.intern(CharOperation.toString(arrays[i]));
     }
-    return set;
+    return sort(ids);
   }
 
-  private Set<String> toStringSet(char[][][] arrays) {
-    Set<String> set = new LinkedHashSet<String>();
-    for (char[][] array : arrays) {
-      set.add(CharOperation.toString(array));
+  private static int[] sort(int[] ids) {
+    Arrays.sort(ids);
+    // jdt reference arrays are not expected to have duplicates, but don't rely on this
+    int size = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (size == 0 || ids[size - 1] != ids[i]) {
+        ids[size++] = ids[i];
+      }
     }
-    return set;
+    return size < ids.length ? Arrays.copyOf(ids, size) : ids;
   }
 
-  public boolean includes(Collection<String> qualifiedNames, Collection<String> simpleNames, Collection<String> rootNames) {
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  /**
+   * All parameters are sorted ids of names in this collection's {@link SymbolTable}, see {@link SymbolTable#lookup(java.util.Collection)}.
+   */
+  public boolean includes(int[] qualifiedNames, int[] simpleNames, int[] rootNames) {
 
     if (rootNames != null) {
       boolean foundRoot = false;
-      for (String rootName : rootNames) {
-        foundRoot = rootReferences.contains(rootName);
-        if (foundRoot) {
-          break;
-        }
+      for (int i = 0; i < rootNames.length && !foundRoot; i++) {
+        foundRoot = contains(rootReferences, rootNames[i]);
       }
       if (!foundRoot) {
         return false;
       }
     }
 
-    for (String simpleName : simpleNames) {
-      if (simpleNameReferences.contains(simpleName)) {
-        for (String qualifiedName : qualifiedNames) {
-          if (qualifiedName.indexOf('.') > 0 ? qualifiedNameReferences.contains(qualifiedName) : simpleNameReferences.contains(qualifiedName)) {
+    for (int i = 0; i < simpleNames.length; i++) {
+      if (contains(simpleNameReferences, simpleNames[i])) {
+        for (int j = 0; j < qualifiedNames.length; j++) {
+          // qualified names without '.' are kept in simpleNameReferences, the two sets never overlap
+          if (contains(qualifiedNameReferences, qualifiedNames[j]) || contains(simpleNameReferences, qualifiedNames[j])) {
             return true;
           }
         }
@@ -79,9 +102,37 @@ public class ReferenceCollection implements Serializable {
     return false;
   }
 
+  /**
+   * Marks ids of all names in this collection.
+   */
+  void collectSymbols(BitSet live) {
+    collectSymbols(live, qualifiedNameReferences);
+    collectSymbols(live, simpleNameReferences);
+    collectSymbols(live, rootReferences);
+  }
+
+  private static void collectSymbols(BitSet live, int[] ids) {
+    for (int id : ids) {
+      live.set(id);
+    }
+  }
+
+  /**
+   * Rewrites ids in place after {@link SymbolTable#compact(BitSet)}, which preserves id order, so the arrays stay sorted.
+   */
+  void remapSymbols(int[] mapping) {
+    remapSymbols(mapping, qualifiedNameReferences);
+    remapSymbols(mapping, simpleNameReferences);
+    remapSymbols(mapping, rootReferences);
+  }
 
-  // private void writeObject(java.io.ObjectOutputStream s) {}
-  //
-  // private void readObject(java.io.ObjectInputStream s) throws java.io.IOException,
-  // ClassNotFoundException {}
+  private static void remapSymbols(int[] mapping, int[] ids) {
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = mapping[ids[i]];
+    }
+  }
+
+  private static boolean contains(int[] ids, int id) {
+    return Arrays.binarySearch(ids, id) >= 0;
+  }
 }
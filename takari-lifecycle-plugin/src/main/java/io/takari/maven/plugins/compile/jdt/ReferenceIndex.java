@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index of source {@link ReferenceCollection}s, maps referenced simple names to sources that reference them.
+ * <p>
+ * {@link ReferenceCollection#includes(int[], int[], int[])} only matches sources that reference at least one of the changed simple names, so affected sources lookup only needs to
+ * consider sources indexed under the changed simple names. Index entries are never removed, sources with stale entries are filtered out by the exact {@code includes} check.
+ */
+class ReferenceIndex {
+
+  private final Map<File, ReferenceCollection> references = new HashMap<File, ReferenceCollection>();
+
+  private final Map<String, List<File>> simpleNameIndex = new HashMap<String, List<File>>();
+
+  public void put(File source, ReferenceCollection collection) {
+    ReferenceCollection previous = references.put(source, collection);
+    for (int id : collection.simpleNameReferences) {
+      String simpleName = collection.symbols.get(id);
+      if (previous != null && previous.symbols == collection.symbols && Arrays.binarySearch(previous.simpleNameReferences, id) >= 0) {
+        continue; // already indexed
+      }
+      List<File> sources = simpleNameIndex.get(simpleName);
+      if (sources == null) {
+        sources = new ArrayList<File>();
+        simpleNameIndex.put(simpleName, sources);
+      }
+      sources.add(source);
+    }
+  }
+
+  /**
+   * Returns sources that reference any of the specified names, in no particular order.
+   */
+  public Set<File> getAffectedSources(Collection<String> qualifiedNames, Collection<String> simpleNames, Collection<String> rootNames) {
+    Set<File> candidates = new LinkedHashSet<File>();
+    for (String simpleName : simpleNames) {
+      List<File> sources = simpleNameIndex.get(simpleName);
+      if (sources != null) {
+        candidates.addAll(sources);
+      }
+    }
+    Set<File> affected = new LinkedHashSet<File>();
+    SymbolTable symbols = null;
+    int[] qualifiedIds = null, simpleIds = null, rootIds = null;
+    for (File candidate : candidates) {
+      ReferenceCollection collection = references.get(candidate);
+      if (collection.symbols != symbols) {
+        // normally all collections share the same symbol table
+        symbols = collection.symbols;
+        qualifiedIds = symbols.lookup(qualifiedNames);
+        simpleIds = symbols.lookup(simpleNames);
+        rootIds = symbols.lookup(rootNames);
+      }
+      if (collection.includes(qualifiedIds, simpleIds, rootIds)) {
+        affected.add(candidate);
+      }
+    }
+    return affected;
+  }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Module-wide table of names referenced by project sources. Each distinct name is assigned an integer id, which allows {@link ReferenceCollection}s to store references as sorted {@code int}
+ * arrays.
+ * <p>
+ * The same table instance is shared by all reference collections of the module. Build state is written to a single object stream, so the table is serialized once no matter how many collections
+ * refer to it.
+ */
+class SymbolTable implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private transient List<String> symbols = new ArrayList<String>();
+
+  private transient Map<String, Integer> ids = new HashMap<String, Integer>();
+
+  public int intern(String symbol) {
+    Integer id = ids.get(symbol);
+    if (id == null) {
+      id = symbols.size();
+      symbols.add(symbol);
+      ids.put(symbol, id);
+    }
+    return id;
+  }
+
+  /**
+   * Returns sorted ids of the specified symbols. Symbols not in this table are not referenced by any collection and are skipped.
+   */
+  public int[] lookup(Collection<String> symbols) {
+    int[] result = new int[symbols.size()];
+    int size = 0;
+    for (String symbol : symbols) {
+      Integer id = ids.get(symbol);
+      if (id != null) {
+        result[size++] = id;
+      }
+    }
+    result = size < result.length ? Arrays.copyOf(result, size) : result;
+    Arrays.sort(result);
+    return result;
+  }
+
+  public boolean contains(String symbol) {
+    return ids.containsKey(symbol);
+  }
+
+  public String get(int id) {
+    return symbols.get(id);
+  }
+
+  public int size() {
+    return symbols.size();
+  }
+
+  /**
+   * Drops symbols whose ids are not set in {@code live} and renumbers the remaining symbols, preserving their order. Returns old to new id mapping, {@code -1} for dropped symbols.
+   */
+  public int[] compact(BitSet live) {
+    int[] mapping = new int[symbols.size()];
+    List<String> compacted = new ArrayList<String>(live.cardinality());
+    ids = new HashMap<String, Integer>(live.cardinality() * 4 / 3 + 1);
+    for (int id = 0; id < mapping.length; id++) {
+      if (live.get(id)) {
+        String symbol = symbols.get(id);
+        mapping[id] = compacted.size();
+        ids.put(symbol, compacted.size());
+        compacted.add(symbol);
+      } else {
+        mapping[id] = -1;
+      }
+    }
+    symbols = compacted;
+    return mapping;
+  }
+
+  private void writeObject(ObjectOutputStream os) throws IOException {
+    os.defaultWriteObject();
+    os.writeInt(symbols.size());
+    for (String symbol : symbols) {
+      os.writeUTF(symbol);
+    }
+  }
+
+  private void readObject(ObjectInputStream is) throws IOException, ClassNotFoundException {
+    is.defaultReadObject();
+    int size = is.readInt();
+    symbols = new ArrayList<String>(size);
+    ids = new HashMap<String, Integer>(size * 4 / 3 + 1);
+    for (int i = 0; i < size; i++) {
+      String symbol = is.readUTF();
+      symbols.add(symbol);
+      ids.put(symbol, i);
+    }
+  }
+}
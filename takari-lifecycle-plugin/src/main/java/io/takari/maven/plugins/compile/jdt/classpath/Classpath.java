@@ -9,13 +9,17 @@ package io.takari.maven.plugins.compile.jdt.classpath;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.util.HashtableOfObject;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
 
 public class Classpath implements INameEnvironment, SuffixConstants {
@@ -24,12 +28,68 @@ public class Classpath implements INameEnvironment, SuffixConstants {
 
   private final List<MutableClasspathEntry> mutableentries;
 
-  private Map<String, Collection<ClasspathEntry>> packages;
+  /**
+   * Package index of immutable classpath entries, built once.
+   */
+  private final Map<String, Collection<ClasspathEntry>> immutablePackages;
+
+  /**
+   * Package index of all classpath entries. Same as {@link #immutablePackages} except packages provided by mutable entries, which are patched after each compile round.
+   */
+  private final PackageIndex<Collection<ClasspathEntry>> packages;
+
+  /**
+   * Positions of classpath entries, used to preserve classpath order when patching package index.
+   */
+  private final Map<ClasspathEntry, Integer> positions = new IdentityHashMap<ClasspathEntry, Integer>();
+
+  /**
+   * Type name filters of immutable classpath entries, used to skip entries that do not have requested types.
+   */
+  private final Map<ClasspathEntry, TypeNameFilter> filters = new IdentityHashMap<ClasspathEntry, TypeNameFilter>();
+
+  /**
+   * Binary file names by simple type name. Compilation looks up the same simple names over and over, in every package on the import path, caching avoids allocating the name on each lookup.
+   */
+  private final HashtableOfObject binaryFileNames = new HashtableOfObject();
+
+  private long probeCount;
+
+  private long avoidedProbeCount;
+
+  /**
+   * Packages provided by mutable entries as of the last package index patch.
+   */
+  private Set<String> mutablePackages = Collections.emptySet();
 
   public Classpath(List<ClasspathEntry> entries, List<MutableClasspathEntry> localentries) {
     this.entries = entries;
     this.mutableentries = localentries;
-    this.packages = newPackageIndex(entries);
+    List<ClasspathEntry> immutableentries = new ArrayList<ClasspathEntry>();
+    for (ClasspathEntry entry : entries) {
+      positions.put(entry, positions.size());
+      if (!isMutable(entry)) {
+        immutableentries.add(entry);
+        TypeNameFilter filter = entry instanceof FilteredClasspathEntry ? ((FilteredClasspathEntry) entry).getTypeNameFilter() : null;
+        if (filter != null) {
+          filters.put(entry, filter);
+        }
+      }
+    }
+    this.immutablePackages = newPackageIndex(immutableentries);
+    this.packages = new PackageIndex<Collection<ClasspathEntry>>(immutablePackages);
+    patchPackageIndex();
+  }
+
+  private boolean isMutable(ClasspathEntry entry) {
+    if (mutableentries != null) {
+      for (MutableClasspathEntry mutableentry : mutableentries) {
+        if (mutableentry == entry) {
+          return true;
+        }
+      }
+    }
+    return false;
   }
 
   private static Map<String, Collection<ClasspathEntry>> newPackageIndex(List<ClasspathEntry> entries) {
@@ -53,22 +113,46 @@ public class Classpath implements INameEnvironment, SuffixConstants {
       return null;
     }
     int typeNameIndex = compoundTypeName.length - 1;
-    char[][] packageName = CharOperation.subarray(compoundTypeName, 0, typeNameIndex);
-    return findType(new String(CharOperation.concatWith(packageName, '/')), new String(compoundTypeName[typeNameIndex]));
+    return findType(compoundTypeName, typeNameIndex, compoundTypeName[typeNameIndex]);
   }
 
   @Override
   public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
-    return findType(new String(CharOperation.concatWith(packageName, '/')), new String(typeName));
+    return findType(packageName, packageName != null ? packageName.length : 0, typeName);
   }
 
-  private NameEnvironmentAnswer findType(String packageName, String typeName) {
+  /**
+   * Looks up type in the package represented by the first {@code packageSegments} elements of {@code packageName}. Package name is not joined, lookups in unknown packages do not allocate.
+   */
+  private NameEnvironmentAnswer findType(char[][] packageName, int packageSegments, char[] typeName) {
+    String packageString;
+    Collection<ClasspathEntry> entries;
+    if (packageSegments > 0) {
+      PackageIndex.Node<Collection<ClasspathEntry>> node = packages.getNode(packageName, packageSegments, null);
+      if (node == null) {
+        return null;
+      }
+      packageString = node.getPackageName();
+      entries = node.getValue();
+    } else {
+      packageString = "";
+      entries = this.entries;
+    }
     NameEnvironmentAnswer suggestedAnswer = null;
-    Collection<ClasspathEntry> entries = !packageName.isEmpty() ? packages.get(packageName) : this.entries;
     if (entries != null) {
-      String binaryFileName = typeName + SUFFIX_STRING_class;
+      long typeHash = TypeNameFilter.hash(packageString, typeName);
+      String binaryFileName = null;
       for (ClasspathEntry entry : entries) {
-        NameEnvironmentAnswer answer = entry.findType(packageName, binaryFileName);
+        TypeNameFilter filter = filters.get(entry);
+        if (filter != null && !filter.mightContain(typeHash)) {
+          avoidedProbeCount++;
+          continue;
+        }
+        probeCount++;
+        if (binaryFileName == null) {
+          binaryFileName = getBinaryFileName(typeName);
+        }
+        NameEnvironmentAnswer answer = entry.findType(packageString, binaryFileName);
         if (answer != null) {
           if (!answer.ignoreIfBetter()) {
             if (answer.isBetter(suggestedAnswer)) {
@@ -84,10 +168,19 @@ public class Classpath implements INameEnvironment, SuffixConstants {
     return suggestedAnswer;
   }
 
+  private String getBinaryFileName(char[] typeName) {
+    String binaryFileName = (String) binaryFileNames.get(typeName);
+    if (binaryFileName == null) {
+      binaryFileName = new String(CharOperation.concat(typeName, SUFFIX_class));
+      // the caller owns the array
+      binaryFileNames.put(typeName.clone(), binaryFileName);
+    }
+    return binaryFileName;
+  }
+
   @Override
   public boolean isPackage(char[][] parentPackageName, char[] packageName) {
-    String name = new String(CharOperation.concatWith(parentPackageName, packageName, '/'));
-    return packages.containsKey(name);
+    return packages.getNode(parentPackageName, parentPackageName != null ? parentPackageName.length : 0, packageName) != null;
   }
 
   @Override
@@ -102,7 +195,61 @@ public class Classpath implements INameEnvironment, SuffixConstants {
     for (MutableClasspathEntry entry : mutableentries) {
       entry.reset();
     }
-    packages = newPackageIndex(entries);
+    patchPackageIndex();
+  }
+
+  /**
+   * Replaces mutable entries contribution to the package index, immutable entries are not rescanned.
+   */
+  private void patchPackageIndex() {
+    if (mutableentries == null) {
+      return;
+    }
+    // undo previous patch
+    for (String packageName : mutablePackages) {
+      Collection<ClasspathEntry> packageEntries = immutablePackages.get(packageName);
+      if (packageEntries != null) {
+        packages.put(packageName, packageEntries);
+      } else {
+        packages.remove(packageName);
+      }
+    }
+    Map<String, List<ClasspathEntry>> patched = new HashMap<String, List<ClasspathEntry>>();
+    for (MutableClasspathEntry mutableentry : mutableentries) {
+      ClasspathEntry entry = (ClasspathEntry) mutableentry;
+      int position = positions.get(entry);
+      for (String packageName : entry.getPackageNames()) {
+        List<ClasspathEntry> packageEntries = patched.get(packageName);
+        if (packageEntries == null) {
+          Collection<ClasspathEntry> immutableEntries = immutablePackages.get(packageName);
+          packageEntries = immutableEntries != null ? new ArrayList<ClasspathEntry>(immutableEntries) : new ArrayList<ClasspathEntry>();
+          patched.put(packageName, packageEntries);
+        }
+        int idx = 0;
+        while (idx < packageEntries.size() && positions.get(packageEntries.get(idx)) < position) {
+          idx++;
+        }
+        packageEntries.add(idx, entry);
+      }
+    }
+    for (Map.Entry<String, List<ClasspathEntry>> entry : patched.entrySet()) {
+      packages.put(entry.getKey(), entry.getValue());
+    }
+    mutablePackages = patched.keySet();
+  }
+
+  /**
+   * Returns number of classpath entry type lookups performed by this classpath.
+   */
+  public long getProbeCount() {
+    return probeCount;
+  }
+
+  /**
+   * Returns number of classpath entry type lookups skipped because entry type name filter ruled the type out.
+   */
+  public long getAvoidedProbeCount() {
+    return avoidedProbeCount;
   }
 
   public List<ClasspathEntry> getEntries() {
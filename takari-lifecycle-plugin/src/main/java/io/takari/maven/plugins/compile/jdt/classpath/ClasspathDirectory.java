@@ -12,8 +12,11 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
@@ -21,8 +24,38 @@ import org.eclipse.jdt.internal.compiler.env.AccessRestriction;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 import org.osgi.framework.BundleException;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
 public class ClasspathDirectory extends DependencyClasspathEntry implements ClasspathEntry {
 
+  /**
+   * Directory listings taken this close to directory last modified timestamp are racy. The directory can still be modified without changing its timestamp on filesystems with coarse timestamp
+   * granularity.
+   */
+  private static final long RACY_INTERVAL = 2000L;
+
+  /**
+   * Exact-case names of class files in package directories. Listings are not revalidated on lookup, they live as long as this entry. Racy listings, typically of class files freshly written by
+   * an upstream reactor module, are revalidated with a single timestamp check per lookup and listed again once the directory timestamp changes or leaves the racy interval. Cached dependency
+   * directory entries are validated on each lookup by {@code ClasspathEntryCache}, compiler output directory entries are invalidated as class files are written.
+   */
+  private final ConcurrentMap<String, Listing> listings = new ConcurrentHashMap<String, Listing>();
+
+  private static final class Listing {
+    final long lastModified;
+
+    final Set<String> classFiles;
+
+    final boolean racy;
+
+    Listing(long lastModified, long listedAt, Set<String> classFiles) {
+      this.lastModified = lastModified;
+      this.classFiles = classFiles;
+      this.racy = listedAt - lastModified <= RACY_INTERVAL;
+    }
+  }
+
   private ClasspathDirectory(File directory, Set<String> packageNames, Collection<String> exportedPackages) {
     super(directory, packageNames, exportedPackages);
     try {
@@ -64,14 +97,14 @@ public class ClasspathDirectory extends DependencyClasspathEntry implements Clas
 
   @Override
   public NameEnvironmentAnswer findType(String packageName, String binaryFileName, AccessRestriction accessRestriction) {
+    // exact-case match, also on case-insensitive filesystems
+    if (!getClassFiles(packageName).contains(binaryFileName)) {
+      return null;
+    }
     try {
-      String qualifiedFileName = packageName + "/" + binaryFileName;
-      File classFile = new File(file, qualifiedFileName).getCanonicalFile();
-      if (classFile.isFile() && matchQualifiedName(classFile, qualifiedFileName)) {
-        ClassFileReader reader = ClassFileReader.read(classFile, false);
-        if (reader != null) {
-          return new NameEnvironmentAnswer(reader, accessRestriction);
-        }
+      ClassFileReader reader = ClassFileReader.read(new File(file, packageName + "/" + binaryFileName), false);
+      if (reader != null) {
+        return new NameEnvironmentAnswer(reader, accessRestriction);
       }
     } catch (ClassFormatException e) {
       // treat as if class file is missing
@@ -81,8 +114,57 @@ public class ClasspathDirectory extends DependencyClasspathEntry implements Clas
     return null;
   }
 
-  private boolean matchQualifiedName(File file, String qualifiedName) {
-    return file.getAbsolutePath().replace('\\', '/').endsWith(qualifiedName);
+  @Override
+  public Set<String> getClassFiles(String packageName) {
+    Listing listing = listings.get(packageName);
+    if (listing != null && !listing.racy) {
+      return listing.classFiles;
+    }
+    File directory = new File(file, packageName);
+    // timestamp is read before the listing, concurrent changes make the listing racy or change the timestamp
+    long lastModified = directory.lastModified();
+    long now = System.currentTimeMillis();
+    if (listing != null && listing.lastModified == lastModified && now - lastModified <= RACY_INTERVAL) {
+      return listing.classFiles;
+    }
+    Set<String> names = new HashSet<String>();
+    String[] list = directory.list();
+    if (list != null) {
+      for (String name : list) {
+        if (name.endsWith(".class")) {
+          names.add(name);
+        }
+      }
+    }
+    listing = new Listing(lastModified, now, Collections.unmodifiableSet(names));
+    listings.put(packageName, listing);
+    return listing.classFiles;
+  }
+
+  /**
+   * Discards cached listing of the package directory, class files added to the directory since the listing become visible to lookups.
+   */
+  public void invalidate(String packageName) {
+    listings.remove(packageName);
+  }
+
+  /**
+   * Discards all cached package directory listings.
+   */
+  public void invalidate() {
+    listings.clear();
+  }
+
+  /**
+   * Annotation processor service file is read on each call, changes of the file do not invalidate cached directory entries.
+   */
+  @Override
+  public Collection<String> getAnnotationProcessors() {
+    try {
+      return Files.readLines(new File(file, PATH_PROCESSORS), Charsets.UTF_8);
+    } catch (IOException e) {
+      return Collections.emptyList();
+    }
   }
 
   @Override
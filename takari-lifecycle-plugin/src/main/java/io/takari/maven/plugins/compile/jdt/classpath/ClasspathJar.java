@@ -7,51 +7,70 @@
  */
 package io.takari.maven.plugins.compile.jdt.classpath;
 
+import io.takari.maven.plugins.util.SharedZipFile;
+
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Collection;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
 import org.eclipse.jdt.internal.compiler.env.AccessRestriction;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
-import org.osgi.framework.BundleException;
 
-public class ClasspathJar extends DependencyClasspathEntry implements ClasspathEntry {
+public class ClasspathJar extends DependencyClasspathEntry implements ClasspathEntry, Closeable {
+
+  /**
+   * Persistent jar index format version.
+   */
+  public static final int INDEX_VERSION = JarIndex.VERSION;
+
+  private final SharedZipFile zipFile;
 
-  private final ZipFile zipFile;
+  private final JarIndex index;
 
-  private ClasspathJar(File file, ZipFile zipFile, Collection<String> packageNames, Collection<String> exportedPackages) throws IOException {
-    super(file, packageNames, exportedPackages);
-    this.zipFile = zipFile;
+  private ClasspathJar(File file, ZipFile zipFile, JarIndex index) throws IOException {
+    super(file, index.getPackageNames(), index.getExportedPackages());
+    this.zipFile = new SharedZipFile(file, zipFile);
+    this.index = index;
   }
 
-  private static Set<String> getPackageNames(ZipFile zipFile) {
-    Set<String> result = new HashSet<String>();
-    for (Enumeration e = zipFile.entries(); e.hasMoreElements();) {
-      ZipEntry entry = (ZipEntry) e.nextElement();
-      String name = entry.getName();
-      int last = name.lastIndexOf('/');
-      while (last > 0) {
-        name = name.substring(0, last);
-        result.add(name);
-        last = name.lastIndexOf('/');
-      }
-    }
-    return result;
+  /**
+   * Closes underlying zip file, see {@link SharedZipFile#close()}. The jar remains usable.
+   */
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+
+  @Override
+  public Collection<String> getClassFiles(String packageName) {
+    return index.getClassFiles(packageName);
+  }
+
+  @Override
+  public Collection<String> getAnnotationProcessors() {
+    return index.getAnnotationProcessors();
+  }
+
+  @Override
+  public TypeNameFilter getTypeNameFilter() {
+    return index.getTypeNameFilter();
   }
 
   @Override
   public NameEnvironmentAnswer findType(String packageName, String binaryFileName, AccessRestriction accessRestriction) {
+    if (!index.containsType(packageName, binaryFileName)) {
+      return null;
+    }
+    String qualifiedFileName = packageName + "/" + binaryFileName;
     try {
-      String qualifiedFileName = packageName + "/" + binaryFileName;
-      ClassFileReader reader = ClassFileReader.read(this.zipFile, qualifiedFileName);
+      ClassFileReader reader;
+      try (SharedZipFile.Reader zip = zipFile.acquire()) {
+        reader = ClassFileReader.read(zip.getZipFile(), qualifiedFileName);
+      }
       if (reader != null) {
         return new NameEnvironmentAnswer(reader, accessRestriction);
       }
@@ -69,26 +88,28 @@ public class ClasspathJar extends DependencyClasspathEntry implements ClasspathE
   }
 
   public static ClasspathJar create(File file) throws IOException {
-    ZipFile zipFile = new ZipFile(file);
-    Set<String> packageNames = getPackageNames(zipFile);
-    Collection<String> exportedPackages = null;
-    // TODO do not look for exported packages in java standard library
-    ZipEntry entry = zipFile.getEntry(PATH_EXPORT_PACKAGE);
-    if (entry != null) {
-      try (InputStream is = zipFile.getInputStream(entry)) {
-        exportedPackages = parseExportPackage(is);
+    return create(file, null);
+  }
+
+  /**
+   * Creates jar classpath entry, using persistent jar index cache if provided. Jar file is not opened if its index is found in the cache.
+   */
+  public static ClasspathJar create(File file, PersistentCache indexCache) throws IOException {
+    String key = indexCache != null ? PersistentCache.getArtifactKey(file) : null;
+    JarIndex index = key != null ? indexCache.get(key, JarIndex.READER) : null;
+    ZipFile zipFile = null;
+    if (index == null) {
+      zipFile = new ZipFile(file);
+      try {
+        index = JarIndex.create(zipFile);
+      } catch (IOException e) {
+        zipFile.close();
+        throw e;
       }
-    }
-    if (exportedPackages == null) {
-      entry = zipFile.getEntry(PATH_MANIFESTMF);
-      if (entry != null) {
-        try (InputStream is = zipFile.getInputStream(entry)) {
-          exportedPackages = parseBundleManifest(is);
-        } catch (BundleException e) {
-          // silently ignore bundle manifest parsing problems
-        }
+      if (key != null) {
+        indexCache.put(key, index);
       }
     }
-    return new ClasspathJar(file, zipFile, packageNames, exportedPackages);
+    return new ClasspathJar(file, zipFile, index);
   }
 }
@@ -26,11 +26,13 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.io.CharStreams;
 import com.google.common.io.LineProcessor;
 
-public abstract class DependencyClasspathEntry implements ClasspathEntry {
+public abstract class DependencyClasspathEntry implements FilteredClasspathEntry {
 
-  protected static final String PATH_EXPORT_PACKAGE = ExportPackageMojo.PATH_EXPORT_PACKAGE;
+  public static final String PATH_EXPORT_PACKAGE = ExportPackageMojo.PATH_EXPORT_PACKAGE;
 
-  protected static final String PATH_MANIFESTMF = "META-INF/MANIFEST.MF";
+  public static final String PATH_MANIFESTMF = "META-INF/MANIFEST.MF";
+
+  public static final String PATH_PROCESSORS = "META-INF/services/javax.annotation.processing.Processor";
 
   protected final File file;
 
@@ -38,6 +40,11 @@ public abstract class DependencyClasspathEntry implements ClasspathEntry {
 
   protected final Set<String> exportedPackages;
 
+  /**
+   * Access restriction of non-exported packages, same for all packages of the entry. Lazily created and shared by all lookups.
+   */
+  private volatile AccessRestriction accessRestriction;
+
   protected DependencyClasspathEntry(File file, Collection<String> packageNames, Collection<String> exportedPackages) {
     this.file = file;
     this.packageNames = ImmutableSet.copyOf(packageNames);
@@ -46,8 +53,13 @@ public abstract class DependencyClasspathEntry implements ClasspathEntry {
 
   protected AccessRestriction getAccessRestriction(String packageName) {
     if (exportedPackages != null && !exportedPackages.contains(packageName)) {
-      AccessRule rule = new AccessRule(null /* pattern */, IProblem.ForbiddenReference, true /* keep looking for accessible type */);
-      return new AccessRestriction(rule, AccessRestriction.COMMAND_LINE, getEntryName());
+      AccessRestriction accessRestriction = this.accessRestriction;
+      if (accessRestriction == null) {
+        AccessRule rule = new AccessRule(null /* pattern */, IProblem.ForbiddenReference, true /* keep looking for accessible type */);
+        accessRestriction = new AccessRestriction(rule, AccessRestriction.COMMAND_LINE, getEntryName());
+        this.accessRestriction = accessRestriction;
+      }
+      return accessRestriction;
     }
     return null;
   }
@@ -120,8 +132,23 @@ public abstract class DependencyClasspathEntry implements ClasspathEntry {
     return findType(packageName, binaryFileName, getAccessRestriction(packageName));
   }
 
+  @Override
+  public TypeNameFilter getTypeNameFilter() {
+    return null;
+  }
+
   public abstract NameEnvironmentAnswer findType(String packageName, String binaryFileName, AccessRestriction accessRestriction);
 
+  /**
+   * Returns names of the package class files, i.e. {@code Type.class}, or empty collection if the entry does not have the package.
+   */
+  public abstract Collection<String> getClassFiles(String packageName);
+
+  /**
+   * Returns lines of {@link #PATH_PROCESSORS} annotation processor service file or empty collection if the entry does not provide annotation processors.
+   */
+  public abstract Collection<String> getAnnotationProcessors();
+
   public String getEntryName() {
     return file.getAbsolutePath();
   }
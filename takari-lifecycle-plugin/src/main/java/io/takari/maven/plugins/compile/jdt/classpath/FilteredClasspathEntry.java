@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+/**
+ * Classpath entry that can tell missing types without looking them up.
+ */
+public interface FilteredClasspathEntry extends ClasspathEntry {
+
+  /**
+   * Returns filter of entry types or {@code null} if the entry contents is not known upfront.
+   */
+  public TypeNameFilter getTypeNameFilter();
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import io.takari.maven.plugins.compile.jdt.classpath.PersistentCache.EntryReader;
+import io.takari.maven.plugins.compile.jdt.classpath.PersistentCache.EntryWriter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.osgi.framework.BundleException;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.io.CharStreams;
+
+/**
+ * Packages and class files of a jar file, along with jar exported packages and annotation processors. The index allows jar classpath entries to be created and to answer missing type lookups without opening the jar.
+ */
+class JarIndex implements EntryWriter {
+
+  /**
+   * Persistent index format version. Must be incremented when the format changes.
+   */
+  public static final int VERSION = 2;
+
+  private static final String[] NO_TYPES = new String[0];
+
+  /**
+   * Package names are shared by many jars in large reactors.
+   */
+  private static final Interner<String> PACKAGE_NAMES = Interners.newWeakInterner();
+
+  public static final EntryReader<JarIndex> READER = new EntryReader<JarIndex>() {
+    @Override
+    public JarIndex read(DataInputStream is) throws IOException {
+      int packageCount = is.readInt();
+      Map<String, String[]> packages = new HashMap<String, String[]>(packageCount * 4 / 3 + 1);
+      for (int i = 0; i < packageCount; i++) {
+        String packageName = PACKAGE_NAMES.intern(is.readUTF());
+        String[] types = new String[is.readInt()];
+        for (int j = 0; j < types.length; j++) {
+          types[j] = is.readUTF();
+        }
+        packages.put(packageName, types.length > 0 ? types : NO_TYPES);
+      }
+      List<String> exportedPackages = null;
+      int exportedCount = is.readInt();
+      if (exportedCount >= 0) {
+        exportedPackages = new ArrayList<String>(exportedCount);
+        for (int i = 0; i < exportedCount; i++) {
+          exportedPackages.add(is.readUTF());
+        }
+      }
+      int processorCount = is.readInt();
+      List<String> processors = new ArrayList<String>(processorCount);
+      for (int i = 0; i < processorCount; i++) {
+        processors.add(is.readUTF());
+      }
+      return new JarIndex(packages, exportedPackages, processors);
+    }
+  };
+
+  /**
+   * Maps package names to sorted names of package class files.
+   */
+  private final Map<String, String[]> packages;
+
+  private final Collection<String> exportedPackages;
+
+  private final List<String> processors;
+
+  /**
+   * Lazily created, is not persisted because it is cheap to recreate.
+   */
+  private volatile TypeNameFilter typeNameFilter;
+
+  private JarIndex(Map<String, String[]> packages, Collection<String> exportedPackages, List<String> processors) {
+    this.packages = packages;
+    this.exportedPackages = exportedPackages;
+    this.processors = processors;
+  }
+
+  public Collection<String> getPackageNames() {
+    return packages.keySet();
+  }
+
+  /**
+   * Returns jar exported packages or {@code null} if all packages are exported.
+   */
+  public Collection<String> getExportedPackages() {
+    return exportedPackages;
+  }
+
+  /**
+   * Returns lines of jar annotation processor service file, see {@link DependencyClasspathEntry#PATH_PROCESSORS}.
+   */
+  public Collection<String> getAnnotationProcessors() {
+    return processors;
+  }
+
+  public Collection<String> getClassFiles(String packageName) {
+    String[] types = packages.get(packageName);
+    return types != null ? Arrays.asList(types) : Collections.<String>emptyList();
+  }
+
+  public boolean containsType(String packageName, String binaryFileName) {
+    String[] types = packages.get(packageName);
+    return types != null && Arrays.binarySearch(types, binaryFileName) >= 0;
+  }
+
+  public TypeNameFilter getTypeNameFilter() {
+    TypeNameFilter typeNameFilter = this.typeNameFilter;
+    if (typeNameFilter == null) {
+      this.typeNameFilter = typeNameFilter = TypeNameFilter.create(packages);
+    }
+    return typeNameFilter;
+  }
+
+  @Override
+  public void write(DataOutputStream os) throws IOException {
+    os.writeInt(packages.size());
+    for (Map.Entry<String, String[]> entry : packages.entrySet()) {
+      os.writeUTF(entry.getKey());
+      os.writeInt(entry.getValue().length);
+      for (String type : entry.getValue()) {
+        os.writeUTF(type);
+      }
+    }
+    if (exportedPackages != null) {
+      os.writeInt(exportedPackages.size());
+      for (String exportedPackage : exportedPackages) {
+        os.writeUTF(exportedPackage);
+      }
+    } else {
+      os.writeInt(-1);
+    }
+    os.writeInt(processors.size());
+    for (String processor : processors) {
+      os.writeUTF(processor);
+    }
+  }
+
+  public static JarIndex create(ZipFile zipFile) throws IOException {
+    Map<String, List<String>> types = new HashMap<String, List<String>>();
+    Set<String> parents = new HashSet<String>();
+    for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+      String name = e.nextElement().getName();
+      int last = name.lastIndexOf('/');
+      if (name.endsWith(".class")) {
+        String packageName = last > 0 ? name.substring(0, last) : "";
+        List<String> packageTypes = types.get(packageName);
+        if (packageTypes == null) {
+          packageTypes = new ArrayList<String>();
+          types.put(packageName, packageTypes);
+        }
+        packageTypes.add(name.substring(last + 1));
+      }
+      // all parent directories are packages
+      while (last > 0) {
+        name = name.substring(0, last);
+        if (!parents.add(name)) {
+          break; // parents are already known
+        }
+        if (!types.containsKey(name)) {
+          types.put(name, new ArrayList<String>());
+        }
+        last = name.lastIndexOf('/');
+      }
+    }
+    Map<String, String[]> packages = new HashMap<String, String[]>(types.size() * 4 / 3 + 1);
+    for (Map.Entry<String, List<String>> entry : types.entrySet()) {
+      if (entry.getKey().isEmpty()) {
+        continue; // default package types are not accessible from named packages
+      }
+      String[] packageTypes = entry.getValue().toArray(new String[entry.getValue().size()]);
+      Arrays.sort(packageTypes);
+      packages.put(PACKAGE_NAMES.intern(entry.getKey()), packageTypes.length > 0 ? packageTypes : NO_TYPES);
+    }
+    return new JarIndex(packages, getExportedPackages(zipFile), getAnnotationProcessors(zipFile));
+  }
+
+  private static List<String> getAnnotationProcessors(ZipFile zipFile) throws IOException {
+    ZipEntry entry = zipFile.getEntry(DependencyClasspathEntry.PATH_PROCESSORS);
+    if (entry == null) {
+      return Collections.emptyList();
+    }
+    try (Reader r = new InputStreamReader(zipFile.getInputStream(entry), Charsets.UTF_8)) {
+      return CharStreams.readLines(r);
+    }
+  }
+
+  private static Collection<String> getExportedPackages(ZipFile zipFile) throws IOException {
+    Collection<String> exportedPackages = null;
+    // TODO do not look for exported packages in java standard library
+    ZipEntry entry = zipFile.getEntry(DependencyClasspathEntry.PATH_EXPORT_PACKAGE);
+    if (entry != null) {
+      try (InputStream is = zipFile.getInputStream(entry)) {
+        exportedPackages = DependencyClasspathEntry.parseExportPackage(is);
+      }
+    }
+    if (exportedPackages == null) {
+      entry = zipFile.getEntry(DependencyClasspathEntry.PATH_MANIFESTMF);
+      if (entry != null) {
+        try (InputStream is = zipFile.getInputStream(entry)) {
+          exportedPackages = DependencyClasspathEntry.parseBundleManifest(is);
+        } catch (BundleException e) {
+          // silently ignore bundle manifest parsing problems
+        }
+      }
+    }
+    return exportedPackages;
+  }
+}
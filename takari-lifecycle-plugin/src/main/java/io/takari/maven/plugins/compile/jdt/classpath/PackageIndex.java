@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import java.util.Map;
+
+/**
+ * Hash table keyed by '/' separated package names that can be queried with JDT {@code char[][]} package name segments without creating intermediate arrays or strings. Hash codes are compatible
+ * with {@link String#hashCode()} of the joined package name.
+ * <p>
+ * Not thread safe.
+ */
+class PackageIndex<V> {
+
+  static final class Node<V> {
+    final String packageName;
+
+    final int hash;
+
+    V value;
+
+    Node<V> next;
+
+    Node(String packageName, int hash, V value, Node<V> next) {
+      this.packageName = packageName;
+      this.hash = hash;
+      this.value = value;
+      this.next = next;
+    }
+
+    public String getPackageName() {
+      return packageName;
+    }
+
+    public V getValue() {
+      return value;
+    }
+  }
+
+  private Node<V>[] table;
+
+  private int size;
+
+  public PackageIndex(Map<String, ? extends V> values) {
+    this.table = newTable(Math.max(16, Integer.highestOneBit(values.size() * 4 / 3 + 1) << 1));
+    for (Map.Entry<String, ? extends V> entry : values.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static <V> Node<V>[] newTable(int capacity) {
+    return new Node[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public V get(String packageName) {
+    int hash = packageName.hashCode();
+    for (Node<V> node = table[hash & (table.length - 1)]; node != null; node = node.next) {
+      if (node.hash == hash && node.packageName.equals(packageName)) {
+        return node.value;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns index node of package with the specified name, which consists of the first {@code count} {@code segments} followed by optional {@code last} segment.
+   */
+  public Node<V> getNode(char[][] segments, int count, char[] last) {
+    int hash = 0;
+    boolean separator = false;
+    for (int i = 0; i < count; i++) {
+      hash = hash(hash, separator, segments[i]);
+      separator = true;
+    }
+    if (last != null) {
+      hash = hash(hash, separator, last);
+    }
+    for (Node<V> node = table[hash & (table.length - 1)]; node != null; node = node.next) {
+      if (node.hash == hash && matches(node.packageName, segments, count, last)) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  private static int hash(int hash, boolean separator, char[] segment) {
+    if (separator) {
+      hash = 31 * hash + '/';
+    }
+    for (char c : segment) {
+      hash = 31 * hash + c;
+    }
+    return hash;
+  }
+
+  private static boolean matches(String packageName, char[][] segments, int count, char[] last) {
+    int offset = 0;
+    for (int i = 0; i < count; i++) {
+      offset = matches(packageName, offset, segments[i]);
+      if (offset < 0) {
+        return false;
+      }
+    }
+    if (last != null) {
+      offset = matches(packageName, offset, last);
+    }
+    return offset == packageName.length();
+  }
+
+  /**
+   * Returns offset of the next segment or -1 if the segment does not match package name at the specified offset.
+   */
+  private static int matches(String packageName, int offset, char[] segment) {
+    if (offset > 0) {
+      if (offset >= packageName.length() || packageName.charAt(offset) != '/') {
+        return -1;
+      }
+      offset++;
+    }
+    if (packageName.length() - offset < segment.length) {
+      return -1;
+    }
+    for (char c : segment) {
+      if (packageName.charAt(offset++) != c) {
+        return -1;
+      }
+    }
+    return offset;
+  }
+
+  public void put(String packageName, V value) {
+    int hash = packageName.hashCode();
+    int idx = hash & (table.length - 1);
+    for (Node<V> node = table[idx]; node != null; node = node.next) {
+      if (node.hash == hash && node.packageName.equals(packageName)) {
+        node.value = value;
+        return;
+      }
+    }
+    table[idx] = new Node<V>(packageName, hash, value, table[idx]);
+    if (++size > table.length * 3 / 4) {
+      resize();
+    }
+  }
+
+  public void remove(String packageName) {
+    int hash = packageName.hashCode();
+    int idx = hash & (table.length - 1);
+    Node<V> previous = null;
+    for (Node<V> node = table[idx]; node != null; previous = node, node = node.next) {
+      if (node.hash == hash && node.packageName.equals(packageName)) {
+        if (previous != null) {
+          previous.next = node.next;
+        } else {
+          table[idx] = node.next;
+        }
+        size--;
+        return;
+      }
+    }
+  }
+
+  private void resize() {
+    Node<V>[] table = newTable(this.table.length * 2);
+    for (Node<V> node : this.table) {
+      while (node != null) {
+        Node<V> next = node.next;
+        int idx = node.hash & (table.length - 1);
+        node.next = table[idx];
+        table[idx] = node;
+        node = next;
+      }
+    }
+    this.table = table;
+  }
+}
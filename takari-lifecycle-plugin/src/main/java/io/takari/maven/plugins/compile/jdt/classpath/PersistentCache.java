@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * On-disk cache of information derived from classpath artifacts, shared by all builds that use the same cache directory.
+ * <p>
+ * Entries are keyed by artifact identity, see {@link #getArtifactKey(File)}, and are never updated in place. New entries are written to a temporary file and atomically renamed, so concurrent
+ * builds never observe partially written entries. Total size of the cache is bounded, least recently used entries are evicted first.
+ */
+public class PersistentCache {
+
+  public static interface EntryReader<T> {
+    T read(DataInputStream is) throws IOException;
+  }
+
+  public static interface EntryWriter {
+    void write(DataOutputStream os) throws IOException;
+  }
+
+  private static final int MAGIC = 0x54414b41; // "TAKA"
+
+  private static final String SUFFIX = ".bin";
+
+  private static final String TMP_SUFFIX = ".tmp";
+
+  /**
+   * Temporary files older than this are left behind by killed builds and are deleted during eviction. Younger temporary files may still be written by concurrent builds.
+   */
+  private static final long TMP_GRACE_PERIOD = 60 * 60 * 1000L;
+
+  /**
+   * Do not update entry timestamp on every read, LRU order does not need to be precise.
+   */
+  private static final long TOUCH_INTERVAL = 60 * 60 * 1000L;
+
+  /**
+   * Number of bytes written to each cache directory since the last eviction check.
+   */
+  private static final ConcurrentMap<File, AtomicLong> WRITTEN = new ConcurrentHashMap<>();
+
+  private final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final File directory;
+
+  private final int version;
+
+  private final long maxSize;
+
+  /**
+   * @param directory the cache directory
+   * @param version cache entry format version, entries written with different version are ignored
+   * @param maxSize maximum total size of the cache, in bytes
+   */
+  public PersistentCache(File directory, int version, long maxSize) {
+    this.directory = directory;
+    this.version = version;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns cache key of the artifact file. The key is based on artifact sha1 checksum if the artifact has up-to-date {@code .sha1} sidecar file, like artifacts downloaded to Maven local
+   * repository. Otherwise, the key is based on artifact path, size and last modified timestamp.
+   */
+  public static String getArtifactKey(File file) {
+    final long length = file.length();
+    final long lastModified = file.lastModified();
+    File sha1File = new File(file.getParentFile(), file.getName() + ".sha1");
+    if (sha1File.isFile() && sha1File.lastModified() >= lastModified) {
+      try {
+        List<String> lines = Files.readAllLines(sha1File.toPath(), Charsets.US_ASCII);
+        if (!lines.isEmpty()) {
+          String sha1 = lines.get(0).trim();
+          int idx = sha1.indexOf(' '); // some tools append file name after the checksum
+          if (idx > 0) {
+            sha1 = sha1.substring(0, idx);
+          }
+          if (sha1.length() == 40) {
+            return sha1.toLowerCase() + "-" + length;
+          }
+        }
+      } catch (IOException e) {
+        // fall back to path-based key
+      }
+    }
+    Hasher hasher = Hashing.sha1().newHasher();
+    hasher.putString(file.getAbsolutePath(), Charsets.UTF_8);
+    hasher.putLong(length);
+    hasher.putLong(lastModified);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns cached entry or {@code null} if the entry is not in the cache or cannot be read.
+   */
+  public <T> T get(String key, EntryReader<T> reader) {
+    File file = new File(directory, key + SUFFIX);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (is.readInt() != MAGIC || is.readInt() != version) {
+        return null;
+      }
+      T entry = reader.read(is);
+      long now = System.currentTimeMillis();
+      if (now - file.lastModified() > TOUCH_INTERVAL) {
+        file.setLastModified(now);
+      }
+      return entry;
+    } catch (IOException e) {
+      // corrupted or concurrently evicted entry, treat as cache miss
+      log.debug("Could not read cache entry {}", file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the cache has an entry with the given key. The entry may still be evicted or fail to read.
+   */
+  public boolean contains(String key) {
+    return new File(directory, key + SUFFIX).isFile();
+  }
+
+  /**
+   * Stores new cache entry. Failures to write the entry are logged and otherwise ignored.
+   */
+  public void put(String key, EntryWriter writer) {
+    File tmp = null;
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+        throw new IOException("Could not create directory " + directory);
+      }
+      tmp = File.createTempFile(key, TMP_SUFFIX, directory);
+      try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        os.writeInt(MAGIC);
+        os.writeInt(version);
+        writer.write(os);
+      }
+      long length = tmp.length();
+      File file = new File(directory, key + SUFFIX);
+      try {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      tmp = null;
+      evictIfNecessary(length);
+    } catch (IOException e) {
+      log.debug("Could not write cache entry {}", key, e);
+    } finally {
+      if (tmp != null) {
+        tmp.delete();
+      }
+    }
+  }
+
+  private void evictIfNecessary(long written) {
+    AtomicLong counter = WRITTEN.get(directory);
+    if (counter == null) {
+      // first write to this directory by this JVM, check cache size right away
+      AtomicLong existing = WRITTEN.putIfAbsent(directory, counter = new AtomicLong(maxSize));
+      if (existing != null) {
+        counter = existing;
+      }
+    }
+    // directory listing is relatively expensive, only check cache size after enough new data was written
+    if (counter.addAndGet(written) < maxSize / 10) {
+      return;
+    }
+    counter.set(0);
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    // snapshot timestamps, concurrent readers may touch entries while they are being sorted
+    long[][] entries = new long[files.length][];
+    int count = 0;
+    long size = 0;
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < files.length; i++) {
+      String name = files[i].getName();
+      if (name.endsWith(SUFFIX)) {
+        entries[count++] = new long[] {files[i].lastModified(), i};
+        size += files[i].length();
+      } else if (name.endsWith(TMP_SUFFIX) && now - files[i].lastModified() > TMP_GRACE_PERIOD) {
+        files[i].delete();
+      }
+    }
+    if (size <= maxSize) {
+      return;
+    }
+    entries = Arrays.copyOf(entries, count);
+    Arrays.sort(entries, new Comparator<long[]>() {
+      @Override
+      public int compare(long[] o1, long[] o2) {
+        return Long.compare(o1[0], o2[0]);
+      }
+    });
+    // evict to 3/4 of max size to avoid evicting on every write
+    long target = maxSize - maxSize / 4;
+    int evicted = 0;
+    for (int i = 0; i < entries.length && size > target; i++) {
+      File file = files[(int) entries[i][1]];
+      long length = file.length();
+      if (file.delete()) {
+        size -= length;
+        evicted++;
+      }
+    }
+    log.debug("Evicted {} entries from {}", evicted, directory);
+  }
+}
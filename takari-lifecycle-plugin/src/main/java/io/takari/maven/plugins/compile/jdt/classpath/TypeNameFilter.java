@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import java.util.Map;
+
+/**
+ * Bloom filter of binary type names provided by a classpath entry. {@link #mightContain(long)} never returns {@code false} for types provided by the entry, which allows lookups of missing
+ * types to skip the entry. False positive rate is about 1%.
+ */
+public class TypeNameFilter {
+
+  private static final int BITS_PER_TYPE = 10;
+
+  private static final int HASH_COUNT = 4;
+
+  private final long[] bits;
+
+  private final int bitCount;
+
+  private TypeNameFilter(int expectedTypes) {
+    int words = Math.max(1, (expectedTypes * BITS_PER_TYPE + 63) / 64);
+    this.bits = new long[words];
+    this.bitCount = words * 64;
+  }
+
+  /**
+   * Returns 64 bit hash of type {@code packageName/typeName}. Package name uses '/' as separator, type name does not include .class suffix.
+   */
+  public static long hash(String packageName, char[] typeName) {
+    int h1 = 0;
+    int h2 = 0x811c9dc5;
+    for (int i = 0; i < packageName.length(); i++) {
+      char c = packageName.charAt(i);
+      h1 = 31 * h1 + c;
+      h2 = (h2 ^ c) * 0x01000193;
+    }
+    h1 = 31 * h1 + '/';
+    h2 = (h2 ^ '/') * 0x01000193;
+    for (char c : typeName) {
+      h1 = 31 * h1 + c;
+      h2 = (h2 ^ c) * 0x01000193;
+    }
+    return ((long) h1 << 32) | (h2 & 0xFFFFFFFFL);
+  }
+
+  public boolean mightContain(long hash) {
+    int h1 = (int) (hash >>> 32);
+    int h2 = (int) hash;
+    for (int i = 0; i < HASH_COUNT; i++) {
+      int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void put(long hash) {
+    int h1 = (int) (hash >>> 32);
+    int h2 = (int) hash;
+    for (int i = 0; i < HASH_COUNT; i++) {
+      int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+      bits[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Creates filter of types of the specified packages, maps package names to class file names.
+   */
+  static TypeNameFilter create(Map<String, String[]> packages) {
+    int typeCount = 0;
+    for (String[] types : packages.values()) {
+      typeCount += types.length;
+    }
+    TypeNameFilter filter = new TypeNameFilter(typeCount);
+    for (Map.Entry<String, String[]> entry : packages.entrySet()) {
+      for (String binaryFileName : entry.getValue()) {
+        String typeName = binaryFileName.endsWith(".class") ? binaryFileName.substring(0, binaryFileName.length() - 6) : binaryFileName;
+        filter.put(hash(entry.getKey(), typeName.toCharArray()));
+      }
+    }
+    return filter;
+  }
+}
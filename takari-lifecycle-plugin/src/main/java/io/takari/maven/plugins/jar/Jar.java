@@ -15,6 +15,9 @@ import io.takari.incrementalbuild.aggregator.AggregatorBuildContext.AggregateCre
 import io.takari.incrementalbuild.aggregator.AggregatorBuildContext.AggregateInput;
 import io.takari.incrementalbuild.aggregator.AggregatorBuildContext.AggregateOutput;
 import io.takari.maven.plugins.TakariLifecycleMojo;
+import io.takari.maven.plugins.compile.jdt.ClassfileDigester;
+import io.takari.maven.plugins.compile.jdt.ClasspathDigester;
+import io.takari.maven.plugins.compile.jdt.EmbeddedAbiDigest;
 import io.takari.maven.plugins.util.PropertiesWriter;
 import io.tesla.proviso.archive.Archiver;
 import io.tesla.proviso.archive.Entry;
@@ -23,8 +26,11 @@ import io.tesla.proviso.archive.source.FileEntry;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
@@ -36,6 +42,7 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
 
 @Mojo(name = "jar", defaultPhase = LifecyclePhase.PACKAGE, configurator = "takari")
 public class Jar extends TakariLifecycleMojo {
@@ -61,6 +68,14 @@ public class Jar extends TakariLifecycleMojo {
   @Parameter(defaultValue = "${project.build.testOutputDirectory}")
   private File testClassesDirectory;
 
+  /**
+   * Embed per-type ABI digest of main jar classes, which allows downstream compilations to skip digesting the jar classes.
+   *
+   * @since 1.11
+   */
+  @Parameter(defaultValue = "false", property = "abiDigest")
+  private boolean abiDigest;
+
   @Parameter
   private ArchiveConfiguration archive;
 
@@ -96,6 +111,9 @@ public class Jar extends TakariLifecycleMojo {
               sources.add(jarManifestSource(archive.getManifestFile()));
             }
             sources.add(inputsSource(inputs));
+            if (abiDigest) {
+              sources.add(singleton(abiDigestSource(inputs)));
+            }
             sources.add(singleton(pomPropertiesSource(project)));
             sources.add(jarManifestSource(project));
             archive(output.getResource(), sources);
@@ -203,6 +221,22 @@ public class Jar extends TakariLifecycleMojo {
     return singleton((Entry) new BytesEntry(MANIFEST_PATH, buf.toByteArray()));
   }
 
+  private Entry abiDigestSource(Iterable<AggregateInput> inputs) throws IOException {
+    ClassfileDigester digester = new ClassfileDigester();
+    Map<String, byte[]> types = new HashMap<>();
+    for (AggregateInput input : inputs) {
+      String entryName = getRelativePath(input.getBasedir(), input.getResource());
+      if (entryName.endsWith(".class")) {
+        try {
+          types.put(ClasspathDigester.toJavaType(entryName), digester.digest(Files.readAllBytes(input.getResource().toPath())));
+        } catch (ClassFormatException e) {
+          // as far as jdt is concerned, the type does not exist
+        }
+      }
+    }
+    return new BytesEntry(EmbeddedAbiDigest.ENTRY_NAME, EmbeddedAbiDigest.write(types));
+  }
+
   protected Entry pomPropertiesSource(MavenProject project) throws IOException {
     String entryName = String.format("META-INF/maven/%s/%s/pom.properties", project.getGroupId(), project.getArtifactId());
 
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.util;
+
+import java.io.File;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Helper to read build-wide tuning knobs that are not associated with any particular mojo execution. User properties (i.e. {@code -Dname=value} on Maven command line) take precedence over
+ * system properties.
+ */
+public class SessionProperties {
+
+  private SessionProperties() {}
+
+  public static String getString(MavenSession session, String name) {
+    String value = session.getUserProperties().getProperty(name);
+    if (value == null) {
+      value = session.getSystemProperties().getProperty(name);
+    }
+    return value != null ? value.trim() : null;
+  }
+
+  public static long getLong(MavenSession session, String name, long defaultValue) {
+    String value = getString(session, name);
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("Invalid %s property value '%s'", name, value), e);
+    }
+  }
+
+  public static int getInt(MavenSession session, String name, int defaultValue) {
+    return (int) getLong(session, name, defaultValue);
+  }
+
+  /**
+   * Returns per-user cache directory with the specified name, or {@code null} if Maven local repository is not available.
+   */
+  public static File getCacheDirectory(MavenSession session, String name) {
+    ArtifactRepository localRepository = session.getLocalRepository();
+    if (localRepository == null || localRepository.getBasedir() == null) {
+      return null;
+    }
+    return new File(localRepository.getBasedir(), ".cache/takari-lifecycle/" + name);
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * JVM-wide cache shared by all builds in the JVM. The cache is created by the first build that uses it, with the capacity configured by that build, capacities configured by later builds are
+ * ignored. Least recently used values are evicted when capacity is exceeded.
+ * <p>
+ * Values that implement {@link Closeable} are closed when they are evicted, invalidated or replaced by a fresh value. Such values may still be used by other builds at that point and must
+ * remain usable after close.
+ */
+public class SharedCache<K, V> {
+
+  /**
+   * Decides if a cached value still reflects current state of its source.
+   */
+  public static interface Validator<V> {
+    boolean isValid(V value);
+  }
+
+  private final String name;
+
+  private final Logger log;
+
+  private final AtomicLong staleCount = new AtomicLong();
+
+  /**
+   * Guarded by {@code this}.
+   */
+  private Cache<K, V> cache;
+
+  private int maxSize;
+
+  public SharedCache(String name, Logger log) {
+    this.name = name;
+    this.log = log;
+  }
+
+  /**
+   * Creates the cache with capacity of {@code maxSize} values, unless the cache was already created.
+   */
+  public synchronized void init(int maxSize) {
+    if (cache != null && this.maxSize != maxSize) {
+      log.debug("{} maxSize={} is ignored, the cache was created with maxSize={}", name, maxSize, this.maxSize);
+    }
+    if (cache == null) {
+      this.maxSize = maxSize;
+      this.cache = CacheBuilder.newBuilder() //
+          .maximumSize(maxSize) //
+          .recordStats() //
+          .removalListener(new RemovalListener<K, V>() {
+            @Override
+            public void onRemoval(RemovalNotification<K, V> notification) {
+              V value = notification.getValue();
+              if (value instanceof Closeable) {
+                try {
+                  ((Closeable) value).close();
+                } catch (IOException e) {
+                  // ignore
+                }
+              }
+            }
+          }) //
+          .build();
+    }
+
+    if (log.isDebugEnabled()) {
+      CacheStats stats = cache.stats();
+      log.debug("{}: size={} hits={} misses={} stale={} evictions={}", name, cache.size(), stats.hitCount(), stats.missCount(), staleCount.get(), stats.evictionCount());
+    }
+  }
+
+  private synchronized Cache<K, V> getCache() {
+    if (cache == null) {
+      throw new IllegalStateException(name + " is not initialized");
+    }
+    return cache;
+  }
+
+  /**
+   * Returns cached value of {@code key}. The value is loaded if it is not cached, or if it was cached before this call and {@code validator} rejects it.
+   * <p>
+   * Loaders should capture the state of the value source before the value is loaded, so concurrent changes of the source are detected by the next lookup.
+   */
+  public V get(K key, final Callable<V> loader, Validator<V> validator) {
+    Cache<K, V> cache = getCache();
+    final boolean[] loaded = new boolean[1];
+    Callable<V> trackingLoader = new Callable<V>() {
+      @Override
+      public V call() throws Exception {
+        loaded[0] = true;
+        return loader.call();
+      }
+    };
+    try {
+      V value = cache.get(key, trackingLoader);
+      if (!loaded[0] && !validator.isValid(value)) {
+        staleCount.incrementAndGet();
+        cache.asMap().remove(key, value);
+        value = cache.get(key, trackingLoader);
+      }
+      return value;
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  public void invalidate(K key) {
+    getCache().invalidate(key);
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2014 Takari, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.maven.plugins.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.ZipFile;
+
+/**
+ * Lazily opened zip file shared by concurrent readers. Closing of the zip file is deferred until all in-progress reads complete. Closed instances remain usable, the zip file is reopened by the
+ * next read and closed again when no reads are in progress, so instances that are closed, for example evicted from a cache, but still referenced do not keep the zip file open.
+ * <p>
+ * Typical use
+ *
+ * <pre>
+ * try (SharedZipFile.Reader reader = zipFile.acquire()) {
+ *   ... reader.getZipFile() ...
+ * }
+ * </pre>
+ */
+public class SharedZipFile implements Closeable {
+
+  private final File file;
+
+  /**
+   * Open zip file or {@code null} if the zip file was not opened yet or was closed. Guarded by {@code this}.
+   */
+  private Reader current;
+
+  /**
+   * {@code true} after {@link #close()}. Guarded by {@code this}.
+   */
+  private boolean closed;
+
+  /**
+   * Open zip file with number of in-progress reads. Shared by all concurrent reads, each {@link SharedZipFile#acquire()} must be followed by exactly one {@link #close()}.
+   */
+  public final class Reader implements Closeable {
+
+    private final ZipFile zipFile;
+
+    private int readers;
+
+    private boolean closed;
+
+    Reader(ZipFile zipFile) {
+      this.zipFile = zipFile;
+    }
+
+    public ZipFile getZipFile() {
+      return zipFile;
+    }
+
+    /**
+     * Ends the read, closes the zip file if it was closed while the read was in progress.
+     */
+    @Override
+    public void close() {
+      release(this);
+    }
+  }
+
+  /**
+   * Creates shared zip file of {@code file}, {@code zipFile} is an already open zip file of {@code file} or {@code null}.
+   */
+  public SharedZipFile(File file, ZipFile zipFile) {
+    this.file = file;
+    this.current = zipFile != null ? new Reader(zipFile) : null;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Starts a read, opens the zip file if necessary.
+   */
+  public synchronized Reader acquire() throws IOException {
+    if (current == null) {
+      current = new Reader(new ZipFile(file));
+      current.closed = closed;
+    }
+    current.readers++;
+    return current;
+  }
+
+  private void release(Reader reader) {
+    synchronized (this) {
+      reader.readers--;
+      if (!reader.closed || reader.readers > 0) {
+        return;
+      }
+      if (current == reader) {
+        current = null;
+      }
+    }
+    try {
+      reader.zipFile.close();
+    } catch (IOException e) {
+      // the entry was read, ignore
+    }
+  }
+
+  /**
+   * Closes the zip file once all in-progress reads complete.
+   */
+  @Override
+  public void close() throws IOException {
+    Reader reader;
+    synchronized (this) {
+      closed = true;
+      reader = current;
+      current = null;
+      if (reader == null) {
+        return;
+      }
+      reader.closed = true;
+      if (reader.readers > 0) {
+        // closed by the last reader
+        return;
+      }
+    }
+    reader.zipFile.close();
+  }
+}
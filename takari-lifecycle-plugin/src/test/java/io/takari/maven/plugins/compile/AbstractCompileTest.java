@@ -51,6 +51,7 @@ public abstract class AbstractCompileTest {
     public MojoExecution newMojoExecution() {
       MojoExecution execution = super.newMojoExecution();
       execution.getConfiguration().addChild(newParameter("compilerId", compilerId));
+      addCompilerParameters(execution.getConfiguration());
       return execution;
     };
   };
@@ -70,6 +71,11 @@ public abstract class AbstractCompileTest {
         );
   }
 
+  /**
+   * Adds compiler configuration parameters used by all compilations of the test.
+   */
+  protected void addCompilerParameters(Xpp3Dom configuration) {}
+
   protected File compile(String name, Xpp3Dom... parameters) throws Exception {
     File basedir = resources.getBasedir(name);
     return mojos.compile(basedir, parameters);
@@ -214,6 +214,44 @@ public class AnnotationProcessingTest extends AbstractCompileTest {
         "classes/proc/AnotherGeneratedSource.class");
   }
 
+  @Test
+  public void testJavacIncremental() throws Exception {
+    Assume.assumeTrue("javac".equals(compilerId));
+
+    File processor = compileAnnotationProcessor();
+    File basedir = resources.getBasedir("compile-proc/proc-javac-incremental");
+    Xpp3Dom javacIncremental = newParameter("javacIncremental", "true");
+
+    processAnnotations(basedir, Proc.proc, processor, javacIncremental);
+    mojos.assertBuildOutputs(new File(basedir, "target"), //
+        "classes/proc/Source.class", //
+        "classes/proc/Unrelated.class", //
+        "generated-sources/annotations/proc/GeneratedSource.java", //
+        "classes/proc/GeneratedSource.class", //
+        "generated-sources/annotations/proc/AnotherGeneratedSource.java", //
+        "classes/proc/AnotherGeneratedSource.class");
+
+    // processor inputs are processed together with modified sources
+    cp(basedir, "src/main/java/proc/Unrelated.java-comment", "src/main/java/proc/Unrelated.java");
+    processAnnotations(basedir, Proc.proc, processor, javacIncremental);
+    mojos.assertBuildOutputs(new File(basedir, "target"), //
+        "classes/proc/Source.class", //
+        "classes/proc/Unrelated.class", //
+        "generated-sources/annotations/proc/GeneratedSource.java", //
+        "classes/proc/GeneratedSource.class", //
+        "generated-sources/annotations/proc/AnotherGeneratedSource.java", //
+        "classes/proc/AnotherGeneratedSource.class");
+
+    // outputs not generated again are stale
+    cp(basedir, "src/main/java/proc/Source.java-remove-annotation", "src/main/java/proc/Source.java");
+    processAnnotations(basedir, Proc.proc, processor, javacIncremental);
+    mojos.assertDeletedOutputs(new File(basedir, "target"), //
+        "generated-sources/annotations/proc/GeneratedSource.java", //
+        "classes/proc/GeneratedSource.class", //
+        "generated-sources/annotations/proc/AnotherGeneratedSource.java", //
+        "classes/proc/AnotherGeneratedSource.class");
+  }
+
   @Test
   @Ignore("not supported with javac, see test comment")
   public void testConvertGeneratedSourceToHandwritten() throws Exception {
@@ -0,0 +1,59 @@
+package io.takari.maven.plugins.compile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+/**
+ * Classpath jars and class files used by classpath entry and digester tests.
+ */
+public class ClasspathTestUtils {
+
+  private ClasspathTestUtils() {}
+
+  /**
+   * Returns the jar or directory the type was loaded from.
+   */
+  public static File getJar(Class<?> type) throws Exception {
+    return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  /**
+   * Returns contents of {@code org/junit/Assert.class}, a valid class file.
+   */
+  public static byte[] getClassfile() throws IOException {
+    try (InputStream is = Assert.class.getResourceAsStream("Assert.class")) {
+      return ByteStreams.toByteArray(is);
+    }
+  }
+
+  /**
+   * Writes {@link #getClassfile()} to the file, creating parent directories as necessary.
+   */
+  public static void writeClass(File file) throws IOException {
+    file.getParentFile().mkdirs();
+    Files.write(getClassfile(), file);
+  }
+
+  /**
+   * Writes a jar with the given entries, all entries have {@link #getClassfile()} contents.
+   */
+  public static void writeJar(File jar, String... entries) throws IOException {
+    byte[] bytes = getClassfile();
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (String entry : entries) {
+        zip.putNextEntry(new ZipEntry(entry));
+        zip.write(bytes);
+        zip.closeEntry();
+      }
+    }
+  }
+}
@@ -5,19 +5,42 @@ import static io.takari.maven.testing.TestResources.rm;
 import static io.takari.maven.testing.TestResources.touch;
 
 import java.io.File;
+import java.util.Arrays;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.junit.Assert;
 import org.junit.Test;
+import org.junit.runners.Parameterized.Parameters;
 
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 
 public class CompileIncrementalTest extends AbstractCompileTest {
 
-  public CompileIncrementalTest(String compilerId) {
+  private final boolean javacIncremental;
+
+  public CompileIncrementalTest(String compilerId, boolean javacIncremental) {
     super(compilerId);
+    this.javacIncremental = javacIncremental;
+  }
+
+  @Parameters(name = "{0}, javacIncremental={1}")
+  public static Iterable<Object[]> compilers() {
+    return Arrays.<Object[]>asList( //
+        new Object[] {"javac", false} //
+        , new Object[] {"javac", true} //
+        , new Object[] {"forked-javac", false} //
+        , new Object[] {"jdt", false} //
+        );
+  }
+
+  @Override
+  protected void addCompilerParameters(Xpp3Dom configuration) {
+    if (javacIncremental) {
+      configuration.addChild(newParameter("javacIncremental", "true"));
+    }
   }
 
   @Test
@@ -121,6 +144,28 @@ public class CompileIncrementalTest extends AbstractCompileTest {
     mojos.assertMessages(basedir, "target/classes/error/Error.class", new String[0]);
   }
 
+  @Test
+  public void testError_multipleSources() throws Exception {
+    File basedir = resources.getBasedir("compile-incremental/error-multiple");
+    try {
+      compile(basedir);
+      Assert.fail();
+    } catch (MojoExecutionException e) {
+      // expected
+    }
+
+    // fixing the error must produce classes of all sources, including sources that did not have errors
+    cp(basedir, "src/main/java/error/Error.java-fixed", "src/main/java/error/Error.java");
+    compile(basedir);
+    Assert.assertTrue(new File(basedir, "target/classes/error/Error.class").isFile());
+    Assert.assertTrue(new File(basedir, "target/classes/error/Other.class").isFile());
+
+    // no-change rebuild
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, new String[0]);
+    Assert.assertTrue(new File(basedir, "target/classes/error/Other.class").isFile());
+  }
+
   @Test
   public void testClasspath_reactor() throws Exception {
     File basedir = resources.getBasedir("compile-incremental/classpath");
@@ -54,4 +54,33 @@ public class ForkedCompileTest {
       // TODO assert compilation failed for the right reason
     }
   }
+
+  @Test
+  public void testWorkers() throws Exception {
+    File basedir = resources.getBasedir("compile/basic");
+
+    Xpp3Dom fork = new Xpp3Dom("compilerId");
+    fork.setValue("forked-javac");
+
+    Xpp3Dom workers = new Xpp3Dom("forkedWorkers");
+    workers.setValue("true");
+
+    mojos.compile(basedir, fork, workers);
+    mojos.assertBuildOutputs(basedir, "target/classes/basic/Basic.class");
+
+    // the second compilation reuses the worker
+    Assert.assertTrue(new File(basedir, "target/classes/basic/Basic.class").delete());
+    mojos.compile(basedir, fork, workers);
+    mojos.assertBuildOutputs(basedir, "target/classes/basic/Basic.class");
+
+    // workers that fail to start are reported as compilation failures
+    Xpp3Dom maxmem = new Xpp3Dom("maxmem");
+    maxmem.setValue("garbage");
+    try {
+      mojos.compile(basedir, fork, workers, maxmem);
+      Assert.fail();
+    } catch (MojoExecutionException e) {
+      // expected
+    }
+  }
 }
@@ -0,0 +1,54 @@
+package io.takari.maven.plugins.compile.javac;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+public class ClassfileReferencesTest {
+
+  private static ClassfileReferences read(Class<?> type) throws Exception {
+    try (InputStream is = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+      return ClassfileReferences.read(ByteStreams.toByteArray(is));
+    }
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    ClassfileReferences classfile = read(TemporaryFolder.class);
+    Assert.assertEquals("org/junit/rules/TemporaryFolder", classfile.getType());
+    Assert.assertEquals(Arrays.asList("org/junit/rules/ExternalResource"), classfile.getSupertypes());
+    Assert.assertTrue(classfile.getReferences().contains("org/junit/rules/ExternalResource"));
+    Assert.assertFalse(classfile.getReferences().contains("org/junit/rules/TemporaryFolder"));
+    Assert.assertFalse(classfile.getReferences().contains("java/io/File"));
+  }
+
+  @Test
+  public void testDescriptorTypes() throws Exception {
+    List<String> types = new ArrayList<String>();
+    ClassfileReferences.collectDescriptorTypes("(I[La/A;Ljava/util/List<+Lb/B;>;)Lc/C<TT;>.D;", types);
+    Assert.assertEquals(Arrays.asList("a/A", "b/B", "c/C"), types);
+
+    types.clear();
+    ClassfileReferences.collectDescriptorTypes("Load settings", types);
+    Assert.assertTrue(types.isEmpty());
+  }
+
+  @Test
+  public void testConstantsHash() throws Exception {
+    Assert.assertNull(read(ClassfileReferencesTest.class).getConstantsHash());
+    Assert.assertNotNull(read(ClassfileReferences.class).getConstantsHash());
+  }
+
+  @Test
+  public void testAnnotation() throws Exception {
+    Assert.assertTrue(read(Test.class).isAnnotation());
+    Assert.assertFalse(read(ClassfileReferencesTest.class).isAnnotation());
+  }
+}
@@ -0,0 +1,174 @@
+package io.takari.maven.plugins.compile.javac;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+
+public class ClasspathArchiveFileManagerTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  private final ClasspathArchiveCache archives = new ClasspathArchiveCache(100);
+
+  private File writeSource(File directory, String path, String content) throws Exception {
+    File file = new File(directory, path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(Charsets.UTF_8));
+    return file;
+  }
+
+  private List<String> compile(File output, String classpath, File... sources) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    try (StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, Charsets.UTF_8)) {
+      ClasspathArchiveFileManager fileManager = new ClasspathArchiveFileManager(standardFileManager, archives, Charsets.UTF_8);
+      List<String> options = Arrays.asList("-d", output.getAbsolutePath(), "-classpath", classpath, "-implicit:none", "-proc:none");
+      compiler.getTask(null, fileManager, diagnostics, options, null, standardFileManager.getJavaFileObjects(sources)).call();
+    }
+    List<String> errors = new ArrayList<String>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        errors.add(diagnostic.getMessage(null));
+      }
+    }
+    return errors;
+  }
+
+  private File createJar(File classes, String... paths) throws Exception {
+    File jar = temp.newFile();
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (String path : paths) {
+        zip.putNextEntry(new ZipEntry(path));
+        zip.write(Files.readAllBytes(new File(classes, path).toPath()));
+        zip.closeEntry();
+      }
+    }
+    return jar;
+  }
+
+  @Test
+  public void testClasspath() throws Exception {
+    File sources = temp.newFolder();
+    File jarClasses = temp.newFolder();
+    Assert.assertEquals(new ArrayList<String>(), compile(jarClasses, "", writeSource(sources, "jar/JarType.java", "package jar; public class JarType {}")));
+    File jar = createJar(jarClasses, "jar/JarType.class");
+
+    File directoryClasses = temp.newFolder();
+    Assert.assertEquals(new ArrayList<String>(), compile(directoryClasses, "", writeSource(sources, "dir/DirectoryType.java", "package dir; public class DirectoryType {}")));
+
+    String classpath = jar.getAbsolutePath() + File.pathSeparator + directoryClasses.getAbsolutePath();
+    File main = writeSource(sources, "main/Main.java", "package main; public class Main { jar.JarType a; dir.DirectoryType b; }");
+    File output = temp.newFolder();
+    Assert.assertEquals(new ArrayList<String>(), compile(output, classpath, main));
+    Assert.assertTrue(new File(output, "main/Main.class").isFile());
+
+    // the jar is indexed once and shared by subsequent compilations
+    ClasspathArchiveCache.Archive archive = archives.get(jar);
+    Assert.assertNotNull(archive);
+    Assert.assertEquals(new ArrayList<String>(), compile(temp.newFolder(), classpath, main));
+    Assert.assertSame(archive, archives.get(jar));
+
+    File missing = writeSource(sources, "main/Missing.java", "package main; public class Missing { jar.MissingType a; }");
+    Assert.assertEquals(1, compile(temp.newFolder(), classpath, missing).size());
+  }
+
+  @Test
+  public void testChangedJar() throws Exception {
+    File sources = temp.newFolder();
+    File classes = temp.newFolder();
+    compile(classes, "", writeSource(sources, "jar/JarType.java", "package jar; public class JarType {}"));
+    compile(classes, "", writeSource(sources, "jar/OtherType.java", "package jar; public class OtherType {}"));
+    File jar = createJar(classes, "jar/JarType.class");
+
+    File main = writeSource(sources, "main/Main.java", "package main; public class Main { jar.OtherType a; }");
+    Assert.assertEquals(1, compile(temp.newFolder(), jar.getAbsolutePath(), main).size());
+
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (String path : Arrays.asList("jar/JarType.class", "jar/OtherType.class")) {
+        zip.putNextEntry(new ZipEntry(path));
+        zip.write(Files.readAllBytes(new File(classes, path).toPath()));
+        zip.closeEntry();
+      }
+    }
+    Assert.assertTrue(jar.setLastModified(jar.lastModified() + 10000L));
+    Assert.assertEquals(new ArrayList<String>(), compile(temp.newFolder(), jar.getAbsolutePath(), main));
+  }
+
+  @Test
+  public void testNotAJar() throws Exception {
+    File sources = temp.newFolder();
+    File file = temp.newFile("not-a-jar.jar");
+    Assert.assertNull(archives.get(file));
+    File main = writeSource(sources, "main/Main.java", "package main; public class Main {}");
+    Assert.assertEquals(new ArrayList<String>(), compile(temp.newFolder(), file.getAbsolutePath(), main));
+  }
+
+  @Test
+  public void testConcurrentEviction() throws Exception {
+    File jar = temp.newFile();
+    final byte[] content = new byte[64 * 1024];
+    new Random(1).nextBytes(content);
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (int i = 0; i < 10; i++) {
+        zip.putNextEntry(new ZipEntry("pkg/Entry" + i + ".class"));
+        zip.write(content);
+        zip.closeEntry();
+      }
+    }
+    final ClasspathArchiveCache.Archive archive = archives.get(jar);
+    final AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> readers = new ArrayList<Future<?>>();
+      for (int t = 0; t < 4; t++) {
+        readers.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; !done.get(); i++) {
+              Assert.assertArrayEquals(content, archive.read("pkg/Entry" + (i % 10) + ".class"));
+            }
+            return null;
+          }
+        }));
+      }
+      // eviction closes the archive while other compilations read from it
+      for (int i = 0; i < 500; i++) {
+        archive.close();
+        Thread.sleep(1);
+      }
+      done.set(true);
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertArrayEquals(content, archive.read("pkg/Entry0.class"));
+  }
+}
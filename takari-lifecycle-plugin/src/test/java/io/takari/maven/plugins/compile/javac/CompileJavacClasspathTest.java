@@ -0,0 +1,88 @@
+package io.takari.maven.plugins.compile.javac;
+
+import io.takari.maven.plugins.compile.CompileRule;
+import io.takari.maven.testing.TestResources;
+
+import java.io.File;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.ArtifactHandler;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CompileJavacClasspathTest {
+
+  @Rule
+  public final TestResources resources = new TestResources();
+
+  @Rule
+  public final CompileRule mojos = new CompileRule();
+
+  private void addDependency(MavenProject project, String artifactId, File file) throws Exception {
+    ArtifactHandler handler = mojos.getContainer().lookup(ArtifactHandler.class, "jar");
+    DefaultArtifact artifact = new DefaultArtifact("test", artifactId, "1.0", Artifact.SCOPE_COMPILE, "jar", null, handler);
+    artifact.setFile(file);
+    Set<Artifact> artifacts = project.getArtifacts();
+    artifacts.add(artifact);
+    project.setArtifacts(artifacts);
+  }
+
+  private void compile(File parent, String... jars) throws Exception {
+    MavenProject moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    for (String jar : jars) {
+      addDependency(moduleA, jar, new File(parent, "module-b/" + jar + ".jar"));
+    }
+    Xpp3Dom abiClasspathDigest = new Xpp3Dom("javacAbiClasspathDigest");
+    abiClasspathDigest.setValue("true");
+    mojos.compile(moduleA, abiClasspathDigest);
+  }
+
+  @Test
+  public void testAbiClasspathDigest() throws Exception {
+    File parent = resources.getBasedir("compile-jdt-classpath/repo-basic");
+
+    compile(parent, "module-b");
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+
+    // dependency changed non-structurally
+    compile(parent, "module-b-comment");
+    mojos.assertBuildOutputs(parent, new String[0]);
+
+    // dependency changed structurally
+    compile(parent, "module-b-method");
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+  }
+
+  @Test
+  public void testAbiClasspathDigest_classpathOrder() throws Exception {
+    File parent = resources.getBasedir("compile-jdt-classpath/repo-basic");
+
+    compile(parent, "module-b", "module-b-comment", "module-b-method");
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+
+    // classpath order change did not result in structural type definition change
+    compile(parent, "module-b-comment", "module-b", "module-b-method");
+    mojos.assertBuildOutputs(parent, new String[0]);
+
+    // classpath order change DID result in structural type definition change
+    compile(parent, "module-b-method", "module-b", "module-b-comment");
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+  }
+
+  @Test
+  public void testSharedClasspathArchives() throws Exception {
+    File parent = resources.getBasedir("compile-jdt-classpath/repo-basic");
+
+    Xpp3Dom sharedArchives = new Xpp3Dom("javacSharedClasspathArchives");
+    sharedArchives.setValue("true");
+
+    MavenProject moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b", new File(parent, "module-b/module-b.jar"));
+    mojos.compile(moduleA, sharedArchives);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+  }
+}
@@ -0,0 +1,95 @@
+package io.takari.maven.plugins.compile.javac;
+
+import static io.takari.maven.testing.TestResources.cp;
+import static io.takari.maven.testing.TestResources.rm;
+import io.takari.maven.plugins.compile.CompileRule;
+import io.takari.maven.testing.TestResources;
+
+import java.io.File;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CompileJavacIncrementalTest {
+
+  @Rule
+  public final TestResources resources = new TestResources();
+
+  @Rule
+  public final CompileRule mojos = new CompileRule();
+
+  private void compile(File basedir) throws Exception {
+    Xpp3Dom javacIncremental = new Xpp3Dom("javacIncremental");
+    javacIncremental.setValue("true");
+    mojos.compile(basedir, javacIncremental);
+  }
+
+  @Test
+  public void testReference() throws Exception {
+    File basedir = resources.getBasedir("compile-jdt/reference");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/reference/Parameter.class", "target/classes/reference/Type.class");
+
+    // no change rebuild
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, new String[0]);
+
+    // insignificant change
+    cp(basedir, "src/main/java/reference/Parameter.java-comment", "src/main/java/reference/Parameter.java");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/reference/Parameter.class");
+    mojos.assertCarriedOverOutputs(basedir, "target/classes/reference/Type.class");
+
+    // significant change
+    cp(basedir, "src/main/java/reference/Parameter.java-method", "src/main/java/reference/Parameter.java");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/reference/Parameter.class", "target/classes/reference/Type.class");
+  }
+
+  @Test
+  public void testSupertype() throws Exception {
+    File basedir = resources.getBasedir("compile-jdt/supertype");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/supertype/SubClass.class", "target/classes/supertype/SuperClass.class", "target/classes/supertype/SuperInterface.class");
+
+    // superclass insignificant change
+    cp(basedir, "src/main/java/supertype/SuperClass.java-methodBody", "src/main/java/supertype/SuperClass.java");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/supertype/SuperClass.class");
+
+    // superclass significant change
+    cp(basedir, "src/main/java/supertype/SuperClass.java-member", "src/main/java/supertype/SuperClass.java");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/supertype/SubClass.class", "target/classes/supertype/SuperClass.class");
+  }
+
+  @Test
+  public void testConstant() throws Exception {
+    File basedir = resources.getBasedir("compile-javac-incremental/constant");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/constant/Constants.class", "target/classes/constant/Unrelated.class", "target/classes/constant/User.class");
+
+    // unrelated change
+    cp(basedir, "src/main/java/constant/Unrelated.java-comment", "src/main/java/constant/Unrelated.java");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/constant/Unrelated.class");
+
+    // inlined constant references are not tracked, constant changes recompile all sources
+    cp(basedir, "src/main/java/constant/Constants.java-changed", "src/main/java/constant/Constants.java");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/constant/Constants.class", "target/classes/constant/Unrelated.class", "target/classes/constant/User.class");
+  }
+
+  @Test
+  public void testDeletedSource() throws Exception {
+    File basedir = resources.getBasedir("compile-javac-incremental/constant");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, "target/classes/constant/Constants.class", "target/classes/constant/Unrelated.class", "target/classes/constant/User.class");
+
+    rm(basedir, "src/main/java/constant/Unrelated.java");
+    compile(basedir);
+    mojos.assertBuildOutputs(basedir, new String[0]);
+    mojos.assertDeletedOutputs(basedir, "target/classes/constant/Unrelated.class");
+  }
+}
@@ -0,0 +1,124 @@
+package io.takari.maven.plugins.compile.javac;
+
+import static io.takari.maven.plugins.compile.javac.ForkedCompilerTestUtils.EXECUTABLE;
+import static io.takari.maven.plugins.compile.javac.ForkedCompilerTestUtils.createCompilerJar;
+import static io.takari.maven.plugins.compile.javac.ForkedCompilerTestUtils.newBasicConfiguration;
+import static io.takari.maven.plugins.compile.javac.ForkedCompilerTestUtils.newCommand;
+import io.takari.incrementalbuild.BuildContext.Severity;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerConfiguration;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerOutputProcessor;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompilerJavacClassDataSharingTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  private static boolean isSupported() {
+    String version = System.getProperty("java.specification.version");
+    return !version.startsWith("1.") && Integer.parseInt(version) >= 13;
+  }
+
+  private void compile(List<String> jvmOptions, File jar) throws Exception {
+    File basedir = temp.newFolder();
+    List<String> command = newCommand(jar.getAbsolutePath(), jvmOptions);
+
+    final List<String> messages = new ArrayList<String>();
+    CompilerConfiguration config = newBasicConfiguration(basedir);
+    CompilerJavacWorkerPool.compileOnce(command, basedir, config, new CompilerOutputProcessor() {
+      @Override
+      public void processOutput(File inputFile, File outputFile) {}
+
+      @Override
+      public void addMessage(String path, int line, int column, String message, Severity kind) {
+        messages.add(message);
+      }
+
+      @Override
+      public void addLogMessage(String message) {
+        messages.add(message);
+      }
+    });
+
+    Assert.assertEquals(Collections.emptyList(), messages);
+    Assert.assertTrue(new File(basedir, "Basic.class").isFile());
+  }
+
+  @Test
+  public void testArchive() throws Exception {
+    Assume.assumeTrue(isSupported());
+
+    File jar = temp.newFile("compiler.jar");
+    createCompilerJar(jar);
+    File directory = temp.newFolder();
+
+    List<String> options = CompilerJavacClassDataSharing.getJvmOptions(EXECUTABLE, jar, directory);
+    File[] archives = directory.listFiles();
+    Assert.assertEquals(1, archives.length);
+    Assert.assertTrue(archives[0].length() > 0);
+    Assert.assertTrue(options.contains("-XX:SharedArchiveFile=" + archives[0].getAbsolutePath()));
+
+    // the archive is reused
+    long lastModified = archives[0].lastModified();
+    Assert.assertEquals(options, CompilerJavacClassDataSharing.getJvmOptions(EXECUTABLE, jar, directory));
+    Assert.assertEquals(lastModified, archives[0].lastModified());
+
+    // the archive is usable by the forked compiler
+    compile(options, jar);
+  }
+
+  @Test
+  public void testArchiveRecreatedWhenJarChanges() throws Exception {
+    Assume.assumeTrue(isSupported());
+
+    File jar = temp.newFile("compiler.jar");
+    createCompilerJar(jar);
+    File directory = temp.newFolder();
+
+    List<String> options = CompilerJavacClassDataSharing.getJvmOptions(EXECUTABLE, jar, directory);
+
+    createCompilerJar(jar, "changed.txt");
+    Assert.assertTrue(jar.setLastModified(jar.lastModified() + 10000L));
+
+    List<String> changed = CompilerJavacClassDataSharing.getJvmOptions(EXECUTABLE, jar, directory);
+    Assert.assertEquals(2, directory.listFiles().length);
+    Assert.assertFalse(options.equals(changed));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedArchivesEvicted() throws Exception {
+    Assume.assumeTrue(isSupported());
+
+    File jar = temp.newFile("compiler.jar");
+    createCompilerJar(jar);
+    File directory = temp.newFolder();
+
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < CompilerJavacClassDataSharing.MAX_ARCHIVES; i++) {
+      File stale = new File(directory, "forked-javac-13-stale" + i + ".jsa");
+      Files.write(stale.toPath(), new byte[] {1});
+      Assert.assertTrue(stale.setLastModified(now - (i + 1) * 60000L));
+    }
+    File other = new File(directory, "other.txt");
+    Files.write(other.toPath(), new byte[] {1});
+
+    List<String> options = CompilerJavacClassDataSharing.getJvmOptions(EXECUTABLE, jar, directory);
+    Assert.assertFalse(options.isEmpty());
+    Assert.assertEquals(CompilerJavacClassDataSharing.MAX_ARCHIVES + 1, directory.listFiles().length);
+    Assert.assertTrue(other.isFile());
+    // the oldest archive is evicted, the most recently used one is kept
+    Assert.assertFalse(new File(directory, "forked-javac-13-stale" + (CompilerJavacClassDataSharing.MAX_ARCHIVES - 1) + ".jsa").exists());
+    Assert.assertTrue(new File(directory, "forked-javac-13-stale0.jsa").isFile());
+  }
+}
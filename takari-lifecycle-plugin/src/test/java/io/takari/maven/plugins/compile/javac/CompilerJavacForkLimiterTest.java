@@ -0,0 +1,141 @@
+package io.takari.maven.plugins.compile.javac;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompilerJavacForkLimiterTest {
+
+  private final CompilerJavacForkLimiter limiter = new CompilerJavacForkLimiter();
+
+  private final List<String> acquired = Collections.synchronizedList(new ArrayList<String>());
+
+  private CountDownLatch acquire(final String name, final int maxForks, final long memoryBudget, final long forkMemory) throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          limiter.acquire(maxForks, memoryBudget, forkMemory);
+          acquired.add(name);
+          latch.countDown();
+        } catch (InterruptedException e) {
+          // test is over
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+    return latch;
+  }
+
+  private static void assertWaiting(CountDownLatch latch) throws InterruptedException {
+    Assert.assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+  }
+
+  private static void assertAcquired(CountDownLatch latch) throws InterruptedException {
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testMaxForks() throws Exception {
+    limiter.acquire(2, 0, 100);
+    limiter.acquire(2, 0, 100);
+
+    CountDownLatch third = acquire("third", 2, 0, 100);
+    assertWaiting(third);
+
+    limiter.release(100);
+    assertAcquired(third);
+    Assert.assertEquals(2, limiter.getForks());
+  }
+
+  @Test
+  public void testMemoryBudget() throws Exception {
+    limiter.acquire(0, 100, 60);
+
+    CountDownLatch second = acquire("second", 0, 100, 60);
+    assertWaiting(second);
+
+    limiter.release(60);
+    assertAcquired(second);
+  }
+
+  @Test
+  public void testOversizedForkRunsAlone() throws Exception {
+    limiter.acquire(0, 100, 200);
+
+    CountDownLatch second = acquire("second", 0, 100, 10);
+    assertWaiting(second);
+
+    limiter.release(200);
+    assertAcquired(second);
+  }
+
+  @Test
+  public void testFirstComeFirstServed() throws Exception {
+    limiter.acquire(0, 100, 60);
+
+    CountDownLatch large = acquire("large", 0, 100, 80);
+    assertWaiting(large);
+
+    // fits in the remaining budget, but must not overtake the queued large fork
+    CountDownLatch small = acquire("small", 0, 100, 30);
+    assertWaiting(small);
+
+    limiter.release(60);
+    assertAcquired(large);
+    assertWaiting(small);
+
+    limiter.release(80);
+    assertAcquired(small);
+    Assert.assertEquals(Arrays.asList("large", "small"), acquired);
+  }
+
+  @Test
+  public void testIdleForksEvicted() throws Exception {
+    final AtomicLong idleMemory = new AtomicLong(80);
+    CompilerJavacForkLimiter evicting = new CompilerJavacForkLimiter(new CompilerJavacForkLimiter.IdleForks() {
+      @Override
+      public long getMemory() {
+        return idleMemory.get();
+      }
+
+      @Override
+      public long evict(long memory) {
+        long evicted = Math.min(40, idleMemory.get());
+        idleMemory.addAndGet(-evicted);
+        return evicted;
+      }
+    });
+
+    evicting.acquire(0, 100, 30);
+    Assert.assertEquals(40, idleMemory.get());
+
+    evicting.acquire(0, 100, 50);
+    Assert.assertEquals(0, idleMemory.get());
+    Assert.assertEquals(2, evicting.getForks());
+  }
+
+  @Test
+  public void testMaxHeap() {
+    Assert.assertEquals(128L, CompilerJavacForkLimiter.getMaxHeap("128"));
+    Assert.assertEquals(64L * 1024, CompilerJavacForkLimiter.getMaxHeap("64k"));
+    Assert.assertEquals(128L * 1024 * 1024, CompilerJavacForkLimiter.getMaxHeap("128m"));
+    Assert.assertEquals(2L * 1024 * 1024 * 1024, CompilerJavacForkLimiter.getMaxHeap("2G"));
+    Assert.assertEquals(0L, CompilerJavacForkLimiter.getMaxHeap("garbage"));
+    Assert.assertTrue(CompilerJavacForkLimiter.getMaxHeap(null) > 0);
+  }
+
+  @Test
+  public void testPhysicalMemory() {
+    Assert.assertTrue(CompilerJavacForkLimiter.getPhysicalMemory() > 0);
+  }
+}
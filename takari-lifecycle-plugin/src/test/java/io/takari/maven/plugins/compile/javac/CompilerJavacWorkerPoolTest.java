@@ -0,0 +1,88 @@
+package io.takari.maven.plugins.compile.javac;
+
+import static io.takari.maven.plugins.compile.javac.ForkedCompilerTestUtils.getCompilerClasses;
+import static io.takari.maven.plugins.compile.javac.ForkedCompilerTestUtils.newBasicConfiguration;
+import static io.takari.maven.plugins.compile.javac.ForkedCompilerTestUtils.newCommand;
+import io.takari.incrementalbuild.BuildContext.Severity;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerConfiguration;
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerOutputProcessor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompilerJavacWorkerPoolTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testIdleWorkersCapped() throws Exception {
+    // unique command line, idle workers exit after one second
+    String classpath = getCompilerClasses().getAbsolutePath() + File.pathSeparator + temp.getRoot().getAbsolutePath();
+    final List<String> command = newCommand(classpath, CompilerJavacForked.getJvmLogOptions(), CompilerJavacForked.WORKER, "1");
+    final File basedir = temp.newFolder();
+
+    final int compilations = 3;
+    final CountDownLatch running = new CountDownLatch(compilations);
+    ExecutorService executor = Executors.newFixedThreadPool(compilations);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int i = 0; i < compilations; i++) {
+        final CompilerConfiguration config = newBasicConfiguration(temp.newFolder());
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            CompilerJavacWorkerPool.compile(command, basedir, 1, 0, config, new CompilerOutputProcessor() {
+              @Override
+              public void processOutput(File inputFile, File outputFile) {
+                // keep all workers busy at the same time
+                running.countDown();
+                try {
+                  running.await(60, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+
+              @Override
+              public void addMessage(String path, int line, int column, String message, Severity kind) {}
+
+              @Override
+              public void addLogMessage(String message) {}
+            });
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(0, running.getCount());
+    Assert.assertEquals(1, CompilerJavacWorkerPool.getIdleCount(command, basedir));
+    // workers are not shared by projects with different basedir
+    Assert.assertEquals(0, CompilerJavacWorkerPool.getIdleCount(command, temp.getRoot()));
+
+    // idle worker exits on its own idle timeout and is pruned from the pool
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+    while (CompilerJavacWorkerPool.getIdleCount(command, basedir) > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100L);
+    }
+    Assert.assertEquals(0, CompilerJavacWorkerPool.getIdleCount(command, basedir));
+  }
+}
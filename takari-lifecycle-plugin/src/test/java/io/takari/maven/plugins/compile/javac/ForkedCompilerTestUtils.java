@@ -0,0 +1,71 @@
+package io.takari.maven.plugins.compile.javac;
+
+import io.takari.maven.plugins.compile.javac.CompilerJavacForked.CompilerConfiguration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Forked compiler command lines and compilations used by forked compiler tests.
+ */
+class ForkedCompilerTestUtils {
+
+  static final String EXECUTABLE = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+  private ForkedCompilerTestUtils() {}
+
+  /**
+   * Returns the directory with forked compiler classes.
+   */
+  static File getCompilerClasses() throws Exception {
+    return new File(CompilerJavacForked.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  /**
+   * Packages forked compiler classes the same way as the plugin jar, plus empty {@code resources}.
+   */
+  static void createCompilerJar(File jar, String... resources) throws Exception {
+    File classes = getCompilerClasses();
+    String packagePath = CompilerJavacForked.class.getPackage().getName().replace('.', '/');
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+      for (File file : new File(classes, packagePath).listFiles()) {
+        zip.putNextEntry(new ZipEntry(packagePath + "/" + file.getName()));
+        zip.write(Files.readAllBytes(file.toPath()));
+        zip.closeEntry();
+      }
+      for (String resource : resources) {
+        zip.putNextEntry(new ZipEntry(resource));
+        zip.closeEntry();
+      }
+    }
+  }
+
+  /**
+   * Returns command line of forked compiler JVM with the given classpath, JVM options and forked compiler arguments.
+   */
+  static List<String> newCommand(String classpath, List<String> jvmOptions, String... args) {
+    List<String> command = new ArrayList<String>(Arrays.asList(EXECUTABLE, "-cp", classpath));
+    command.addAll(jvmOptions);
+    command.add(CompilerJavacForked.class.getName());
+    command.addAll(Arrays.asList(args));
+    return command;
+  }
+
+  /**
+   * Writes {@code Basic.java} to {@code basedir} and returns configuration that compiles it to {@code basedir}.
+   */
+  static CompilerConfiguration newBasicConfiguration(File basedir) throws Exception {
+    File source = new File(basedir, "Basic.java");
+    Files.write(source.toPath(), "public class Basic {}".getBytes(Charsets.UTF_8));
+    return new CompilerConfiguration(Charsets.UTF_8, Arrays.asList("-d", basedir.getAbsolutePath()), Collections.singletonList(source));
+  }
+}
@@ -0,0 +1,42 @@
+package io.takari.maven.plugins.compile.jdt;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+public class ClassfileDigesterTest {
+
+  private static ClassFileReader read(Class<?> type) throws Exception {
+    String name = type.getName().replace('.', '/') + ".class";
+    try (InputStream is = type.getClassLoader().getResourceAsStream(name)) {
+      return new ClassFileReader(ByteStreams.toByteArray(is), name.toCharArray());
+    }
+  }
+
+  @Test
+  public void testDigest() throws Exception {
+    ClassfileDigester digester = new ClassfileDigester();
+
+    byte[] assertDigest = digester.digest(read(Assert.class));
+    Assert.assertEquals(16, assertDigest.length);
+
+    // digester is reusable and the digest is stable
+    byte[] testDigest = digester.digest(read(Test.class));
+    Assert.assertArrayEquals(assertDigest, digester.digest(read(Assert.class)));
+    Assert.assertArrayEquals(assertDigest, new ClassfileDigester().digest(read(Assert.class)));
+    Assert.assertFalse(Arrays.equals(assertDigest, testDigest));
+  }
+
+  @Test
+  public void testHashFunction() throws Exception {
+    byte[] digest = new ClassfileDigester(Hashing.sha1()).digest(read(Assert.class));
+    Assert.assertEquals(20, digest.length);
+    Assert.assertFalse(Arrays.equals(new ClassfileDigester().digest(read(Assert.class)), digest));
+  }
+}
@@ -0,0 +1,78 @@
+package io.takari.maven.plugins.compile.jdt;
+
+import static io.takari.maven.plugins.compile.ClasspathTestUtils.getJar;
+
+import java.io.File;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.project.MavenProject;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.util.Util;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.hash.Hashing;
+
+public class ClassfileSkimmerTest {
+
+  private static int assertSameDigests(File file, ClassfileDigester digester) throws Exception {
+    int count = 0;
+    try (ZipFile zip = new ZipFile(file)) {
+      for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+        ZipEntry entry = entries.nextElement();
+        if (!entry.getName().endsWith(".class")) {
+          continue;
+        }
+        byte[] classfile = Util.getZipEntryByteContent(entry, zip);
+        byte[] expected;
+        try {
+          expected = digester.digest(new ClassFileReader(classfile, entry.getName().toCharArray()));
+        } catch (ClassFormatException e) {
+          expected = null;
+        }
+        String name = file.getName() + "!" + entry.getName();
+        byte[] actual;
+        if (expected != null) {
+          // no fallback to ClassFileReader, skimmer failures must not go unnoticed
+          actual = digester.skim(classfile);
+          Assert.assertNotNull(name, actual);
+        } else {
+          try {
+            actual = digester.digest(classfile);
+          } catch (ClassFormatException e) {
+            actual = null;
+          }
+        }
+        Assert.assertArrayEquals(name, expected, actual);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void testSameDigest() throws Exception {
+    ClassfileDigester digester = new ClassfileDigester();
+    int count = 0;
+    // real-life class files, including annotation types, enums, generics, inner classes and constants
+    count += assertSameDigests(getJar(ClassFileReader.class), digester);
+    count += assertSameDigests(getJar(Hashing.class), digester);
+    count += assertSameDigests(getJar(Test.class), digester);
+    count += assertSameDigests(getJar(MavenProject.class), digester);
+    count += assertSameDigests(getJar(javax.inject.Named.class), digester);
+    Assert.assertTrue(count > 1000);
+  }
+
+  @Test
+  public void testClassFormatException() throws Exception {
+    try {
+      new ClassfileDigester().digest(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 50, 0, 10});
+      Assert.fail();
+    } catch (ClassFormatException expected) {
+      // truncated constant pool
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package io.takari.maven.plugins.compile.jdt;
+
+import static io.takari.maven.plugins.compile.ClasspathTestUtils.writeClass;
+import static io.takari.maven.plugins.compile.ClasspathTestUtils.writeJar;
+import io.takari.maven.plugins.compile.jdt.classpath.ClasspathJar;
+import io.takari.maven.plugins.compile.jdt.classpath.DependencyClasspathEntry;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class ClasspathEntryCacheTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  private ClasspathEntryCache newCache() throws Exception {
+    MavenProject project = newProject();
+    return new ClasspathEntryCache(project, newSession(project));
+  }
+
+  private MavenProject newProject() {
+    MavenProject project = new MavenProject();
+    project.getBuild().setOutputDirectory(new File(temp.getRoot(), "classes").getAbsolutePath());
+    project.getBuild().setTestOutputDirectory(new File(temp.getRoot(), "test-classes").getAbsolutePath());
+    return project;
+  }
+
+  private static MavenSession newSession(MavenProject project) {
+    return new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(), project);
+  }
+
+  @Test
+  public void testJarChange() throws Exception {
+    File jar = temp.newFile("test.jar");
+    writeJar(jar, "a/Assert.class");
+
+    ClasspathEntryCache cache = newCache();
+    DependencyClasspathEntry entry = cache.get(jar);
+    Assert.assertTrue(entry.getPackageNames().contains("a"));
+    Assert.assertSame(entry, newCache().get(jar));
+
+    writeJar(jar, "a/Assert.class", "b/Assert.class");
+    jar.setLastModified(jar.lastModified() - 10000);
+    DependencyClasspathEntry changed = newCache().get(jar);
+    Assert.assertNotSame(entry, changed);
+    Assert.assertTrue(changed.getPackageNames().contains("b"));
+  }
+
+  @Test
+  public void testDirectoryChange() throws Exception {
+    File directory = temp.newFolder();
+    new File(directory, "a").mkdirs();
+
+    DependencyClasspathEntry entry = newCache().get(directory);
+    Assert.assertTrue(entry.getPackageNames().contains("a"));
+    Assert.assertFalse(entry.getPackageNames().contains("a/b"));
+
+    File subdirectory = new File(directory, "a/b");
+    subdirectory.mkdirs();
+    new File(directory, "a").setLastModified(System.currentTimeMillis() + 10000);
+    Assert.assertTrue(newCache().get(directory).getPackageNames().contains("a/b"));
+  }
+
+  @Test
+  public void testDirectoryRevalidatedWithinSession() throws Exception {
+    File directory = temp.newFolder();
+    new File(directory, "a").mkdirs();
+
+    MavenProject project = newProject();
+    MavenSession session = newSession(project);
+    DependencyClasspathEntry entry = new ClasspathEntryCache(project, session).get(directory);
+    Assert.assertSame(entry, new ClasspathEntryCache(project, session).get(directory));
+
+    // upstream project output directory changed by a later build phase plugin of the same session
+    new File(directory, "a/b").mkdirs();
+    new File(directory, "a").setLastModified(System.currentTimeMillis() + 10000);
+    DependencyClasspathEntry changed = new ClasspathEntryCache(project, session.clone()).get(directory);
+    Assert.assertNotSame(entry, changed);
+    Assert.assertTrue(changed.getPackageNames().contains("a/b"));
+
+    // class file added to an existing package, past timestamps keep cached listings from being racy
+    new File(directory, "a/b").setLastModified(System.currentTimeMillis() - 20000);
+    changed = new ClasspathEntryCache(project, session).get(directory);
+    Assert.assertTrue(changed.getClassFiles("a/b").isEmpty());
+    writeClass(new File(directory, "a/b/B.class"));
+    new File(directory, "a/b").setLastModified(System.currentTimeMillis() - 10000);
+    Assert.assertTrue(new ClasspathEntryCache(project, session).get(directory).getClassFiles("a/b").contains("B.class"));
+  }
+
+  @Test
+  public void testClosedJarReopen() throws Exception {
+    File jar = temp.newFile("test.jar");
+    writeJar(jar, "a/Assert.class");
+
+    ClasspathJar entry = (ClasspathJar) newCache().get(jar);
+    Assert.assertNotNull(entry.findType("a", "Assert.class"));
+    entry.close();
+    Assert.assertNotNull(entry.findType("a", "Assert.class"));
+  }
+
+  @Test
+  public void testConcurrentClose() throws Exception {
+    File jar = temp.newFile("test.jar");
+    writeJar(jar, "a/Assert.class", "b/Assert.class");
+
+    final ClasspathJar entry = (ClasspathJar) newCache().get(jar);
+    final AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> readers = new ArrayList<Future<?>>();
+      for (int t = 0; t < 4; t++) {
+        readers.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; !done.get(); i++) {
+              Assert.assertNotNull(entry.findType(i % 2 == 0 ? "a" : "b", "Assert.class"));
+            }
+            return null;
+          }
+        }));
+      }
+      // eviction closes the jar while other compilations read from it
+      for (int i = 0; i < 500; i++) {
+        entry.close();
+        Thread.sleep(1);
+      }
+      done.set(true);
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testMissingLocation() throws Exception {
+    File missing = new File(temp.getRoot(), "missing.jar");
+    Assert.assertNull(newCache().get(missing));
+
+    writeJar(missing, "a/Assert.class");
+    Assert.assertNotNull(newCache().get(missing));
+  }
+}
@@ -4,8 +4,10 @@ import static io.takari.maven.testing.TestResources.cp;
 
 import java.io.File;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -114,6 +116,87 @@ public class CompileJdtClasspathTest extends AbstractCompileJdtTest {
     mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
   }
 
+  @Test
+  public void testRepository_lazyClasspathDigest() throws Exception {
+    File parent = resources.getBasedir("compile-jdt-classpath/repo-basic");
+    Xpp3Dom lazyClasspathDigest = new Xpp3Dom("lazyClasspathDigest");
+    lazyClasspathDigest.setValue("true");
+
+    MavenProject moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b", new File(parent, "module-b/module-b.jar"));
+    mojos.compile(moduleA, lazyClasspathDigest);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+
+    // dependency changed non-structurally
+    moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b-2", new File(parent, "module-b/module-b-comment.jar"));
+    mojos.compile(moduleA, lazyClasspathDigest);
+    mojos.assertBuildOutputs(parent, new String[0]);
+
+    // dependency changed structurally
+    moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b-2", new File(parent, "module-b/module-b-method.jar"));
+    mojos.compile(moduleA, lazyClasspathDigest);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+  }
+
+  @Test
+  public void testRepository_lazyClasspathDigest_topLevelPackage() throws Exception {
+    File parent = resources.getBasedir("compile-jdt-classpath/repo-toplevel");
+    Xpp3Dom lazyClasspathDigest = new Xpp3Dom("lazyClasspathDigest");
+    lazyClasspathDigest.setValue("true");
+
+    MavenProject moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b", new File(parent, "module-b/module-b.jar"));
+    mojos.compile(moduleA, lazyClasspathDigest);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+
+    // dependency changed non-structurally
+    moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b-2", new File(parent, "module-b/module-b-comment.jar"));
+    mojos.compile(moduleA, lazyClasspathDigest);
+    mojos.assertBuildOutputs(parent, new String[0]);
+
+    // type in single-segment package changed structurally
+    moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b-2", new File(parent, "module-b/module-b-method.jar"));
+    mojos.compile(moduleA, lazyClasspathDigest);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+  }
+
+  @Test
+  public void testRepository_persistentCacheDisabled() throws Exception {
+    File parent = resources.getBasedir("compile-jdt-classpath/repo-basic");
+
+    MavenProject moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b", new File(parent, "module-b/module-b.jar"));
+    compileWithoutPersistentCache(moduleA);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+
+    // previous dependency digests are only available from the build state
+    ClasspathDigester.flush();
+
+    // dependency changed non-structurally
+    moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b-2", new File(parent, "module-b/module-b-comment.jar"));
+    compileWithoutPersistentCache(moduleA);
+    mojos.assertBuildOutputs(parent, new String[0]);
+
+    ClasspathDigester.flush();
+
+    // dependency changed structurally
+    moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b-3", new File(parent, "module-b/module-b-method.jar"));
+    compileWithoutPersistentCache(moduleA);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+  }
+
+  private void compileWithoutPersistentCache(MavenProject project) throws Exception {
+    MavenSession session = mojos.newMavenSession(project);
+    session.getUserProperties().setProperty(ClasspathDigester.PROP_PERSISTENT_CACHE_SIZE, "0");
+    mojos.executeMojo(session, project, mojos.newMojoExecution());
+  }
+
   @Test
   public void testRepository_classpathOrder() throws Exception {
     File parent = resources.getBasedir("compile-jdt-classpath/repo-basic");
@@ -142,6 +225,29 @@ public class CompileJdtClasspathTest extends AbstractCompileJdtTest {
     mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
   }
 
+  @Test
+  public void testRepository_addedDependency() throws Exception {
+    File parent = resources.getBasedir("compile-jdt-classpath/repo-basic");
+
+    MavenProject moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b", new File(parent, "module-b/module-b.jar"));
+    mojos.compile(moduleA);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+
+    // new dependency types are shadowed by the unchanged dependency
+    moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b", new File(parent, "module-b/module-b.jar"));
+    addDependency(moduleA, "module-b-method", new File(parent, "module-b/module-b-method.jar"));
+    mojos.compile(moduleA);
+    mojos.assertBuildOutputs(parent, new String[0]);
+
+    // removed dependency exposes previously shadowed types
+    moduleA = mojos.readMavenProject(new File(parent, "module-a"));
+    addDependency(moduleA, "module-b-method", new File(parent, "module-b/module-b-method.jar"));
+    mojos.compile(moduleA);
+    mojos.assertBuildOutputs(parent, "module-a/target/classes/reactor/modulea/ModuleA.class");
+  }
+
   private void compileReactor(File parent) throws Exception {
     File moduleB = new File(parent, "module-b");
 
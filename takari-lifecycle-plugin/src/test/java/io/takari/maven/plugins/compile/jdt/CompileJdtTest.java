@@ -5,11 +5,17 @@ import static io.takari.maven.testing.TestResources.rm;
 import static io.takari.maven.testing.TestResources.touch;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
 public class CompileJdtTest extends AbstractCompileJdtTest {
 
   /**
@@ -252,4 +258,61 @@ public class CompileJdtTest extends AbstractCompileJdtTest {
         , "secondary/B.class" //
         , "secondary/ASecondary.class");
   }
+
+  @Test
+  public void testFullBuildEscalation() throws Exception {
+    File basedir = resources.getBasedir("compile-jdt/basic");
+    File classes = new File(basedir, "target/classes");
+    List<String> outputs = generateSources(basedir, 24);
+
+    mojos.compile(basedir);
+    mojos.assertBuildOutputs(classes, outputs.toArray(new String[outputs.size()]));
+
+    // few modified sources, incremental build
+    touch(basedir, "src/main/java/basic/Generated0.java");
+    touch(basedir, "src/main/java/basic/Generated1.java");
+    mojos.compile(basedir);
+    mojos.assertBuildOutputs(classes, "basic/Generated0.class", "basic/Generated1.class");
+
+    // most sources modified, full build
+    for (int i = 0; i < 15; i++) {
+      touch(basedir, "src/main/java/basic/Generated" + i + ".java");
+    }
+    mojos.compile(basedir);
+    mojos.assertBuildOutputs(classes, outputs.toArray(new String[outputs.size()]));
+  }
+
+  @Test
+  public void testFullBuildEscalation_disabled() throws Exception {
+    File basedir = resources.getBasedir("compile-jdt/basic");
+    File classes = new File(basedir, "target/classes");
+    generateSources(basedir, 24);
+    Xpp3Dom threshold = new Xpp3Dom("fullBuildThreshold");
+    threshold.setValue("1");
+
+    mojos.compile(basedir, threshold);
+
+    List<String> modified = new ArrayList<String>();
+    for (int i = 0; i < 15; i++) {
+      touch(basedir, "src/main/java/basic/Generated" + i + ".java");
+      modified.add("basic/Generated" + i + ".class");
+    }
+    mojos.compile(basedir, threshold);
+    mojos.assertBuildOutputs(classes, modified.toArray(new String[modified.size()]));
+  }
+
+  /**
+   * Generates specified number of independent sources, returns relative paths of all project class files.
+   */
+  private static List<String> generateSources(File basedir, int count) throws Exception {
+    List<String> outputs = new ArrayList<String>();
+    outputs.add("basic/Basic1.class");
+    outputs.add("basic/Basic2.class");
+    for (int i = 0; i < count; i++) {
+      String source = "package basic;\npublic class Generated" + i + " {}\n";
+      Files.write(source, new File(basedir, "src/main/java/basic/Generated" + i + ".java"), Charsets.UTF_8);
+      outputs.add("basic/Generated" + i + ".class");
+    }
+    return outputs;
+  }
 }
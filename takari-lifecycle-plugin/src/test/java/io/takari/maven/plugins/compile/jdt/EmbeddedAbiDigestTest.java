@@ -0,0 +1,114 @@
+package io.takari.maven.plugins.compile.jdt;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EmbeddedAbiDigestTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  private File newJar(String entryName, byte[] contents) throws Exception {
+    File file = File.createTempFile("test", ".jar", temp.getRoot());
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+      zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+      zip.closeEntry();
+      if (entryName != null) {
+        zip.putNextEntry(new ZipEntry(entryName));
+        zip.write(contents);
+        zip.closeEntry();
+      }
+    }
+    return file;
+  }
+
+  @Test
+  public void testRoundtrip() throws Exception {
+    Map<String, byte[]> types = new HashMap<>();
+    types.put("a.A", new byte[] {1, 2, 3});
+    types.put("a.B", new byte[] {4, 5, 6});
+
+    try (ZipFile jar = new ZipFile(newJar(EmbeddedAbiDigest.ENTRY_NAME, EmbeddedAbiDigest.write(types)))) {
+      EmbeddedAbiDigest embedded = EmbeddedAbiDigest.read(jar, false);
+      Assert.assertEquals(EmbeddedAbiDigest.getAggregateHash(types), embedded.getAggregateHash());
+      Assert.assertNull(embedded.getTypes());
+
+      embedded = EmbeddedAbiDigest.read(jar, true);
+      Assert.assertEquals(EmbeddedAbiDigest.getAggregateHash(types), embedded.getAggregateHash());
+      Assert.assertEquals(types.keySet(), embedded.getTypes().keySet());
+      Assert.assertArrayEquals(types.get("a.A"), embedded.getTypes().get("a.A"));
+      Assert.assertArrayEquals(types.get("a.B"), embedded.getTypes().get("a.B"));
+    }
+  }
+
+  @Test
+  public void testAggregateHash() throws Exception {
+    Map<String, byte[]> types = new LinkedHashMap<>();
+    types.put("a.A", new byte[] {1});
+    types.put("a.B", new byte[] {2});
+    Map<String, byte[]> reordered = new LinkedHashMap<>();
+    reordered.put("a.B", new byte[] {2});
+    reordered.put("a.A", new byte[] {1});
+    Assert.assertEquals(EmbeddedAbiDigest.getAggregateHash(types), EmbeddedAbiDigest.getAggregateHash(reordered));
+
+    reordered.put("a.A", new byte[] {3});
+    Assert.assertNotEquals(EmbeddedAbiDigest.getAggregateHash(types), EmbeddedAbiDigest.getAggregateHash(reordered));
+  }
+
+  @Test
+  public void testMissingOrIncompatible() throws Exception {
+    try (ZipFile jar = new ZipFile(newJar(null, null))) {
+      Assert.assertNull(EmbeddedAbiDigest.read(jar, true));
+    }
+    try (ZipFile jar = new ZipFile(newJar(EmbeddedAbiDigest.ENTRY_NAME, new byte[] {0, 0, 0, 1, 0, 0, 0, 0}))) {
+      Assert.assertNull(EmbeddedAbiDigest.read(jar, true));
+    }
+  }
+
+  @Test
+  public void testMatchesClassfiles() throws Exception {
+    Map<String, byte[]> types = new HashMap<>();
+    types.put("a.A", new byte[] {1});
+    types.put("a.B", new byte[] {2});
+
+    try (ZipFile jar = new ZipFile(newDigestJar(types, "a/A.class", "a/B.class"))) {
+      Assert.assertTrue(EmbeddedAbiDigest.matchesClassfiles(jar, types));
+    }
+    // shaded jar with additional types
+    try (ZipFile jar = new ZipFile(newDigestJar(types, "a/A.class", "a/B.class", "shaded/C.class"))) {
+      Assert.assertFalse(EmbeddedAbiDigest.matchesClassfiles(jar, types));
+    }
+    // relocated types
+    try (ZipFile jar = new ZipFile(newDigestJar(types, "shaded/a/A.class", "shaded/a/B.class"))) {
+      Assert.assertFalse(EmbeddedAbiDigest.matchesClassfiles(jar, types));
+    }
+    try (ZipFile jar = new ZipFile(newDigestJar(types, "a/A.class"))) {
+      Assert.assertFalse(EmbeddedAbiDigest.matchesClassfiles(jar, types));
+    }
+  }
+
+  private File newDigestJar(Map<String, byte[]> types, String... classfiles) throws Exception {
+    File file = File.createTempFile("test", ".jar", temp.getRoot());
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+      zip.putNextEntry(new ZipEntry(EmbeddedAbiDigest.ENTRY_NAME));
+      zip.write(EmbeddedAbiDigest.write(types));
+      zip.closeEntry();
+      for (String classfile : classfiles) {
+        zip.putNextEntry(new ZipEntry(classfile));
+        zip.closeEntry();
+      }
+    }
+    return file;
+  }
+}
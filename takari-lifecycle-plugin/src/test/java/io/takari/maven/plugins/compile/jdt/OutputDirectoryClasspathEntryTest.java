@@ -0,0 +1,47 @@
+package io.takari.maven.plugins.compile.jdt;
+
+import static io.takari.maven.plugins.compile.ClasspathTestUtils.writeClass;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputDirectoryClasspathEntryTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testReportedClassFile() throws Exception {
+    File directory = temp.newFolder();
+    OutputDirectoryClasspathEntry entry = new OutputDirectoryClasspathEntry(directory);
+
+    writeClass(new File(directory, "a/b/Assert.class"));
+    entry.addClassFile("a/b/Assert.class");
+    Assert.assertFalse(entry.getPackageNames().contains("a/b"));
+
+    entry.reset();
+    Assert.assertTrue(entry.getPackageNames().contains("a"));
+    Assert.assertTrue(entry.getPackageNames().contains("a/b"));
+  }
+
+  @Test
+  public void testUnreportedClassFile() throws Exception {
+    File directory = temp.newFolder();
+    writeClass(new File(directory, "a/Assert.class"));
+    OutputDirectoryClasspathEntry entry = new OutputDirectoryClasspathEntry(directory);
+    Assert.assertTrue(entry.getPackageNames().contains("a"));
+
+    // class files copied to the output directory, e.g. by annotation processors, are not reported
+    writeClass(new File(directory, "a/b/c/Assert.class"));
+    writeClass(new File(directory, "d/Assert.class"));
+    entry.reset();
+    Assert.assertTrue(entry.getPackageNames().contains("a/b"));
+    Assert.assertTrue(entry.getPackageNames().contains("a/b/c"));
+    Assert.assertTrue(entry.getPackageNames().contains("d"));
+    Assert.assertNotNull(entry.findType("a/b/c", "Assert.class"));
+  }
+}
@@ -0,0 +1,125 @@
+package io.takari.maven.plugins.compile.jdt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReferenceIndexTest {
+
+  private final SymbolTable symbols = new SymbolTable();
+
+  private ReferenceCollection references(String... types) {
+    char[][] roots = new char[types.length][];
+    char[][][] qualified = new char[types.length][][];
+    char[][] simple = new char[types.length][];
+    for (int i = 0; i < types.length; i++) {
+      char[][] compoundName = CharOperation.splitOn('.', types[i].toCharArray());
+      roots[i] = compoundName[0];
+      qualified[i] = CharOperation.subarray(compoundName, 0, compoundName.length - 1);
+      simple[i] = compoundName[compoundName.length - 1];
+    }
+    return new ReferenceCollection(symbols, roots, qualified, simple);
+  }
+
+  private static Set<File> affected(ReferenceIndex index, String type) {
+    int idx = type.lastIndexOf('.');
+    Collection<String> qualifiedNames = Collections.singleton(type.substring(0, idx));
+    Collection<String> simpleNames = Collections.singleton(type.substring(idx + 1));
+    Collection<String> rootNames = Collections.singleton(type.substring(0, type.indexOf('.')));
+    return index.getAffectedSources(qualifiedNames, simpleNames, rootNames);
+  }
+
+  @Test
+  public void testAffectedSources() throws Exception {
+    File a = new File("A.java");
+    File b = new File("B.java");
+    ReferenceIndex index = new ReferenceIndex();
+    index.put(a, references("org.p1.Type", "org.p3.Other"));
+    index.put(b, references("org.p2.Type"));
+
+    Assert.assertEquals(Collections.singleton(a), affected(index, "org.p1.Type"));
+    Assert.assertEquals(Collections.singleton(b), affected(index, "org.p2.Type"));
+    Assert.assertEquals(Collections.singleton(a), affected(index, "org.p3.Other"));
+    Assert.assertTrue(affected(index, "org.p4.Type").isEmpty());
+    Assert.assertTrue(affected(index, "org.p1.Missing").isEmpty());
+  }
+
+  @Test
+  public void testUpdatedReferences() throws Exception {
+    File a = new File("A.java");
+    File b = new File("B.java");
+    ReferenceIndex index = new ReferenceIndex();
+    index.put(a, references("org.p1.Type"));
+    index.put(b, references("org.p1.Type"));
+
+    index.put(a, references("org.p1.Other"));
+    Assert.assertEquals(Collections.singleton(b), affected(index, "org.p1.Type"));
+    Assert.assertEquals(Collections.singleton(a), affected(index, "org.p1.Other"));
+
+    index.put(b, references("org.p1.Type", "org.p1.Other"));
+    Assert.assertEquals(Collections.singleton(b), affected(index, "org.p1.Type"));
+    Assert.assertEquals(new HashSet<File>(Arrays.asList(a, b)), affected(index, "org.p1.Other"));
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    // build state is written after all collections are created
+    ReferenceCollection first = references("org.p1.Type");
+    ReferenceCollection second = references("org.p2.Other");
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    try (ObjectOutputStream os = new ObjectOutputStream(buf)) {
+      os.writeObject(first);
+      os.writeObject(second);
+    }
+    ReferenceCollection a, b;
+    try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+      a = (ReferenceCollection) is.readObject();
+      b = (ReferenceCollection) is.readObject();
+    }
+    Assert.assertSame(a.getSymbolTable(), b.getSymbolTable());
+    Assert.assertEquals(symbols.size(), a.getSymbolTable().size());
+
+    ReferenceIndex index = new ReferenceIndex();
+    index.put(new File("A.java"), a);
+    index.put(new File("B.java"), b);
+    Assert.assertEquals(Collections.singleton(new File("B.java")), affected(index, "org.p2.Other"));
+  }
+
+  @Test
+  public void testCompactedSymbols() throws Exception {
+    references("org.p1.Stale");
+    ReferenceCollection first = references("org.p1.Type");
+    references("org.p2.Stale");
+    ReferenceCollection second = references("org.p2.Other");
+
+    BitSet live = new BitSet();
+    first.collectSymbols(live);
+    second.collectSymbols(live);
+    int[] mapping = symbols.compact(live);
+    first.remapSymbols(mapping);
+    second.remapSymbols(mapping);
+
+    // org, org.p1, Type, org.p2 and Other
+    Assert.assertEquals(5, symbols.size());
+    Assert.assertFalse(symbols.contains("Stale"));
+
+    ReferenceIndex index = new ReferenceIndex();
+    index.put(new File("A.java"), first);
+    index.put(new File("B.java"), second);
+    Assert.assertEquals(Collections.singleton(new File("A.java")), affected(index, "org.p1.Type"));
+    Assert.assertEquals(Collections.singleton(new File("B.java")), affected(index, "org.p2.Other"));
+    Assert.assertTrue(affected(index, "org.p1.Stale").isEmpty());
+  }
+}
@@ -0,0 +1,75 @@
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import static io.takari.maven.plugins.compile.ClasspathTestUtils.writeClass;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClasspathDirectoryTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testExactCaseLookup() throws Exception {
+    File directory = temp.newFolder();
+    writeClass(new File(directory, "a/Assert.class"));
+
+    ClasspathDirectory entry = ClasspathDirectory.create(directory);
+    Assert.assertNotNull(entry.findType("a", "Assert.class"));
+    Assert.assertNull(entry.findType("a", "assert.class"));
+    Assert.assertNull(entry.findType("a", "Missing.class"));
+  }
+
+  @Test
+  public void testListingInvalidation() throws Exception {
+    File directory = temp.newFolder();
+    File packageDirectory = new File(directory, "a");
+    writeClass(new File(packageDirectory, "Assert.class"));
+    packageDirectory.setLastModified(System.currentTimeMillis() - 60000);
+
+    ClasspathDirectory entry = ClasspathDirectory.create(directory);
+    Assert.assertNull(entry.findType("a", "Other.class"));
+
+    // listings are not revalidated on lookup
+    writeClass(new File(packageDirectory, "Other.class"));
+    packageDirectory.setLastModified(System.currentTimeMillis() - 30000);
+    Assert.assertNull(entry.findType("a", "Other.class"));
+
+    entry.invalidate("a");
+    Assert.assertNotNull(entry.findType("a", "Other.class"));
+  }
+
+  @Test
+  public void testRacyListingRevalidation() throws Exception {
+    File directory = temp.newFolder();
+    File packageDirectory = new File(directory, "a");
+    writeClass(new File(packageDirectory, "Assert.class"));
+    long lastModified = packageDirectory.lastModified();
+
+    ClasspathDirectory entry = ClasspathDirectory.create(directory);
+    Assert.assertNull(entry.findType("a", "Other.class"));
+
+    // racy listing is reused while directory timestamp does not change
+    writeClass(new File(packageDirectory, "Other.class"));
+    packageDirectory.setLastModified(lastModified);
+    Assert.assertNull(entry.findType("a", "Other.class"));
+
+    packageDirectory.setLastModified(lastModified - 60000);
+    Assert.assertNotNull(entry.findType("a", "Other.class"));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnmodifiableListing() throws Exception {
+    File directory = temp.newFolder();
+    File packageDirectory = new File(directory, "a");
+    writeClass(new File(packageDirectory, "Assert.class"));
+    packageDirectory.setLastModified(System.currentTimeMillis() - 60000);
+
+    ClasspathDirectory.create(directory).getClassFiles("a").add("Other.class");
+  }
+}
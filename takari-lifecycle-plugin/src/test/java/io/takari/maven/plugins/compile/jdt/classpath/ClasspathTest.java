@@ -1,16 +1,58 @@
 package io.takari.maven.plugins.compile.jdt.classpath;
 
+import io.takari.maven.plugins.compile.ClasspathTestUtils;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ClasspathTest {
 
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  private static class TestMutableEntry implements ClasspathEntry, MutableClasspathEntry {
+    final Map<String, NameEnvironmentAnswer> types = new HashMap<String, NameEnvironmentAnswer>();
+
+    Collection<String> packageNames = new ArrayList<String>();
+
+    @Override
+    public Collection<String> getPackageNames() {
+      return packageNames;
+    }
+
+    @Override
+    public NameEnvironmentAnswer findType(String packageName, String binaryFileName) {
+      return types.get(packageName + "/" + binaryFileName);
+    }
+
+    @Override
+    public String getEntryDescription() {
+      return "#TEST";
+    }
+
+    @Override
+    public void reset() {
+      packageNames = new ArrayList<String>(types.keySet().size());
+      for (String type : types.keySet()) {
+        packageNames.add(type.substring(0, type.lastIndexOf('/')));
+      }
+    }
+  }
+
   @Test
   public void testEmptyJarPackage() throws Exception {
     final List<ClasspathEntry> entries = new ArrayList<ClasspathEntry>();
@@ -36,4 +78,38 @@ public class ClasspathTest {
     ClasspathEntry cpe = ClasspathDirectory.create(sourceRoot);
     Assert.assertNull(cpe.findType("basic", "basic.class"));
   }
+
+  @Test
+  public void testMutableEntryPackageIndex() throws Exception {
+    byte[] bytes = ClasspathTestUtils.getClassfile();
+    File directory = temp.newFolder();
+    ClasspathTestUtils.writeClass(new File(directory, "a/Assert.class"));
+
+    TestMutableEntry mutable = new TestMutableEntry();
+    ClasspathDirectory immutable = ClasspathDirectory.create(directory);
+    List<ClasspathEntry> entries = Arrays.<ClasspathEntry>asList(mutable, immutable);
+    List<MutableClasspathEntry> mutableentries = Arrays.<MutableClasspathEntry>asList(mutable);
+    Classpath classpath = new Classpath(entries, mutableentries);
+
+    char[][] a = new char[][] {"a".toCharArray()};
+    Assert.assertFalse(classpath.isPackage(null, "b".toCharArray()));
+    NameEnvironmentAnswer answer = classpath.findType("Assert".toCharArray(), a);
+    Assert.assertNotNull(answer);
+
+    // mutable entry is consulted before the immutable entry after reset
+    NameEnvironmentAnswer mutableAnswer = new NameEnvironmentAnswer(new ClassFileReader(bytes, "a/Assert.class".toCharArray()), null);
+    mutable.types.put("a/Assert.class", mutableAnswer);
+    mutable.types.put("b/Assert.class", mutableAnswer);
+    Assert.assertNotSame(mutableAnswer, classpath.findType("Assert".toCharArray(), a));
+    classpath.reset();
+    Assert.assertTrue(classpath.isPackage(null, "b".toCharArray()));
+    Assert.assertSame(mutableAnswer, classpath.findType("Assert".toCharArray(), a));
+
+    // mutable entry packages are removed from the index
+    mutable.types.clear();
+    classpath.reset();
+    Assert.assertFalse(classpath.isPackage(null, "b".toCharArray()));
+    Assert.assertTrue(classpath.isPackage(null, "a".toCharArray()));
+    Assert.assertNotSame(mutableAnswer, classpath.findType("Assert".toCharArray(), a));
+  }
 }
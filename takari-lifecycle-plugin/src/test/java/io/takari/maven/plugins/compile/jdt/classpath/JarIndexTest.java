@@ -0,0 +1,93 @@
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import static io.takari.maven.plugins.compile.ClasspathTestUtils.getJar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+
+public class JarIndexTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  private static Set<String> getPackageNames(ZipFile zipFile) {
+    Set<String> result = new HashSet<String>();
+    for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+      String name = e.nextElement().getName();
+      int last = name.lastIndexOf('/');
+      while (last > 0) {
+        name = name.substring(0, last);
+        result.add(name);
+        last = name.lastIndexOf('/');
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testPackageNames() throws Exception {
+    File jar = getJar(Test.class);
+    try (ZipFile zipFile = new ZipFile(jar)) {
+      JarIndex index = JarIndex.create(zipFile);
+      Assert.assertEquals(getPackageNames(zipFile), new HashSet<String>(index.getPackageNames()));
+      Assert.assertTrue(index.containsType("org/junit", "Test.class"));
+      Assert.assertFalse(index.containsType("org/junit", "Missing.class"));
+      Assert.assertFalse(index.containsType("org/missing", "Test.class"));
+    }
+  }
+
+  @Test
+  public void testPersistentIndex() throws Exception {
+    File jar = getJar(Test.class);
+    PersistentCache cache = new PersistentCache(temp.newFolder(), JarIndex.VERSION, 1024 * 1024 * 1024);
+
+    ClasspathJar created = ClasspathJar.create(jar, cache);
+    ClasspathJar cached = ClasspathJar.create(jar, cache);
+    try {
+      Assert.assertEquals(created.getPackageNames(), cached.getPackageNames());
+      Assert.assertNotNull(cached.findType("org/junit", "Test.class"));
+      Assert.assertNull(cached.findType("org/junit", "Missing.class"));
+    } finally {
+      created.close();
+      cached.close();
+    }
+  }
+
+  @Test
+  public void testAnnotationProcessors() throws Exception {
+    File jar = temp.newFile("processors.jar");
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+      zip.putNextEntry(new ZipEntry(DependencyClasspathEntry.PATH_PROCESSORS));
+      zip.write("processor.A\nprocessor.B\n".getBytes(Charsets.UTF_8));
+      zip.closeEntry();
+    }
+    PersistentCache cache = new PersistentCache(temp.newFolder(), JarIndex.VERSION, 1024 * 1024 * 1024);
+
+    ClasspathJar created = ClasspathJar.create(jar, cache);
+    ClasspathJar cached = ClasspathJar.create(jar, cache);
+    ClasspathJar none = ClasspathJar.create(getJar(Test.class), cache);
+    try {
+      Assert.assertEquals(Arrays.asList("processor.A", "processor.B"), created.getAnnotationProcessors());
+      Assert.assertEquals(Arrays.asList("processor.A", "processor.B"), cached.getAnnotationProcessors());
+      Assert.assertTrue(none.getAnnotationProcessors().isEmpty());
+    } finally {
+      created.close();
+      cached.close();
+      none.close();
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PackageIndexTest {
+
+  private static char[][] segments(String packageName) {
+    return CharOperation.splitOn('/', packageName.toCharArray());
+  }
+
+  private static String get(PackageIndex<String> index, String packageName) {
+    char[][] segments = segments(packageName);
+    PackageIndex.Node<String> node = index.getNode(segments, segments.length, null);
+    if (node != null) {
+      Assert.assertEquals(packageName, node.getPackageName());
+      return node.getValue();
+    }
+    return null;
+  }
+
+  @Test
+  public void testSegmentLookup() throws Exception {
+    Map<String, String> values = new HashMap<String, String>();
+    values.put("a", "1");
+    values.put("a/b", "2");
+    values.put("a/bc", "3");
+    PackageIndex<String> index = new PackageIndex<String>(values);
+
+    Assert.assertEquals("1", get(index, "a"));
+    Assert.assertEquals("2", get(index, "a/b"));
+    Assert.assertEquals("3", get(index, "a/bc"));
+    Assert.assertNull(get(index, "ab"));
+    Assert.assertNull(get(index, "a/b/c"));
+    Assert.assertNull(get(index, "b"));
+
+    // compound type name, package segments followed by type name
+    Assert.assertEquals("2", index.getNode(segments("a/b/Type"), 2, null).getValue());
+    // parent package plus package name
+    Assert.assertEquals("3", index.getNode(segments("a"), 1, "bc".toCharArray()).getValue());
+    Assert.assertEquals("1", index.getNode(null, 0, "a".toCharArray()).getValue());
+  }
+
+  @Test
+  public void testPutRemoveResize() throws Exception {
+    PackageIndex<String> index = new PackageIndex<String>(new HashMap<String, String>());
+    for (int i = 0; i < 1000; i++) {
+      index.put("p/" + i, Integer.toString(i));
+    }
+    index.put("p/1", "one");
+    Assert.assertEquals(1000, index.size());
+    for (int i = 0; i < 1000; i += 2) {
+      index.remove("p/" + i);
+    }
+    Assert.assertEquals(500, index.size());
+    Assert.assertEquals("one", get(index, "p/1"));
+    Assert.assertEquals("999", index.get("p/999"));
+    Assert.assertNull(get(index, "p/998"));
+  }
+}
@@ -0,0 +1,118 @@
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import io.takari.maven.plugins.compile.jdt.classpath.PersistentCache.EntryReader;
+import io.takari.maven.plugins.compile.jdt.classpath.PersistentCache.EntryWriter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class PersistentCacheTest {
+
+  @Rule
+  public final TemporaryFolder temp = new TemporaryFolder();
+
+  private static final EntryReader<String> READER = new EntryReader<String>() {
+    @Override
+    public String read(DataInputStream is) throws IOException {
+      return is.readUTF();
+    }
+  };
+
+  private static EntryWriter writer(final String value) {
+    return new EntryWriter() {
+      @Override
+      public void write(DataOutputStream os) throws IOException {
+        os.writeUTF(value);
+      }
+    };
+  }
+
+  @Test
+  public void testGetPut() throws Exception {
+    File directory = new File(temp.getRoot(), "cache");
+    PersistentCache cache = new PersistentCache(directory, 1, 1024 * 1024);
+    Assert.assertNull(cache.get("key", READER));
+    cache.put("key", writer("value"));
+    Assert.assertEquals("value", cache.get("key", READER));
+
+    // other build with the same cache directory
+    Assert.assertEquals("value", new PersistentCache(directory, 1, 1024 * 1024).get("key", READER));
+  }
+
+  @Test
+  public void testVersionMismatch() throws Exception {
+    File directory = temp.newFolder();
+    new PersistentCache(directory, 1, 1024 * 1024).put("key", writer("value"));
+    Assert.assertNull(new PersistentCache(directory, 2, 1024 * 1024).get("key", READER));
+  }
+
+  @Test
+  public void testCorruptedEntry() throws Exception {
+    File directory = temp.newFolder();
+    Files.write("garbage", new File(directory, "key.bin"), Charsets.UTF_8);
+    Assert.assertNull(new PersistentCache(directory, 1, 1024 * 1024).get("key", READER));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    File directory = temp.newFolder();
+    PersistentCache cache = new PersistentCache(directory, 1, 1024);
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      value.append('x');
+    }
+    for (int i = 0; i < 50; i++) {
+      cache.put("key" + i, writer(value.toString()));
+    }
+    long size = 0;
+    for (File file : directory.listFiles()) {
+      size += file.length();
+    }
+    Assert.assertTrue(size <= 1024 + 1024 / 10 + 200);
+    Assert.assertEquals(value.toString(), cache.get("key49", READER));
+  }
+
+  @Test
+  public void testOrphanedTemporaryFiles() throws Exception {
+    File directory = temp.newFolder();
+    File stale = new File(directory, "killed123.tmp");
+    Files.write("partial", stale, Charsets.UTF_8);
+    stale.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000L);
+    File inProgress = new File(directory, "concurrent456.tmp");
+    Files.write("partial", inProgress, Charsets.UTF_8);
+
+    // first write to the directory by this JVM checks cache size
+    new PersistentCache(directory, 1, 1024 * 1024).put("key", writer("value"));
+    Assert.assertFalse(stale.exists());
+    Assert.assertTrue(inProgress.isFile());
+  }
+
+  @Test
+  public void testArtifactKey() throws Exception {
+    File jar = temp.newFile("test.jar");
+    Files.write("jar", jar, Charsets.UTF_8);
+    String key = PersistentCache.getArtifactKey(jar);
+    Assert.assertEquals(key, PersistentCache.getArtifactKey(jar));
+
+    jar.setLastModified(jar.lastModified() - 10000);
+    Assert.assertNotEquals(key, PersistentCache.getArtifactKey(jar));
+
+    File sha1 = new File(jar.getParentFile(), "test.jar.sha1");
+    Files.write("0123456789ABCDEF0123456789abcdef01234567  test.jar", sha1, Charsets.US_ASCII);
+    Assert.assertEquals("0123456789abcdef0123456789abcdef01234567-3", PersistentCache.getArtifactKey(jar));
+
+    // stale sidecar is ignored
+    sha1.setLastModified(jar.lastModified() - 10000);
+    Assert.assertNotEquals("0123456789abcdef0123456789abcdef01234567-3", PersistentCache.getArtifactKey(jar));
+  }
+}
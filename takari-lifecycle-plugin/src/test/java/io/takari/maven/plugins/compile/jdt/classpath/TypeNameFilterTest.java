@@ -0,0 +1,61 @@
+package io.takari.maven.plugins.compile.jdt.classpath;
+
+import static io.takari.maven.plugins.compile.ClasspathTestUtils.getJar;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TypeNameFilterTest {
+
+  @Test
+  public void testNoFalseNegatives() throws Exception {
+    try (ZipFile zipFile = new ZipFile(getJar(Test.class))) {
+      TypeNameFilter filter = JarIndex.create(zipFile).getTypeNameFilter();
+      int typeCount = 0;
+      for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+        String name = e.nextElement().getName();
+        int last = name.lastIndexOf('/');
+        if (name.endsWith(".class") && last > 0) {
+          String typeName = name.substring(last + 1, name.length() - ".class".length());
+          Assert.assertTrue(name, filter.mightContain(TypeNameFilter.hash(name.substring(0, last), typeName.toCharArray())));
+          typeCount++;
+        }
+      }
+      Assert.assertTrue(typeCount > 100);
+
+      int falsePositives = 0;
+      for (int i = 0; i < 10000; i++) {
+        if (filter.mightContain(TypeNameFilter.hash("org/junit", ("Missing" + i).toCharArray()))) {
+          falsePositives++;
+        }
+      }
+      Assert.assertTrue("false positives " + falsePositives, falsePositives < 500);
+    }
+  }
+
+  @Test
+  public void testAvoidedProbes() throws Exception {
+    ClasspathJar jar = ClasspathJar.create(getJar(Test.class));
+    try {
+      Classpath classpath = new Classpath(Collections.<ClasspathEntry>singletonList(jar), null);
+      Assert.assertNotNull(classpath.findType(CharOperation.splitOn('.', "org.junit.Test".toCharArray())));
+      Assert.assertEquals(1, classpath.getProbeCount());
+      Assert.assertEquals(0, classpath.getAvoidedProbeCount());
+
+      for (int i = 0; i < 100; i++) {
+        Assert.assertNull(classpath.findType(("Missing" + i).toCharArray(), CharOperation.splitOn('.', "org.junit".toCharArray())));
+      }
+      Assert.assertTrue(classpath.getAvoidedProbeCount() > 90);
+      Assert.assertEquals(101, classpath.getProbeCount() + classpath.getAvoidedProbeCount());
+    } finally {
+      jar.close();
+    }
+  }
+}
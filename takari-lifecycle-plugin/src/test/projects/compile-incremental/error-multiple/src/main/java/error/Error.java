@@ -0,0 +1,5 @@
+package error;
+
+public class Error {
+  private Errorr error;
+}
@@ -0,0 +1,4 @@
+package error;
+
+public class Other {
+}
@@ -0,0 +1,6 @@
+package constant;
+
+public class Constants
+{
+    public static final String VALUE = "value";
+}
@@ -0,0 +1,5 @@
+package constant;
+
+public class Unrelated
+{
+}
@@ -0,0 +1,9 @@
+package constant;
+
+public class User
+{
+    public String getValue()
+    {
+        return Constants.VALUE;
+    }
+}
@@ -0,0 +1,9 @@
+package reactor.modulea;
+
+import toplevel.TopLevel;
+
+public class ModuleA {
+
+  private TopLevel topLevel;
+
+}
@@ -0,0 +1,9 @@
+package proc;
+
+import processor.Annotation;
+
+@Annotation
+public class Source
+{
+
+}
@@ -0,0 +1,5 @@
+package proc;
+
+public class Unrelated
+{
+}